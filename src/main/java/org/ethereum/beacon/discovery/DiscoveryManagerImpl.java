@@ -5,6 +5,8 @@
 package org.ethereum.beacon.discovery;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.time.Clock;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -33,6 +35,7 @@ import org.ethereum.beacon.discovery.pipeline.handler.NodeSessionManager;
 import org.ethereum.beacon.discovery.pipeline.handler.NodeSessionRequestHandler;
 import org.ethereum.beacon.discovery.pipeline.handler.OutgoingParcelHandler;
 import org.ethereum.beacon.discovery.pipeline.handler.PacketDispatcherHandler;
+import org.ethereum.beacon.discovery.pipeline.handler.StatelessWhoAreYouHandler;
 import org.ethereum.beacon.discovery.pipeline.handler.UnauthorizedMessagePacketHandler;
 import org.ethereum.beacon.discovery.pipeline.handler.UnknownPacketTagToSender;
 import org.ethereum.beacon.discovery.pipeline.handler.WhoAreYouPacketHandler;
@@ -75,7 +78,9 @@ public class DiscoveryManagerImpl implements DiscoveryManager {
       NodeRecordFactory nodeRecordFactory,
       Scheduler taskScheduler,
       ExpirationSchedulerFactory expirationSchedulerFactory,
-      TalkHandler talkHandler) {
+      TalkHandler talkHandler,
+      boolean statelessChallenges,
+      int maxInFlightRequestsPerSession) {
     this.nodeTable = nodeTable;
     this.localNodeRecordStore = localNodeRecordStore;
     final NodeRecord homeNodeRecord = localNodeRecordStore.getLocalNodeRecord();
@@ -92,7 +97,13 @@ public class DiscoveryManagerImpl implements DiscoveryManager {
     incomingPipeline
         .addHandler(new IncomingDataPacker(homeNodeRecord.getNodeId()))
         .addHandler(new WhoAreYouSessionResolver(nodeSessionManager))
-        .addHandler(new UnknownPacketTagToSender())
+        .addHandler(new UnknownPacketTagToSender());
+    if (statelessChallenges) {
+      incomingPipeline.addHandler(
+          new StatelessWhoAreYouHandler(
+              nodeSessionManager, nodeTable, outgoingPipeline, Clock.systemUTC()));
+    }
+    incomingPipeline
         .addHandler(nodeSessionManager)
         .addHandler(new PacketDispatcherHandler())
         .addHandler(new WhoAreYouPacketHandler(outgoingPipeline, taskScheduler))
@@ -109,7 +120,7 @@ public class DiscoveryManagerImpl implements DiscoveryManager {
         .addHandler(new NodeSessionRequestHandler())
         .addHandler(nodeSessionManager)
         .addHandler(new NewTaskHandler())
-        .addHandler(new NextTaskHandler(outgoingPipeline, taskScheduler));
+        .addHandler(new NextTaskHandler(maxInFlightRequestsPerSession));
   }
 
   private void requestUpdatedEnr(final NodeRecord record) {
@@ -168,9 +179,10 @@ public class DiscoveryManagerImpl implements DiscoveryManager {
   }
 
   @Override
-  public CompletableFuture<Void> findNodes(NodeRecord nodeRecord, List<Integer> distances) {
+  public CompletableFuture<Collection<NodeRecord>> findNodes(
+      NodeRecord nodeRecord, List<Integer> distances) {
     addNode(nodeRecord);
-    Request<Void> request =
+    Request<Collection<NodeRecord>> request =
         new Request<>(
             new CompletableFuture<>(),
             reqId -> new FindNodeMessage(reqId, distances),
@@ -3,18 +3,28 @@
  */
 package org.ethereum.beacon.discovery;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.liveness.LivenessChecker;
 import org.ethereum.beacon.discovery.scheduler.ExpirationSchedulerFactory;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.storage.EnrFieldIndex;
+import org.ethereum.beacon.discovery.storage.NodeQuery;
+import org.ethereum.beacon.discovery.storage.NodeRecordUpdates;
 import org.ethereum.beacon.discovery.storage.NodeTable;
 import org.ethereum.beacon.discovery.task.DiscoveryTaskManager;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.BufferOverflowStrategy;
 
 public class DiscoverySystem {
   private static final Logger LOG = LogManager.getLogger();
@@ -22,41 +32,74 @@ public class DiscoverySystem {
   private final DiscoveryTaskManager taskManager;
   private final ExpirationSchedulerFactory expirationSchedulerFactory;
   private final NodeTable nodeTable;
+  private final NodeRecordUpdates nodeRecordUpdates;
   private final List<NodeRecord> bootnodes;
+  private final Optional<LivenessChecker> livenessChecker;
+  private final int bootstrapPeerCount;
+  private final Duration bootstrapTimeout;
+  private final CompletableFuture<Integer> bootstrapResult = new CompletableFuture<>();
 
   DiscoverySystem(
       final DiscoveryManager discoveryManager,
       final DiscoveryTaskManager taskManager,
       final ExpirationSchedulerFactory expirationSchedulerFactory,
       final NodeTable nodeTable,
-      final List<NodeRecord> bootnodes) {
+      final List<NodeRecord> bootnodes,
+      final Optional<LivenessChecker> livenessChecker,
+      final int bootstrapPeerCount,
+      final Duration bootstrapTimeout) {
     this.discoveryManager = discoveryManager;
     this.taskManager = taskManager;
     this.expirationSchedulerFactory = expirationSchedulerFactory;
     this.nodeTable = nodeTable;
+    this.nodeRecordUpdates = new NodeRecordUpdates(nodeTable);
     this.bootnodes = bootnodes;
+    this.livenessChecker = livenessChecker;
+    this.bootstrapPeerCount = bootstrapPeerCount;
+    this.bootstrapTimeout = bootstrapTimeout;
   }
 
   public CompletableFuture<Void> start() {
-    return discoveryManager.start().thenRun(taskManager::start).thenRun(this::pingBootnodes);
+    return discoveryManager.start().thenRun(taskManager::start).thenRun(this::bootstrap);
   }
 
-  private void pingBootnodes() {
-    bootnodes.forEach(
-        bootnode ->
-            discoveryManager
-                .ping(bootnode)
-                .exceptionally(
-                    e -> {
-                      LOG.debug("Failed to ping bootnode: " + bootnode);
-                      return null;
-                    }));
+  private void bootstrap() {
+    taskManager
+        .bootstrap(bootnodes, bootstrapPeerCount, bootstrapTimeout)
+        .whenComplete(
+            (livePeerCount, error) -> {
+              if (error != null) {
+                LOG.debug("Bootstrap failed", error);
+                bootstrapResult.completeExceptionally(error);
+              } else {
+                bootstrapResult.complete(livePeerCount);
+              }
+            });
+  }
+
+  /**
+   * Returns future which completes after start when the configured number of live peers is reached
+   * or the bootstrap timeout passes, whichever comes first
+   *
+   * @return Future of the number of live peers at the end of the bootstrap
+   */
+  public CompletableFuture<Integer> getBootstrapResult() {
+    return bootstrapResult;
+  }
+
+  /**
+   * Returns the time it took to reach the configured number of live peers after start, empty if
+   * it wasn't reached (yet)
+   */
+  public Optional<Duration> getBootstrapTime() {
+    return taskManager.getBootstrapTime();
   }
 
   public void stop() {
     taskManager.stop();
     discoveryManager.stop();
     expirationSchedulerFactory.stop();
+    nodeTable.close();
   }
 
   public NodeRecord getLocalNodeRecord() {
@@ -72,10 +115,11 @@ public class DiscoverySystem {
    *
    * @param nodeRecord Ethereum Node record
    * @param distances Distances to search for
-   * @return Future which is fired when reply is received or fails in timeout/not successful
-   *     handshake/bad message exchange.
+   * @return Future of the valid node records at requested distances from the reply, which fails
+   *     in timeout/not successful handshake/bad message exchange.
    */
-  public CompletableFuture<Void> findNodes(NodeRecord nodeRecord, List<Integer> distances) {
+  public CompletableFuture<Collection<NodeRecord>> findNodes(
+      NodeRecord nodeRecord, List<Integer> distances) {
     return discoveryManager.findNodes(nodeRecord, distances);
   }
 
@@ -105,7 +149,99 @@ public class DiscoverySystem {
     return nodeTable.streamClosestNodes(Bytes32.ZERO, 0);
   }
 
+  /**
+   * Indexes known nodes by an ENR field, so {@link #findKnownNodes(Predicate, int)} with the index
+   * conditions doesn't scan all of them, see {@link EnrFieldIndex}
+   */
+  public void addKnownNodesIndex(EnrFieldIndex index) {
+    nodeTable.addIndex(index);
+  }
+
+  /**
+   * Returns known nodes matching the predicate
+   *
+   * @param predicate Node condition, {@link NodeQuery} conditions are looked up in the indexes
+   * @param limit Maximum number of nodes to return
+   */
+  public List<NodeRecordInfo> findKnownNodes(Predicate<NodeRecordInfo> predicate, int limit) {
+    return nodeTable.findNodes(predicate, limit);
+  }
+
+  /**
+   * Streams new, updated and live confirmed node records as they are saved, see {@link
+   * NodeRecordUpdates}. Up to {@link NodeRecordUpdates#DEFAULT_BUFFER_SIZE} records are buffered
+   * for a slow subscriber, dropping the oldest ones on overflow.
+   */
+  public Publisher<NodeRecord> streamNodeRecordUpdates() {
+    return streamNodeRecordUpdates(
+        NodeRecordUpdates.DEFAULT_BUFFER_SIZE, BufferOverflowStrategy.DROP_OLDEST);
+  }
+
+  /**
+   * Streams new, updated and live confirmed node records as they are saved, see {@link
+   * NodeRecordUpdates}
+   *
+   * @param bufferSize Maximum number of records buffered for a subscriber which doesn't keep up
+   * @param overflowStrategy What to do with a record when the buffer is full
+   */
+  public Publisher<NodeRecord> streamNodeRecordUpdates(
+      int bufferSize, BufferOverflowStrategy overflowStrategy) {
+    return nodeRecordUpdates.stream(bufferSize, overflowStrategy);
+  }
+
   public CompletableFuture<Void> searchForNewPeers() {
     return taskManager.searchForNewPeers();
   }
+
+  /**
+   * Performs iterative Kademlia lookup of the nodes closest to the target
+   *
+   * @param target Node id to look up
+   * @return Future of the closest to the target nodes which responded during the lookup, ordered
+   *     by distance to the target
+   */
+  public CompletableFuture<List<NodeRecord>> lookup(Bytes32 target) {
+    return taskManager.lookup(target);
+  }
+
+  /**
+   * Searches the network for nodes matching the predicate with lookups of random targets. Every
+   * node returned by the queried peers is tested, so the matching ones are streamed as soon as
+   * they arrive. Every subscriber runs its own search.
+   *
+   * @param predicate Condition on the node record, e.g. a subnet bit set in the attnets field
+   * @param count Number of matching nodes after which the search stops
+   * @param timeBudget Time after which the search stops even if fewer nodes are found
+   * @return Stream of distinct matching nodes, completed when the search is over
+   */
+  public Publisher<NodeRecord> searchNodes(
+      Predicate<NodeRecord> predicate, int count, Duration timeBudget) {
+    return taskManager.searchNodes(predicate, count, timeBudget);
+  }
+
+  /**
+   * Returns the number of lookups which joined a lookup of a nearby target in progress or reused
+   * its recent result. Hit rate is {@code hits / (hits + misses)}.
+   */
+  public long getLookupCacheHitCount() {
+    return taskManager.getLookupCacheHitCount();
+  }
+
+  /** Returns the number of lookups which had to query the network */
+  public long getLookupCacheMissCount() {
+    return taskManager.getLookupCacheMissCount();
+  }
+
+  /**
+   * Returns the number of bucket liveness checks waiting for a ping slot. A growing backlog means
+   * the checks fall behind the bucket churn.
+   */
+  public int getLivenessCheckBacklog() {
+    return livenessChecker.map(LivenessChecker::getBacklog).orElse(0);
+  }
+
+  /** Returns the number of liveness check pings which may be in flight at once */
+  public int getLivenessCheckConcurrencyLimit() {
+    return livenessChecker.map(LivenessChecker::getConcurrencyLimit).orElse(0);
+  }
 }
@@ -11,6 +11,8 @@ import static java.util.Objects.requireNonNullElseGet;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
@@ -20,22 +22,28 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.liveness.LivenessChecker;
 import org.ethereum.beacon.discovery.network.NettyDiscoveryServer;
 import org.ethereum.beacon.discovery.network.NettyDiscoveryServerImpl;
+import org.ethereum.beacon.discovery.pipeline.handler.NextTaskHandler;
 import org.ethereum.beacon.discovery.scheduler.ExpirationSchedulerFactory;
 import org.ethereum.beacon.discovery.scheduler.Schedulers;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
+import org.ethereum.beacon.discovery.storage.KBuckets;
+import org.ethereum.beacon.discovery.storage.LivenessDistanceEvictionPolicy;
 import org.ethereum.beacon.discovery.storage.LocalNodeRecordStore;
 import org.ethereum.beacon.discovery.storage.NewAddressHandler;
 import org.ethereum.beacon.discovery.storage.NodeBucketStorage;
 import org.ethereum.beacon.discovery.storage.NodeBucketStorageImpl;
 import org.ethereum.beacon.discovery.storage.NodeRecordListener;
 import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.storage.NodeTableImpl;
 import org.ethereum.beacon.discovery.storage.NodeTableStorage;
 import org.ethereum.beacon.discovery.storage.NodeTableStorageFactory;
 import org.ethereum.beacon.discovery.storage.NodeTableStorageFactoryImpl;
 import org.ethereum.beacon.discovery.task.DiscoveryTaskManager;
+import org.ethereum.beacon.discovery.task.RecursiveLookupTask;
 
 public class DiscoverySystemBuilder {
 
@@ -53,6 +61,17 @@ public class DiscoverySystemBuilder {
   private int trafficReadLimit = 250000; // bytes per sec
   private TalkHandler talkHandler = TalkHandler.NOOP;
   private NettyDiscoveryServer discoveryServer = null;
+  private boolean statelessChallenges = false;
+  private int maxInFlightRequestsPerSession = NextTaskHandler.DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+  private Optional<Path> nodeTableDirectory = Optional.empty();
+  private int nodeTableCapacity = NodeTableImpl.UNBOUNDED;
+  private boolean compactNodeTable = false;
+  private boolean simpleNodeBuckets = false;
+  private int lookupConcurrency = DiscoveryTaskManager.DEFAULT_LOOKUP_CONCURRENCY;
+  private int lookupResultSize = DiscoveryTaskManager.DEFAULT_LOOKUP_RESULT_SIZE;
+  private int lookupDistancesPerQuery = DiscoveryTaskManager.DEFAULT_LOOKUP_DISTANCES_PER_QUERY;
+  private int bootstrapPeerCount = DiscoveryTaskManager.DEFAULT_BOOTSTRAP_PEER_COUNT;
+  private Duration bootstrapTimeout = DiscoveryTaskManager.DEFAULT_BOOTSTRAP_TIMEOUT;
 
   public DiscoverySystemBuilder trafficReadLimit(final int trafficReadLimit) {
     this.trafficReadLimit = trafficReadLimit;
@@ -128,6 +147,112 @@ public class DiscoverySystemBuilder {
     return this;
   }
 
+  /**
+   * Answers unknown senders with WHOAREYOU challenge without creating a session until a valid
+   * handshake comes back. Recommended for bootnodes.
+   */
+  public DiscoverySystemBuilder statelessChallenges(boolean statelessChallenges) {
+    this.statelessChallenges = statelessChallenges;
+    return this;
+  }
+
+  /** Limits the number of requests sent to a single peer and awaiting a response */
+  public DiscoverySystemBuilder maxInFlightRequestsPerSession(int maxInFlightRequestsPerSession) {
+    checkArgument(
+        maxInFlightRequestsPerSession > 0, "Max in-flight requests per session should be positive");
+    this.maxInFlightRequestsPerSession = maxInFlightRequestsPerSession;
+    return this;
+  }
+
+  /**
+   * Persists known nodes in the directory, so they are available right after restart instead of
+   * bootstrapping from boot nodes again
+   */
+  public DiscoverySystemBuilder nodeTableDirectory(Path nodeTableDirectory) {
+    this.nodeTableDirectory = Optional.of(nodeTableDirectory);
+    return this;
+  }
+
+  /**
+   * Limits the number of nodes kept in the node table. Recently live nodes are preferred and all
+   * distances are kept covered evenly, see {@link LivenessDistanceEvictionPolicy}
+   */
+  public DiscoverySystemBuilder nodeTableCapacity(int nodeTableCapacity) {
+    checkArgument(nodeTableCapacity > 0, "Node table capacity should be positive");
+    this.nodeTableCapacity = nodeTableCapacity;
+    return this;
+  }
+
+  /**
+   * Keeps node records off-heap in the in-memory node table, decoding them on access. Saves a lot
+   * of heap for large tables. Has no effect when {@link #nodeTableDirectory(Path)} is set, as the
+   * persistent table is off-heap already.
+   */
+  public DiscoverySystemBuilder compactNodeTable(boolean compactNodeTable) {
+    this.compactNodeTable = compactNodeTable;
+    return this;
+  }
+
+  /**
+   * Falls back to {@link NodeBucketStorageImpl} buckets, which keep nodes that were active most
+   * recently without pinging anyone, instead of the liveness checked {@link KBuckets}
+   */
+  public DiscoverySystemBuilder simpleNodeBuckets(boolean simpleNodeBuckets) {
+    this.simpleNodeBuckets = simpleNodeBuckets;
+    return this;
+  }
+
+  /** Sets the number of FINDNODE requests a lookup keeps in flight, known as alpha in Kademlia */
+  public DiscoverySystemBuilder lookupConcurrency(int lookupConcurrency) {
+    checkArgument(lookupConcurrency > 0, "Lookup concurrency should be positive");
+    this.lookupConcurrency = lookupConcurrency;
+    return this;
+  }
+
+  /**
+   * Sets the number of closest nodes a lookup is looking for and returns, known as k in Kademlia.
+   * The lookup is over when that many closest nodes have been queried.
+   */
+  public DiscoverySystemBuilder lookupResultSize(int lookupResultSize) {
+    checkArgument(lookupResultSize > 0, "Lookup result size should be positive");
+    this.lookupResultSize = lookupResultSize;
+    return this;
+  }
+
+  /**
+   * Sets the number of distances requested by every FINDNODE of a lookup: the distance from the
+   * peer to the target and its neighbours. Setting it to 1 requests the target distance only.
+   */
+  public DiscoverySystemBuilder lookupDistancesPerQuery(int lookupDistancesPerQuery) {
+    checkArgument(
+        lookupDistancesPerQuery > 0
+            && lookupDistancesPerQuery <= RecursiveLookupTask.MAX_DISTANCES_PER_QUERY,
+        "Lookup distances per query should be in range [1, %s]",
+        RecursiveLookupTask.MAX_DISTANCES_PER_QUERY);
+    this.lookupDistancesPerQuery = lookupDistancesPerQuery;
+    return this;
+  }
+
+  /**
+   * Sets the number of live peers the bootstrap after start is looking for. Bootnodes and the nodes
+   * they return are queried in parallel until that many peers respond, see {@link
+   * DiscoverySystem#getBootstrapResult()}.
+   */
+  public DiscoverySystemBuilder bootstrapPeerCount(int bootstrapPeerCount) {
+    checkArgument(bootstrapPeerCount > 0, "Bootstrap peer count should be positive");
+    this.bootstrapPeerCount = bootstrapPeerCount;
+    return this;
+  }
+
+  /** Sets the time after which the bootstrap is over even if it hasn't found enough live peers */
+  public DiscoverySystemBuilder bootstrapTimeout(Duration bootstrapTimeout) {
+    checkArgument(
+        bootstrapTimeout != null && !bootstrapTimeout.isNegative(),
+        "Bootstrap timeout should not be negative");
+    this.bootstrapTimeout = bootstrapTimeout;
+    return this;
+  }
+
   private void createDefaults() {
     schedulers = requireNonNullElseGet(schedulers, Schedulers::createDefault);
     final InetSocketAddress serverListenAddress =
@@ -148,9 +273,9 @@ public class DiscoverySystemBuilder {
             () ->
                 new LocalNodeRecordStore(
                     localNodeRecord, privateKey, localNodeRecordListener, newAddressHandler));
-    nodeBucketStorage =
-        requireNonNullElseGet(
-            nodeBucketStorage, () -> new NodeBucketStorageImpl(localNodeRecordStore));
+    nodeBucketStorage = requireNonNullElseGet(nodeBucketStorage, this::createNodeBucketStorage);
+    nodeTableStorageFactory =
+        requireNonNullElseGet(nodeTableStorageFactory, this::createNodeTableStorageFactory);
     nodeTableStorage =
         requireNonNullElseGet(
             nodeTableStorage, () -> nodeTableStorageFactory.createTable(bootnodes));
@@ -166,14 +291,44 @@ public class DiscoverySystemBuilder {
                             .build())));
   }
 
-  final NodeTableStorageFactory nodeTableStorageFactory = new NodeTableStorageFactoryImpl();
+  private NodeBucketStorage createNodeBucketStorage() {
+    if (simpleNodeBuckets) {
+      return new NodeBucketStorageImpl(localNodeRecordStore);
+    }
+    // Discovery manager needs the buckets to be created, so it's resolved on the first ping
+    livenessChecker = new LivenessChecker(node -> checkNotNull(discoveryManager).ping(node));
+    return new KBuckets(Clock.systemUTC(), localNodeRecordStore, livenessChecker);
+  }
+
+  private NodeTableStorageFactory createNodeTableStorageFactory() {
+    final NodeTableStorageFactoryImpl factory =
+        nodeTableDirectory
+            .map(
+                directory ->
+                    NodeTableStorageFactoryImpl.createPersistent(directory, nodeRecordFactory))
+            .orElseGet(
+                () ->
+                    compactNodeTable
+                        ? NodeTableStorageFactoryImpl.createCompact(nodeRecordFactory)
+                        : new NodeTableStorageFactoryImpl());
+    if (nodeTableCapacity == NodeTableImpl.UNBOUNDED) {
+      return factory;
+    }
+    return factory.withCapacity(
+        nodeTableCapacity,
+        () -> new LivenessDistanceEvictionPolicy(localNodeRecord.getNodeId()));
+  }
+
   final int clientNumber = COUNTER.incrementAndGet();
 
+  NodeTableStorageFactory nodeTableStorageFactory;
   NodeTableStorage nodeTableStorage;
   NodeTable nodeTable;
   NodeBucketStorage nodeBucketStorage;
   LocalNodeRecordStore localNodeRecordStore;
   ExpirationSchedulerFactory expirationSchedulerFactory;
+  LivenessChecker livenessChecker;
+  volatile DiscoveryManager discoveryManager;
 
   public DiscoverySystem build() {
     checkNotNull(localNodeRecord, "Missing local node record");
@@ -197,23 +352,38 @@ public class DiscoverySystemBuilder {
             true,
             expirationSchedulerFactory,
             retryTimeout,
-            lifeCheckInterval);
+            lifeCheckInterval,
+            lookupConcurrency,
+            lookupResultSize,
+            lookupDistancesPerQuery);
     return new DiscoverySystem(
-        discoveryManager, discoveryTaskManager, expirationSchedulerFactory, nodeTable, bootnodes);
+        discoveryManager,
+        discoveryTaskManager,
+        expirationSchedulerFactory,
+        nodeTable,
+        bootnodes,
+        Optional.ofNullable(livenessChecker),
+        bootstrapPeerCount,
+        bootstrapTimeout);
   }
 
   @VisibleForTesting
   DiscoveryManagerImpl buildDiscoveryManager() {
     createDefaults();
-    return new DiscoveryManagerImpl(
-        discoveryServer,
-        nodeTable,
-        nodeBucketStorage,
-        localNodeRecordStore,
-        privateKey,
-        nodeRecordFactory,
-        schedulers.newSingleThreadDaemon("discovery-client-" + clientNumber),
-        expirationSchedulerFactory,
-        talkHandler);
+    final DiscoveryManagerImpl discoveryManager =
+        new DiscoveryManagerImpl(
+            discoveryServer,
+            nodeTable,
+            nodeBucketStorage,
+            localNodeRecordStore,
+            privateKey,
+            nodeRecordFactory,
+            schedulers.newSingleThreadDaemon("discovery-client-" + clientNumber),
+            expirationSchedulerFactory,
+            talkHandler,
+            statelessChallenges,
+            maxInFlightRequestsPerSession);
+    this.discoveryManager = discoveryManager;
+    return discoveryManager;
   }
 }
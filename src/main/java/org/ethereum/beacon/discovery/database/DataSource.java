@@ -5,6 +5,7 @@
 package org.ethereum.beacon.discovery.database;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 
 /**
@@ -38,4 +39,17 @@ public interface DataSource<KeyType, ValueType> extends ReadonlyDataSource<KeyTy
    * @param key Key
    */
   void remove(@Nonnull KeyType key);
+
+  /**
+   * Returns all keys stored. Modifications made while the stream is consumed may be not reflected.
+   *
+   * @return stream of keys
+   */
+  Stream<KeyType> keys();
+
+  /**
+   * Forces pending updates to the underlying storage and releases its resources. The data source
+   * shouldn't be used afterwards.
+   */
+  default void close() {}
 }
@@ -7,6 +7,7 @@ package org.ethereum.beacon.discovery.database;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 
 public class HashMapDataSource<K, V> implements DataSource<K, V> {
@@ -27,4 +28,9 @@ public class HashMapDataSource<K, V> implements DataSource<K, V> {
   public void remove(@Nonnull K key) {
     store.remove(key);
   }
+
+  @Override
+  public Stream<K> keys() {
+    return store.keySet().stream();
+  }
 }
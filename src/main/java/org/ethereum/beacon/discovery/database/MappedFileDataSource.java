@@ -0,0 +1,460 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.annotation.Nonnull;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Persistent {@link DataSource} backed by an append-only log of memory-mapped segment files.
+ *
+ * <p>Every {@link #put(Bytes, Object)} and {@link #remove(Bytes)} appends a record to the active
+ * segment and updates an in-memory index of record locations, so reads are served straight from
+ * mapped memory. Record layout is
+ *
+ * <p><code>record-size (int) || checksum (int) || type (byte) || key-size (short) || key || value
+ * </code>
+ *
+ * <p>where {@code checksum} is CRC32 of the rest of the record. Mapped pages may reach the disk in
+ * any order, so on start records are replayed until the first one with a broken checksum, which is
+ * taken for a torn write at the tail. The index is rebuilt from record headers and keys, values are
+ * checksummed but not decoded.
+ *
+ * <p>Overwritten and removed records are garbage. Once it takes more than {@link
+ * #COMPACTION_THRESHOLD} of sealed segments, the live records of all sealed segments are copied to
+ * the head of the log in background and sealed segment files are deleted. Sealed segments are never
+ * modified, so compaction reads them without locking and takes the write lock only to append
+ * copied records in small batches.
+ */
+public class MappedFileDataSource<V> implements DataSource<Bytes, V>, Closeable {
+  public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+  static final double COMPACTION_THRESHOLD = 0.5;
+  private static final Logger logger = LogManager.getLogger(MappedFileDataSource.class);
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final int COMPACTION_BATCH_SIZE = 256;
+  private static final int CHECKSUM_OFFSET = Integer.BYTES;
+  private static final int TYPE_OFFSET = CHECKSUM_OFFSET + Integer.BYTES;
+  private static final int KEY_SIZE_OFFSET = TYPE_OFFSET + Byte.BYTES;
+  private static final int HEADER_SIZE = KEY_SIZE_OFFSET + Short.BYTES;
+  private static final byte TYPE_PUT = 1;
+  private static final byte TYPE_REMOVE = 2;
+
+  private final Path directory;
+  private final Function<V, Bytes> serializer;
+  private final Function<Bytes, V> deserializer;
+  private final int segmentSize;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Bytes, Location> index = new HashMap<>();
+  private final List<Segment> sealedSegments = new ArrayList<>();
+  private final ExecutorService compactionExecutor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("discovery-compaction-%d")
+              .setDaemon(true)
+              .build());
+  private Segment activeSegment;
+  private boolean compactionScheduled = false;
+
+  public MappedFileDataSource(
+      Path directory, Function<V, Bytes> serializer, Function<Bytes, V> deserializer) {
+    this(directory, serializer, deserializer, DEFAULT_SEGMENT_SIZE);
+  }
+
+  public MappedFileDataSource(
+      Path directory,
+      Function<V, Bytes> serializer,
+      Function<Bytes, V> deserializer,
+      int segmentSize) {
+    checkArgument(segmentSize > HEADER_SIZE, "Segment size is too small: " + segmentSize);
+    this.directory = directory;
+    this.serializer = serializer;
+    this.deserializer = deserializer;
+    this.segmentSize = segmentSize;
+    try {
+      Files.createDirectories(directory);
+      load();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open node storage in " + directory, e);
+    }
+    maybeScheduleCompaction();
+  }
+
+  @Override
+  public Optional<V> get(@Nonnull Bytes key) {
+    final Bytes value;
+    lock.readLock().lock();
+    try {
+      Location location = index.get(key);
+      if (location == null) {
+        return Optional.empty();
+      }
+      value = location.readValue();
+    } finally {
+      lock.readLock().unlock();
+    }
+    return Optional.of(deserializer.apply(value));
+  }
+
+  @Override
+  public void put(@Nonnull Bytes key, @Nonnull V value) {
+    Bytes serialized = serializer.apply(value);
+    lock.writeLock().lock();
+    try {
+      Location location = append(TYPE_PUT, key, serialized);
+      Optional.ofNullable(index.put(key, location)).ifPresent(Location::release);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(@Nonnull Bytes key) {
+    lock.writeLock().lock();
+    try {
+      Location location = index.remove(key);
+      if (location == null) {
+        return;
+      }
+      location.release();
+      append(TYPE_REMOVE, key, Bytes.EMPTY).release();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Stream<Bytes> keys() {
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(index.keySet()).stream();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return index.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Forces all written records to the disk */
+  public void flush() {
+    lock.readLock().lock();
+    try {
+      activeSegment.buffer.force();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    compactionExecutor.shutdown();
+    try {
+      // Let in-progress compaction finish, so segment files are not deleted after close
+      compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  /**
+   * Moves live records of all sealed segments to the head of the log and deletes sealed segments.
+   * Tombstones are dropped as well: there are no older segments left which they could shadow.
+   */
+  @VisibleForTesting
+  synchronized void compact() {
+    try {
+      final List<Segment> compacted;
+      final List<Map.Entry<Bytes, Location>> liveRecords = new ArrayList<>();
+      lock.readLock().lock();
+      try {
+        compacted = new ArrayList<>(sealedSegments);
+        index.forEach(
+            (key, location) -> {
+              if (compacted.contains(location.segment)) {
+                liveRecords.add(Map.entry(key, location));
+              }
+            });
+      } finally {
+        lock.readLock().unlock();
+      }
+      if (compacted.isEmpty()) {
+        return;
+      }
+      for (int from = 0; from < liveRecords.size(); from += COMPACTION_BATCH_SIZE) {
+        List<Map.Entry<Bytes, Location>> batch =
+            liveRecords.subList(from, Math.min(from + COMPACTION_BATCH_SIZE, liveRecords.size()));
+        List<Bytes> values =
+            batch.stream().map(entry -> entry.getValue().readValue()).collect(Collectors.toList());
+        lock.writeLock().lock();
+        try {
+          for (int i = 0; i < batch.size(); i++) {
+            Bytes key = batch.get(i).getKey();
+            Location location = batch.get(i).getValue();
+            // Skip records which were overwritten or removed while copying
+            if (index.get(key) == location) {
+              location.release();
+              index.put(key, append(TYPE_PUT, key, values.get(i)));
+            }
+          }
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+      final Segment head;
+      lock.writeLock().lock();
+      try {
+        // Segments rolled during compaction are not compacted
+        sealedSegments.removeAll(compacted);
+        head = activeSegment;
+      } finally {
+        lock.writeLock().unlock();
+      }
+      // Segments rolled during compaction were forced on roll already
+      head.buffer.force();
+      for (Segment segment : compacted) {
+        Files.deleteIfExists(segment.path);
+      }
+      logger.debug("Compacted {} segments in {}", compacted.size(), directory);
+    } catch (IOException e) {
+      logger.error("Failed to compact node storage in " + directory, e);
+    } finally {
+      lock.writeLock().lock();
+      try {
+        compactionScheduled = false;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int getSegmentCount() {
+    lock.readLock().lock();
+    try {
+      return sealedSegments.size() + 1;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void load() throws IOException {
+    List<Path> paths;
+    try (Stream<Path> files = Files.list(directory)) {
+      paths =
+          files
+              .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    for (Path path : paths) {
+      if (activeSegment != null) {
+        sealedSegments.add(activeSegment);
+      }
+      activeSegment = openSegment(path, getSegmentNumber(path));
+      replay(activeSegment);
+    }
+    if (activeSegment == null) {
+      activeSegment = openSegment(segmentPath(0), 0);
+    } else {
+      // Wipe leftovers of a torn write, otherwise they could be taken for a record later
+      MappedByteBuffer buffer = activeSegment.buffer;
+      for (int i = activeSegment.writePosition; i < buffer.capacity(); i++) {
+        // Checked first to not dirty pages which are clean already
+        if (buffer.get(i) != 0) {
+          buffer.put(i, (byte) 0);
+        }
+      }
+    }
+  }
+
+  private void replay(Segment segment) {
+    ByteBuffer buffer = segment.buffer.duplicate();
+    int position = 0;
+    while (position + HEADER_SIZE <= buffer.capacity()) {
+      int recordSize = buffer.getInt(position);
+      if (recordSize < HEADER_SIZE
+          || position + recordSize > buffer.capacity()
+          || buffer.getInt(position + CHECKSUM_OFFSET) != checksum(buffer, position, recordSize)) {
+        break;
+      }
+      byte type = buffer.get(position + TYPE_OFFSET);
+      int keySize = buffer.getShort(position + KEY_SIZE_OFFSET) & 0xFFFF;
+      if (keySize > recordSize - HEADER_SIZE) {
+        break;
+      }
+      byte[] key = new byte[keySize];
+      buffer.position(position + HEADER_SIZE);
+      buffer.get(key);
+      Location location = new Location(segment, position, recordSize, key.length);
+      segment.liveBytes += recordSize;
+      if (type == TYPE_PUT) {
+        Optional.ofNullable(index.put(Bytes.wrap(key), location)).ifPresent(Location::release);
+      } else {
+        Optional.ofNullable(index.remove(Bytes.wrap(key))).ifPresent(Location::release);
+        location.release();
+      }
+      position += recordSize;
+    }
+    segment.writePosition = position;
+  }
+
+  private Location append(byte type, Bytes key, Bytes value) {
+    int recordSize = HEADER_SIZE + key.size() + value.size();
+    checkArgument(key.size() <= 0xFFFF, "Key is too large: " + key.size());
+    checkArgument(
+        recordSize <= segmentSize, "Record of %s bytes doesn't fit segment", recordSize);
+    if (activeSegment.writePosition + recordSize > activeSegment.buffer.capacity()) {
+      rollSegment();
+    }
+    Segment segment = activeSegment;
+    int position = segment.writePosition;
+    ByteBuffer buffer = segment.buffer.duplicate();
+    buffer.position(position + TYPE_OFFSET);
+    buffer.put(type);
+    buffer.putShort((short) key.size());
+    buffer.put(key.toArrayUnsafe());
+    buffer.put(value.toArrayUnsafe());
+    buffer.putInt(position + CHECKSUM_OFFSET, checksum(buffer, position, recordSize));
+    // Size goes last, so the record is not visible on replay until it's complete
+    buffer.putInt(position, recordSize);
+    segment.writePosition += recordSize;
+    segment.liveBytes += recordSize;
+    return new Location(segment, position, recordSize, key.size());
+  }
+
+  private void rollSegment() {
+    activeSegment.buffer.force();
+    sealedSegments.add(activeSegment);
+    long number = activeSegment.number + 1;
+    try {
+      activeSegment = openSegment(segmentPath(number), number);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create node storage segment in " + directory, e);
+    }
+    maybeScheduleCompaction();
+  }
+
+  private void maybeScheduleCompaction() {
+    long sealedBytes = 0;
+    long liveBytes = 0;
+    for (Segment segment : sealedSegments) {
+      sealedBytes += segment.writePosition;
+      liveBytes += segment.liveBytes;
+    }
+    if (compactionScheduled
+        || compactionExecutor.isShutdown()
+        || sealedBytes == 0
+        || liveBytes >= sealedBytes * (1 - COMPACTION_THRESHOLD)) {
+      return;
+    }
+    compactionScheduled = true;
+    compactionExecutor.execute(this::compact);
+  }
+
+  private Segment openSegment(Path path, long number) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = Math.max(channel.size(), segmentSize);
+      // Mapping stays valid after the channel is closed
+      return new Segment(path, number, channel.map(MapMode.READ_WRITE, 0, size));
+    }
+  }
+
+  private static int checksum(ByteBuffer buffer, int position, int recordSize) {
+    ByteBuffer record = buffer.duplicate();
+    record.limit(position + recordSize).position(position + TYPE_OFFSET);
+    CRC32 crc = new CRC32();
+    crc.update(record);
+    return (int) crc.getValue();
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(String.format("%016d%s", number, SEGMENT_SUFFIX));
+  }
+
+  private static long getSegmentNumber(Path path) {
+    String fileName = path.getFileName().toString();
+    return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static class Segment {
+    private final Path path;
+    private final long number;
+    private final MappedByteBuffer buffer;
+    private int writePosition = 0;
+    private int liveBytes = 0;
+
+    private Segment(Path path, long number, MappedByteBuffer buffer) {
+      this.path = path;
+      this.number = number;
+      this.buffer = buffer;
+    }
+  }
+
+  private static class Location {
+    private final Segment segment;
+    private final int position;
+    private final int recordSize;
+    private final int keySize;
+
+    private Location(Segment segment, int position, int recordSize, int keySize) {
+      this.segment = segment;
+      this.position = position;
+      this.recordSize = recordSize;
+      this.keySize = keySize;
+    }
+
+    private Bytes readValue() {
+      ByteBuffer buffer = segment.buffer.duplicate();
+      buffer.position(position + HEADER_SIZE + keySize);
+      byte[] value = new byte[recordSize - HEADER_SIZE - keySize];
+      buffer.get(value);
+      return Bytes.wrap(value);
+    }
+
+    /** Marks the record as garbage */
+    private void release() {
+      segment.liveBytes -= recordSize;
+    }
+  }
+}
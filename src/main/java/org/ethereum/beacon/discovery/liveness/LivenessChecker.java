@@ -3,53 +3,163 @@
  */
 package org.ethereum.beacon.discovery.liveness;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 
+/**
+ * Pings nodes to check their liveness, queueing checks over the concurrency limit.
+ *
+ * <p>The limit is adjusted with AIMD like TCP congestion window: every ping answered within {@link
+ * #FAST_PING_TIME} grows it by {@code 1 / limit}, i.e. by one per limit worth of fast pings, and a
+ * ping timeout halves it. Only one decrease is made for the pings sent before the previous
+ * decrease, as their timeouts report the same congestion.
+ *
+ * <p>Queued checks are served in {@link Priority} order, then in the order they were added. When
+ * the queue is full, a new check displaces the oldest check of lower priority or is dropped.
+ */
 public class LivenessChecker {
   private static final Logger LOG = LogManager.getLogger();
 
-  static final int MAX_CONCURRENT_PINGS = 3;
+  static final int INITIAL_CONCURRENCY_LIMIT = 3;
+  static final int MIN_CONCURRENCY_LIMIT = 1;
+  static final int MAX_CONCURRENCY_LIMIT = 64;
   static final int MAX_QUEUE_SIZE = 1000;
+  static final Duration FAST_PING_TIME = Duration.ofSeconds(1);
+  static final Duration PING_TIMEOUT = Duration.ofSeconds(5);
+
+  public enum Priority {
+    /** Checks of the nodes in the buckets, which decide whether a node should be evicted */
+    BUCKET_NODE,
+    /** Checks of the nodes which could replace evicted bucket nodes */
+    REPLACEMENT_CANDIDATE
+  }
 
   private final Set<NodeRecord> activePings = new HashSet<>();
-  private final Set<NodeRecord> queuedPings = new LinkedHashSet<>();
+  private final Map<NodeRecord, Priority> queuedPriorities = new HashMap<>();
+  // Queues by priority ordinal
+  private final List<Set<NodeRecord>> queuedPings = new ArrayList<>();
 
   private final Pinger pinger;
+  private final Clock clock;
+  private double concurrencyLimit = INITIAL_CONCURRENCY_LIMIT;
+  private long sentPingCount = 0;
+  private long lastDecreasePingCount = 0;
+  private long droppedCount = 0;
 
   public LivenessChecker(final Pinger pinger) {
+    this(pinger, Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  LivenessChecker(final Pinger pinger, final Clock clock) {
     this.pinger = pinger;
+    this.clock = clock;
+    for (int i = 0; i < Priority.values().length; i++) {
+      queuedPings.add(new LinkedHashSet<>());
+    }
   }
 
   /**
-   * Adds the specified node to the queue of nodes to perform a liveness check on.
+   * Adds the specified node to the queue of nodes to perform a liveness check on with {@link
+   * Priority#BUCKET_NODE} priority.
    *
    * @param node the node to check liveness
    */
-  public synchronized void checkLiveness(NodeRecord node) {
+  public void checkLiveness(NodeRecord node) {
+    checkLiveness(node, Priority.BUCKET_NODE);
+  }
+
+  /**
+   * Adds the specified node to the queue of nodes to perform a liveness check on. A node which is
+   * queued already is moved to the higher priority queue if needed.
+   *
+   * @param node the node to check liveness
+   * @param priority the priority of the check
+   */
+  public synchronized void checkLiveness(NodeRecord node, Priority priority) {
     if (activePings.contains(node)) {
       // Already checking node
-      // Note: We don't need to check queuedPings because it's a set so the add just does nothing
-      // and if we have capacity to ping immediately the queue must be empty.
       return;
     }
-    if (activePings.size() < MAX_CONCURRENT_PINGS) {
+    final Priority queuedPriority = queuedPriorities.get(node);
+    if (queuedPriority != null) {
+      if (priority.compareTo(queuedPriority) < 0) {
+        queuedPings.get(queuedPriority.ordinal()).remove(node);
+        queuedPings.get(priority.ordinal()).add(node);
+        queuedPriorities.put(node, priority);
+      }
+      return;
+    }
+    // If we have capacity to ping immediately the queue must be empty
+    if (activePings.size() < getConcurrencyLimit()) {
       sendPing(node);
-    } else if (queuedPings.size() < MAX_QUEUE_SIZE) {
-      queuedPings.add(node);
+    } else if (queuedPriorities.size() < MAX_QUEUE_SIZE || dropLowerPriorityCheck(priority)) {
+      queuedPings.get(priority.ordinal()).add(node);
+      queuedPriorities.put(node, priority);
+    } else {
+      droppedCount++;
+      LOG.trace("Liveness check queue is full, dropping check of node {}", node);
     }
   }
 
+  /** Returns the current number of pings which may be in flight at once */
+  public synchronized int getConcurrencyLimit() {
+    return (int) concurrencyLimit;
+  }
+
+  public synchronized int getActivePingCount() {
+    return activePings.size();
+  }
+
+  /** Returns the number of checks waiting in the queue */
+  public synchronized int getBacklog() {
+    return queuedPriorities.size();
+  }
+
+  /** Returns the number of checks dropped because the queue was full */
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  private boolean dropLowerPriorityCheck(final Priority priority) {
+    for (int ordinal = Priority.values().length - 1; ordinal > priority.ordinal(); ordinal--) {
+      final Iterator<NodeRecord> lowerPriorityPings = queuedPings.get(ordinal).iterator();
+      if (lowerPriorityPings.hasNext()) {
+        final NodeRecord droppedNode = lowerPriorityPings.next();
+        lowerPriorityPings.remove();
+        queuedPriorities.remove(droppedNode);
+        droppedCount++;
+        LOG.trace("Liveness check queue is full, dropping check of node {}", droppedNode);
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void sendPing(final NodeRecord node) {
-    queuedPings.remove(node);
     activePings.add(node);
+    final long pingNumber = sentPingCount++;
+    final long startTime = clock.millis();
     pinger
         .ping(node)
+        .orTimeout(PING_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
         .whenComplete(
             (__, error) -> {
               if (error != null) {
@@ -57,12 +167,54 @@ public class LivenessChecker {
               }
               synchronized (this) {
                 activePings.remove(node);
-                // Ping the next node in the queue if any.
-                queuedPings.stream().findFirst().ifPresent(this::sendPing);
+                if (error == null) {
+                  onPingSucceeded(clock.millis() - startTime);
+                } else if (Throwables.getRootCause(error) instanceof TimeoutException) {
+                  onPingTimedOut(pingNumber);
+                }
+                // Ping the next nodes in the queue if any.
+                pollQueuedPings();
               }
             });
   }
 
+  private void onPingSucceeded(final long pingTimeMillis) {
+    if (pingTimeMillis < FAST_PING_TIME.toMillis()) {
+      concurrencyLimit = Math.min(MAX_CONCURRENCY_LIMIT, concurrencyLimit + 1 / concurrencyLimit);
+    }
+  }
+
+  private void onPingTimedOut(final long pingNumber) {
+    if (pingNumber >= lastDecreasePingCount) {
+      concurrencyLimit = Math.max(MIN_CONCURRENCY_LIMIT, concurrencyLimit / 2);
+      lastDecreasePingCount = sentPingCount;
+    }
+  }
+
+  private void pollQueuedPings() {
+    // Queues are looked up again for every ping, as a ping completed immediately polls them too
+    while (activePings.size() < getConcurrencyLimit()) {
+      final Optional<NodeRecord> node = pollQueuedPing();
+      if (node.isEmpty()) {
+        return;
+      }
+      sendPing(node.get());
+    }
+  }
+
+  private Optional<NodeRecord> pollQueuedPing() {
+    for (Set<NodeRecord> queue : queuedPings) {
+      final Iterator<NodeRecord> queueIterator = queue.iterator();
+      if (queueIterator.hasNext()) {
+        final NodeRecord node = queueIterator.next();
+        queueIterator.remove();
+        queuedPriorities.remove(node);
+        return Optional.of(node);
+      }
+    }
+    return Optional.empty();
+  }
+
   public interface Pinger {
     CompletableFuture<Void> ping(NodeRecord node);
   }
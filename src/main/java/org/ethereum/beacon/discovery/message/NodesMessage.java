@@ -4,6 +4,8 @@
 
 package org.ethereum.beacon.discovery.message;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -28,11 +30,33 @@ public class NodesMessage implements V5Message {
   private final Integer total;
   // List of nodes upon request
   private final List<NodeRecord> nodeRecords;
+  // RLP list of nodes
+  private final Supplier<Bytes> encodedNodeRecords;
 
   public NodesMessage(Bytes requestId, Integer total, List<NodeRecord> nodeRecords) {
     this.requestId = requestId;
     this.total = total;
     this.nodeRecords = nodeRecords;
+    this.encodedNodeRecords = Suppliers.memoize(() -> encodeNodeRecords(nodeRecords));
+  }
+
+  /**
+   * Creates message with {@code nodeRecords} already encoded with {@link
+   * #encodeNodeRecords(List)}, so the same records could be sent many times without encoding them
+   * again
+   */
+  public NodesMessage(
+      Bytes requestId, Integer total, List<NodeRecord> nodeRecords, Bytes encodedNodeRecords) {
+    this.requestId = requestId;
+    this.total = total;
+    this.nodeRecords = nodeRecords;
+    this.encodedNodeRecords = () -> encodedNodeRecords;
+  }
+
+  public static Bytes encodeNodeRecords(List<NodeRecord> nodeRecords) {
+    return Bytes.wrap(
+        RlpEncoder.encode(
+            new RlpList(nodeRecords.stream().map(NodeRecord::asRlp).collect(Collectors.toList()))));
   }
 
   private static NodesMessage fromRlp(List<RlpType> rlpList, NodeRecordFactory nodeRecordFactory) {
@@ -69,15 +93,10 @@ public class NodesMessage implements V5Message {
   public Bytes getBytes() {
     return Bytes.concatenate(
         Bytes.of(getCode().byteCode()),
-        Bytes.wrap(
-            RlpEncoder.encode(
-                new RlpList(
-                    RlpString.create(requestId.toArray()),
-                    RlpString.create(total),
-                    new RlpList(
-                        getNodeRecords().stream()
-                            .map(NodeRecord::asRlp)
-                            .collect(Collectors.toList()))))));
+        RlpUtil.encodeList(
+            Bytes.wrap(RlpEncoder.encode(RlpString.create(requestId.toArray()))),
+            Bytes.wrap(RlpEncoder.encode(RlpString.create(total))),
+            encodedNodeRecords.get()));
   }
 
   @Override
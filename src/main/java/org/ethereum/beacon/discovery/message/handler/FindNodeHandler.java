@@ -4,16 +4,13 @@
 
 package org.ethereum.beacon.discovery.message.handler;
 
-import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
-
-import com.google.common.collect.Lists;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.ethereum.beacon.discovery.message.FindNodeMessage;
 import org.ethereum.beacon.discovery.message.NodesMessage;
+import org.ethereum.beacon.discovery.pipeline.handler.IncomingDataPacker;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeSession;
 
@@ -25,10 +22,18 @@ public class FindNodeHandler implements MessageHandler<FindNodeMessage> {
    * packets larger than this size. As per specification the maximum size of an ENR is 300 bytes. A
    * NODES message containing all FINDNODE response records would be at least 4800 bytes, not
    * including additional data such as the header. To stay below the size limit, NODES responses are
-   * sent as multiple messages and specify the total number of responses in the message. 4х300 =
-   * 1200 and we always have 80 bytes for everything else.
+   * sent as multiple messages and specify the total number of responses in the message.
+   *
+   * <p>Ordinary message packet adds 87 bytes to the message: 16 bytes of masking IV, 23 bytes of
+   * static header, 32 bytes of source node id and 16 bytes of AES/GCM tag.
+   */
+  static final int MAX_MESSAGE_SIZE = IncomingDataPacker.MAX_PACKET_SIZE - 87;
+
+  /**
+   * NODES message code, 2 RLP list prefixes up to 3 bytes each, request id up to 9 bytes and total
+   * up to 2 bytes. Node records are packed into messages greedily by their size up to the rest.
    */
-  private static final int MAX_NODES_PER_MESSAGE = 4;
+  private static final int MAX_NODE_RECORDS_SIZE_PER_MESSAGE = MAX_MESSAGE_SIZE - 18;
 
   /**
    * Implementations should limit the number of nodes in the result set. The recommended result
@@ -36,33 +41,30 @@ public class FindNodeHandler implements MessageHandler<FindNodeMessage> {
    */
   private static final int MAX_TOTAL_NODES_PER_RESPONSE = 16;
 
+  private final NodesResponseCache responseCache =
+      new NodesResponseCache(MAX_NODE_RECORDS_SIZE_PER_MESSAGE);
+
   public FindNodeHandler() {}
 
   @Override
   public void handle(FindNodeMessage message, NodeSession session) {
+    List<Integer> distances =
+        message.getDistances().stream().distinct().collect(Collectors.toList());
     List<NodeRecord> nodeRecordInfos =
-        message.getDistances().stream()
-            .distinct()
+        distances.stream()
             .flatMap(session::getNodeRecordsInBucket)
             .limit(MAX_TOTAL_NODES_PER_RESPONSE)
             .collect(Collectors.toList());
 
-    List<List<NodeRecord>> nodeRecordBatches =
-        Lists.partition(nodeRecordInfos, MAX_NODES_PER_MESSAGE);
-
     logger.trace(
         () ->
             String.format(
                 "Sending %s nodes in reply to request with distances %s in session %s",
                 nodeRecordInfos.size(), message.getDistances(), session));
 
-    List<List<NodeRecord>> nonEmptyNodeRecordsList =
-        nodeRecordBatches.isEmpty() ? singletonList(emptyList()) : nodeRecordBatches;
-
-    nonEmptyNodeRecordsList.forEach(
-        recordsList ->
-            session.sendOutgoingOrdinary(
-                new NodesMessage(
-                    message.getRequestId(), nonEmptyNodeRecordsList.size(), recordsList)));
+    responseCache
+        .get(distances, nodeRecordInfos)
+        .createMessages(message.getRequestId())
+        .forEach(session::sendOutgoingOrdinary);
   }
 }
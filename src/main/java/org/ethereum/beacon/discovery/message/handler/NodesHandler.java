@@ -4,10 +4,11 @@
 
 package org.ethereum.beacon.discovery.message.handler;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.message.FindNodeMessage;
 import org.ethereum.beacon.discovery.message.NodesMessage;
 import org.ethereum.beacon.discovery.pipeline.info.FindNodeResponseHandler;
@@ -36,38 +37,41 @@ public class NodesHandler implements MessageHandler<NodesMessage> {
     FindNodeResponseHandler respHandler =
         (FindNodeResponseHandler) requestInfo.getRequest().getResponseHandler();
 
-    if (respHandler.handleResponseMessage(message)) {
-      session.clearRequestInfo(message.getRequestId(), null);
-    } else {
-      requestInfo.setTaskStatus(TaskStatus.IN_PROCESS);
-    }
     // Parse node records
     logger.trace(
         () ->
             String.format(
                 "Received %s node records in session %s. Total buckets expected: %s",
                 message.getNodeRecords().size(), session, message.getTotal()));
-    message.getNodeRecords().stream()
-        .filter(this::isValid)
-        .filter(
-            record ->
-                hasCorrectDistance(session, (FindNodeMessage) requestInfo.getMessage(), record))
-        .forEach(nodeRecordV5 -> updateNodeRecord(session, nodeRecordV5));
-  }
+    final List<NodeRecord> acceptedRecords =
+        message.getNodeRecords().stream()
+            .filter(this::isValid)
+            .filter(
+                record ->
+                    hasCorrectDistance(session, (FindNodeMessage) requestInfo.getMessage(), record))
+            .collect(Collectors.toList());
+    final boolean isComplete = respHandler.handleResponseMessage(message, acceptedRecords);
 
-  private void updateNodeRecord(final NodeSession session, final NodeRecord nodeRecordV5) {
-    NodeRecordInfo nodeRecordInfo = NodeRecordInfo.createDefault(nodeRecordV5);
     final NodeTable nodeTable = session.getNodeTable();
-    final Bytes nodeId = nodeRecordV5.getNodeId();
-    final Optional<NodeRecordInfo> existingRecord = nodeTable.getNode(nodeId);
-    if (isUpdateRequired(nodeRecordV5, existingRecord)) {
-      // Update node table with new node record
-      nodeTable.save(nodeRecordInfo);
+    final List<NodeRecord> updatedRecords =
+        acceptedRecords.stream()
+            .filter(record -> isUpdateRequired(record, nodeTable.getNode(record.getNodeId())))
+            .collect(Collectors.toList());
+    if (!updatedRecords.isEmpty()) {
+      // Update node table with new node records in one batch
+      nodeTable.saveAll(
+          updatedRecords.stream().map(NodeRecordInfo::createDefault).collect(Collectors.toList()));
+      updatedRecords.stream()
+          .filter(record -> session.getNodeId().equals(record.getNodeId()))
+          // Node sent us a new version of their own ENR, update the session.
+          .forEach(session::updateNodeRecord);
+    }
 
-      if (session.getNodeId().equals(nodeId)) {
-        // Node sent us a new version of their own ENR, update the session.
-        session.updateNodeRecord(nodeRecordV5);
-      }
+    // Request is completed after the node table update, so the table is up to date for its callers
+    if (isComplete) {
+      session.clearRequestInfo(message.getRequestId(), respHandler.getFoundNodes());
+    } else {
+      requestInfo.setTaskStatus(TaskStatus.IN_PROCESS);
     }
   }
 
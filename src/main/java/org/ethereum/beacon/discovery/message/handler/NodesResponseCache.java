@@ -0,0 +1,106 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.message.handler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.message.NodesMessage;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.util.RlpUtil;
+import org.web3j.rlp.RlpEncoder;
+
+/**
+ * Keeps NODES responses with already encoded node records for recently requested distances. Node
+ * records are packed into as few messages as their encoded sizes allow.
+ *
+ * <p>A cached response is valid while buckets return the very same {@link NodeRecord} instances,
+ * which are only replaced when the bucket changes, so the check is just a reference comparison of
+ * records and no bucket has to notify the cache.
+ */
+class NodesResponseCache {
+  static final int MAX_CACHED_RESPONSES = 1024;
+
+  private final Cache<List<Integer>, Response> responses =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_RESPONSES).build();
+  private final int maxNodeRecordsSizePerMessage;
+
+  NodesResponseCache(int maxNodeRecordsSizePerMessage) {
+    this.maxNodeRecordsSizePerMessage = maxNodeRecordsSizePerMessage;
+  }
+
+  /** Returns response with {@code nodeRecords} currently found for {@code distances} */
+  Response get(List<Integer> distances, List<NodeRecord> nodeRecords) {
+    Response response = responses.getIfPresent(distances);
+    if (response == null || !response.isFor(nodeRecords)) {
+      response = new Response(nodeRecords, maxNodeRecordsSizePerMessage);
+      responses.put(distances, response);
+    }
+    return response;
+  }
+
+  static class Response {
+    private final List<NodeRecord> nodeRecords;
+    private final List<List<NodeRecord>> batches;
+    private final List<Bytes> encodedBatches;
+
+    private Response(List<NodeRecord> nodeRecords, int maxNodeRecordsSizePerMessage) {
+      this.nodeRecords = nodeRecords;
+      List<List<NodeRecord>> batches = new ArrayList<>();
+      List<Bytes> encodedBatches = new ArrayList<>();
+      List<NodeRecord> batch = new ArrayList<>();
+      List<Bytes> encodedBatch = new ArrayList<>();
+      int batchSize = 0;
+      for (NodeRecord nodeRecord : nodeRecords) {
+        Bytes encodedNodeRecord = Bytes.wrap(RlpEncoder.encode(nodeRecord.asRlp()));
+        if (!batch.isEmpty()
+            && batchSize + encodedNodeRecord.size() > maxNodeRecordsSizePerMessage) {
+          batches.add(batch);
+          encodedBatches.add(RlpUtil.encodeList(encodedBatch.toArray(Bytes[]::new)));
+          batch = new ArrayList<>();
+          encodedBatch = new ArrayList<>();
+          batchSize = 0;
+        }
+        batch.add(nodeRecord);
+        encodedBatch.add(encodedNodeRecord);
+        batchSize += encodedNodeRecord.size();
+      }
+      // Empty response is still a single NODES message
+      if (!batch.isEmpty() || batches.isEmpty()) {
+        batches.add(batch);
+        encodedBatches.add(RlpUtil.encodeList(encodedBatch.toArray(Bytes[]::new)));
+      }
+      this.batches = batches;
+      this.encodedBatches = encodedBatches;
+    }
+
+    @SuppressWarnings("ReferenceEquality")
+    private boolean isFor(List<NodeRecord> currentNodeRecords) {
+      if (currentNodeRecords.size() != nodeRecords.size()) {
+        return false;
+      }
+      for (int i = 0; i < nodeRecords.size(); i++) {
+        if (currentNodeRecords.get(i) != nodeRecords.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Returns NODES messages to send in reply to the request */
+    List<NodesMessage> createMessages(Bytes requestId) {
+      return IntStream.range(0, batches.size())
+          .mapToObj(
+              i ->
+                  new NodesMessage(
+                      requestId, batches.size(), batches.get(i), encodedBatches.get(i)))
+          .collect(Collectors.toList());
+    }
+  }
+}
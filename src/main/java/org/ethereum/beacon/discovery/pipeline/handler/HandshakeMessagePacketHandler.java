@@ -83,8 +83,7 @@ public class HandshakeMessagePacketHandler implements EnvelopeHandler {
               ephemeralPubKeyCompressed,
               whoAreYouChallenge);
       // Swap keys because we are not initiator, other side is
-      session.setInitiatorKey(keys.getRecipientKey());
-      session.setRecipientKey(keys.getInitiatorKey());
+      session.setKeys(keys.getRecipientKey(), keys.getInitiatorKey());
 
       Optional<NodeRecord> enr = packet.getHeader().getAuthData().getNodeRecord(nodeRecordFactory);
       if (!enr.map(NodeRecord::isValid).orElse(true)) {
@@ -4,7 +4,8 @@
 
 package org.ethereum.beacon.discovery.pipeline.handler;
 
-import java.time.Duration;
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.Optional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,28 +20,35 @@ import org.ethereum.beacon.discovery.pipeline.info.RequestInfo;
 import org.ethereum.beacon.discovery.scheduler.Scheduler;
 import org.ethereum.beacon.discovery.schema.NodeSession;
 import org.ethereum.beacon.discovery.schema.NodeSession.SessionState;
-import org.ethereum.beacon.discovery.task.TaskStatus;
 
-/** Gets next request task in session and processes it */
+/**
+ * Gets awaiting request tasks in session and processes them. Once the session is authenticated all
+ * awaiting requests are sent in order, keeping at most {@code maxInFlightRequests} of them sent
+ * but not yet completed. When the limit is reached the rest are sent as soon as earlier requests
+ * finish, see {@link NodeSessionManager#onRequestFinished(NodeSession)}.
+ */
 public class NextTaskHandler implements EnvelopeHandler {
+  public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 8;
   private static final Logger logger = LogManager.getLogger(NextTaskHandler.class);
-  private static final int DEFAULT_DELAY_MS = 1000;
   private static final int RANDOM_MESSAGE_SIZE = 128;
-  private final Pipeline outgoingPipeline;
-  private final Scheduler scheduler;
+  private final int maxInFlightRequests;
 
-  public NextTaskHandler(Pipeline outgoingPipeline, Scheduler scheduler) {
-    this.outgoingPipeline = outgoingPipeline;
-    this.scheduler = scheduler;
+  public NextTaskHandler(int maxInFlightRequests) {
+    checkArgument(maxInFlightRequests > 0, "Max in-flight requests should be positive");
+    this.maxInFlightRequests = maxInFlightRequests;
   }
 
+  /**
+   * Triggers processing of awaiting requests of just authenticated session. Called from incoming
+   * pipeline, so the session is pushed to the outgoing pipeline via the scheduler rather than
+   * processed in place.
+   */
   public static void tryToSendAwaitTaskIfAny(
       NodeSession session, Pipeline outgoingPipeline, Scheduler scheduler) {
     if (session.getFirstAwaitRequestInfo().isPresent()) {
       Envelope dummy = new Envelope();
       dummy.put(Field.SESSION, session);
-      scheduler.executeWithDelay(
-          Duration.ofMillis(DEFAULT_DELAY_MS), () -> outgoingPipeline.push(dummy));
+      scheduler.execute(() -> outgoingPipeline.push(dummy));
     }
   }
 
@@ -55,26 +63,26 @@ public class NextTaskHandler implements EnvelopeHandler {
                 "Envelope %s in NextTaskHandler, requirements are satisfied!", envelope.getId()));
 
     NodeSession session = envelope.get(Field.SESSION);
-    Optional<RequestInfo> requestInfoOpt = session.getFirstAwaitRequestInfo();
-    if (requestInfoOpt.isEmpty()) {
-      logger.trace(() -> String.format("Envelope %s: no awaiting requests", envelope.getId()));
-      return;
-    }
-
-    RequestInfo requestInfo = requestInfoOpt.get();
-    logger.trace(
-        () ->
-            String.format(
-                "Envelope %s: processing awaiting request %s", envelope.getId(), requestInfo));
-
-    if (session.getState().equals(SessionState.INITIAL)) {
-      session.sendOutgoingRandom(Bytes.random(RANDOM_MESSAGE_SIZE));
-      session.setState(SessionState.RANDOM_PACKET_SENT);
-    } else if (session.getState().equals(SessionState.AUTHENTICATED)) {
-      V5Message message = requestInfo.getMessage();
-      session.sendOutgoingOrdinary(message);
-      requestInfo.setTaskStatus(TaskStatus.SENT);
-      tryToSendAwaitTaskIfAny(session, outgoingPipeline, scheduler);
+    SessionState state = session.getState();
+    if (state.equals(SessionState.INITIAL)) {
+      if (session.getFirstAwaitRequestInfo().isEmpty()) {
+        logger.trace(() -> String.format("Envelope %s: no awaiting requests", envelope.getId()));
+        return;
+      }
+      if (session.compareAndSetState(SessionState.INITIAL, SessionState.RANDOM_PACKET_SENT)) {
+        session.sendOutgoingRandom(Bytes.random(RANDOM_MESSAGE_SIZE));
+      }
+    } else if (state.equals(SessionState.AUTHENTICATED)) {
+      Optional<RequestInfo> requestInfoOpt;
+      while ((requestInfoOpt = session.pollAwaitRequestInfo(maxInFlightRequests)).isPresent()) {
+        RequestInfo requestInfo = requestInfoOpt.get();
+        logger.trace(
+            () ->
+                String.format(
+                    "Envelope %s: processing awaiting request %s", envelope.getId(), requestInfo));
+        V5Message message = requestInfo.getMessage();
+        session.sendOutgoingOrdinary(message);
+      }
     }
   }
 }
@@ -96,15 +96,19 @@ public class NodeSessionManager implements EnvelopeHandler {
 
   private Optional<NodeSession> getOrCreateSession(Bytes nodeId, Envelope envelope) {
     return getRemoteSocketAddress(envelope)
-        .map(
-            remoteSocketAddress -> {
-              SessionKey sessionKey = new SessionKey(nodeId, remoteSocketAddress);
-              NodeSession context =
-                  recentSessions.computeIfAbsent(sessionKey, this::createNodeSession);
-
-              sessionExpirationScheduler.put(sessionKey, () -> deleteSession(sessionKey));
-              return context;
-            });
+        .map(remoteSocketAddress -> getOrCreateNodeSession(nodeId, remoteSocketAddress));
+  }
+
+  public NodeSession getOrCreateNodeSession(Bytes nodeId, InetSocketAddress remoteSocketAddress) {
+    SessionKey sessionKey = new SessionKey(nodeId, remoteSocketAddress);
+    NodeSession context = recentSessions.computeIfAbsent(sessionKey, this::createNodeSession);
+
+    sessionExpirationScheduler.put(sessionKey, () -> deleteSession(sessionKey));
+    return context;
+  }
+
+  public Optional<NodeSession> getNodeSession(Bytes nodeId, InetSocketAddress remoteSocketAddress) {
+    return Optional.ofNullable(recentSessions.get(new SessionKey(nodeId, remoteSocketAddress)));
   }
 
   public void dropSession(NodeSession session) {
@@ -138,6 +142,18 @@ public class NodeSessionManager implements EnvelopeHandler {
     lastNonceToSession.put(newNonce, session);
   }
 
+  /**
+   * Called when the session request is either completed or expired, so the next awaiting request,
+   * if any, could be sent without breaching the in-flight requests limit
+   */
+  public void onRequestFinished(NodeSession session) {
+    if (session.isAuthenticated() && session.getFirstAwaitRequestInfo().isPresent()) {
+      Envelope envelope = new Envelope();
+      envelope.put(Field.SESSION, session);
+      outgoingPipeline.push(envelope);
+    }
+  }
+
   private NodeSession createNodeSession(final SessionKey key) {
     Optional<NodeRecord> nodeRecord = nodeTable.getNode(key.nodeId).map(NodeRecordInfo::getNode);
     SecureRandom random = new SecureRandom();
@@ -0,0 +1,291 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.pipeline.handler;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.ethereum.beacon.discovery.network.NetworkParcelV5;
+import org.ethereum.beacon.discovery.packet.HandshakeMessagePacket;
+import org.ethereum.beacon.discovery.packet.Header;
+import org.ethereum.beacon.discovery.packet.OrdinaryMessagePacket;
+import org.ethereum.beacon.discovery.packet.Packet;
+import org.ethereum.beacon.discovery.packet.RawPacket;
+import org.ethereum.beacon.discovery.packet.WhoAreYouPacket;
+import org.ethereum.beacon.discovery.packet.WhoAreYouPacket.WhoAreYouAuthData;
+import org.ethereum.beacon.discovery.pipeline.Envelope;
+import org.ethereum.beacon.discovery.pipeline.EnvelopeHandler;
+import org.ethereum.beacon.discovery.pipeline.Field;
+import org.ethereum.beacon.discovery.pipeline.HandlerUtil;
+import org.ethereum.beacon.discovery.pipeline.Pipeline;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeSession;
+import org.ethereum.beacon.discovery.schema.NodeSession.SessionState;
+import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.type.Bytes12;
+import org.ethereum.beacon.discovery.type.Bytes16;
+
+/**
+ * Answers packets from senders without a session with a WHOAREYOU challenge without allocating a
+ * {@link NodeSession}. Intended for bootnodes which are hit by a lot of unknown peers.
+ *
+ * <p>The challenge {@code id-nonce} and {@code masking-iv} are derived as
+ *
+ * <p><code>HMAC-SHA256(secret, node-id || ip || port || request-nonce)</code>
+ *
+ * <p>where {@code secret} is rotated every {@link #DEFAULT_SECRET_ROTATION}. The only thing which
+ * has to be remembered is the {@code request-nonce} echoed in WHOAREYOU (it is not repeated in the
+ * handshake packet, but is a part of the signed challenge data), so it's kept in a bounded table
+ * together with the rotation epoch. The session is created only when a handshake packet with a
+ * matching pending challenge arrives, and is handed to {@link HandshakeMessagePacketHandler} in
+ * {@link SessionState#WHOAREYOU_SENT} state, exactly as if the challenge had been sent by the
+ * session itself.
+ *
+ * <p>Should be placed right before {@link NodeSessionManager} in the incoming pipeline.
+ */
+public class StatelessWhoAreYouHandler implements EnvelopeHandler {
+  public static final Duration DEFAULT_SECRET_ROTATION = Duration.ofSeconds(30);
+  public static final int DEFAULT_MAX_PENDING_CHALLENGES = 10_000;
+  private static final Logger logger = LogManager.getLogger(StatelessWhoAreYouHandler.class);
+
+  private final NodeSessionManager nodeSessionManager;
+  private final NodeTable nodeTable;
+  private final Pipeline outgoingPipeline;
+  private final Clock clock;
+  private final long rotationMillis;
+  private final SecureRandom random = new SecureRandom();
+  private final Map<Bytes, PendingChallenge> pendingChallenges;
+
+  private long currentEpoch;
+  private Bytes32 currentSecret;
+  private Optional<Bytes32> previousSecret = Optional.empty();
+
+  public StatelessWhoAreYouHandler(
+      NodeSessionManager nodeSessionManager,
+      NodeTable nodeTable,
+      Pipeline outgoingPipeline,
+      Clock clock) {
+    this(
+        nodeSessionManager,
+        nodeTable,
+        outgoingPipeline,
+        clock,
+        DEFAULT_SECRET_ROTATION,
+        DEFAULT_MAX_PENDING_CHALLENGES);
+  }
+
+  public StatelessWhoAreYouHandler(
+      NodeSessionManager nodeSessionManager,
+      NodeTable nodeTable,
+      Pipeline outgoingPipeline,
+      Clock clock,
+      Duration secretRotation,
+      int maxPendingChallenges) {
+    checkArgument(secretRotation.toMillis() > 0, "Secret rotation period should be positive");
+    checkArgument(maxPendingChallenges > 0, "Max pending challenges should be positive");
+    this.nodeSessionManager = nodeSessionManager;
+    this.nodeTable = nodeTable;
+    this.outgoingPipeline = outgoingPipeline;
+    this.clock = clock;
+    this.rotationMillis = secretRotation.toMillis();
+    this.pendingChallenges =
+        new LinkedHashMap<>() {
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<Bytes, PendingChallenge> eldest) {
+            return size() > maxPendingChallenges;
+          }
+        };
+    this.currentEpoch = getEpoch();
+    this.currentSecret = randomSecret();
+  }
+
+  @Override
+  public void handle(Envelope envelope) {
+    if (!HandlerUtil.requireField(Field.SESSION_LOOKUP, envelope)) {
+      return;
+    }
+    if (!HandlerUtil.requireField(Field.PACKET, envelope)) {
+      return;
+    }
+    if (!HandlerUtil.requireField(Field.REMOTE_SENDER, envelope)) {
+      return;
+    }
+    if (envelope.contains(Field.SESSION)) {
+      return;
+    }
+    Bytes nodeId = envelope.get(Field.SESSION_LOOKUP).getNodeId();
+    InetSocketAddress sender = envelope.get(Field.REMOTE_SENDER);
+    if (nodeSessionManager.getNodeSession(nodeId, sender).isPresent()) {
+      // Regular flow for known sessions
+      return;
+    }
+    logger.trace(
+        () ->
+            String.format(
+                "Envelope %s in StatelessWhoAreYouHandler, requirements are satisfied!",
+                envelope.getId()));
+
+    Packet<?> packet = envelope.get(Field.PACKET);
+    if (packet instanceof OrdinaryMessagePacket) {
+      sendChallenge(nodeId, sender, (OrdinaryMessagePacket) packet);
+      envelope.remove(Field.SESSION_LOOKUP);
+      envelope.remove(Field.PACKET);
+    } else if (packet instanceof HandshakeMessagePacket) {
+      Optional<NodeSession> session = restoreSession(nodeId, sender);
+      if (session.isPresent()) {
+        envelope.remove(Field.SESSION_LOOKUP);
+        envelope.put(Field.SESSION, session.get());
+      } else {
+        logger.trace("Unexpected handshake packet: no pending challenge for node {}", nodeId);
+        envelope.remove(Field.SESSION_LOOKUP);
+        envelope.remove(Field.PACKET);
+        envelope.put(Field.BAD_PACKET, packet);
+        envelope.put(
+            Field.BAD_EXCEPTION, new RuntimeException("Handshake without a pending challenge"));
+      }
+    }
+  }
+
+  private void sendChallenge(Bytes nodeId, InetSocketAddress sender, OrdinaryMessagePacket packet) {
+    Bytes12 requestNonce = packet.getHeader().getStaticHeader().getNonce();
+    UInt64 enrSeq =
+        nodeTable
+            .getNode(nodeId)
+            .map(NodeRecordInfo::getNode)
+            .map(NodeRecord::getSeq)
+            .orElse(UInt64.ZERO);
+    Bytes senderKey = createSenderKey(nodeId, sender);
+    final Challenge challenge;
+    synchronized (this) {
+      rotateSecretIfRequired();
+      challenge = createChallenge(currentSecret, senderKey, requestNonce, enrSeq);
+      pendingChallenges.put(senderKey, new PendingChallenge(requestNonce, enrSeq, currentEpoch));
+    }
+    Bytes16 destNodeId = Bytes16.wrap(nodeId, 0);
+    RawPacket rawPacket =
+        RawPacket.createAndMask(challenge.maskingIV, challenge.packet, destNodeId);
+    outgoingPipeline.push(new NetworkParcelV5(rawPacket, sender));
+  }
+
+  private Optional<NodeSession> restoreSession(Bytes nodeId, InetSocketAddress sender) {
+    Bytes senderKey = createSenderKey(nodeId, sender);
+    final Challenge challenge;
+    synchronized (this) {
+      rotateSecretIfRequired();
+      PendingChallenge pending = pendingChallenges.remove(senderKey);
+      if (pending == null) {
+        return Optional.empty();
+      }
+      final Optional<Bytes32> secret;
+      if (pending.epoch == currentEpoch) {
+        secret = Optional.of(currentSecret);
+      } else if (pending.epoch == currentEpoch - 1) {
+        secret = previousSecret;
+      } else {
+        secret = Optional.empty();
+      }
+      if (secret.isEmpty()) {
+        return Optional.empty();
+      }
+      challenge = createChallenge(secret.get(), senderKey, pending.requestNonce, pending.enrSeq);
+    }
+    NodeSession session = nodeSessionManager.getOrCreateNodeSession(nodeId, sender);
+    session.setIdNonce(challenge.packet.getHeader().getAuthData().getIdNonce());
+    session.setWhoAreYouChallenge(challenge.getChallengeData());
+    session.setState(SessionState.WHOAREYOU_SENT);
+    return Optional.of(session);
+  }
+
+  private Challenge createChallenge(
+      Bytes32 secret, Bytes senderKey, Bytes12 requestNonce, UInt64 enrSeq) {
+    Bytes cookie = hmac(secret, Bytes.wrap(senderKey, requestNonce));
+    Bytes16 idNonce = Bytes16.wrap(cookie, 0);
+    Bytes16 maskingIV = Bytes16.wrap(cookie, 16);
+    Header<WhoAreYouAuthData> header = Header.createWhoAreYouHeader(requestNonce, idNonce, enrSeq);
+    return new Challenge(maskingIV, WhoAreYouPacket.create(header));
+  }
+
+  private void rotateSecretIfRequired() {
+    long epoch = getEpoch();
+    if (epoch == currentEpoch) {
+      return;
+    }
+    previousSecret = epoch == currentEpoch + 1 ? Optional.of(currentSecret) : Optional.empty();
+    currentSecret = randomSecret();
+    currentEpoch = epoch;
+  }
+
+  private long getEpoch() {
+    return clock.millis() / rotationMillis;
+  }
+
+  private Bytes32 randomSecret() {
+    return Bytes32.random(random);
+  }
+
+  @VisibleForTesting
+  synchronized int getPendingChallengeCount() {
+    return pendingChallenges.size();
+  }
+
+  private static Bytes createSenderKey(Bytes nodeId, InetSocketAddress sender) {
+    return Bytes.concatenate(
+        nodeId,
+        Bytes.wrap(sender.getAddress().getAddress()),
+        Bytes.ofUnsignedShort(sender.getPort()));
+  }
+
+  private static Bytes hmac(Bytes32 key, Bytes data) {
+    HMac hmac = new HMac(new SHA256Digest());
+    hmac.init(new KeyParameter(key.toArrayUnsafe()));
+    hmac.update(data.toArrayUnsafe(), 0, data.size());
+    byte[] result = new byte[hmac.getMacSize()];
+    hmac.doFinal(result, 0);
+    return Bytes.wrap(result);
+  }
+
+  private static class PendingChallenge {
+    private final Bytes12 requestNonce;
+    private final UInt64 enrSeq;
+    private final long epoch;
+
+    private PendingChallenge(final Bytes12 requestNonce, final UInt64 enrSeq, final long epoch) {
+      this.requestNonce = requestNonce;
+      this.enrSeq = enrSeq;
+      this.epoch = epoch;
+    }
+  }
+
+  private static class Challenge {
+    private final Bytes16 maskingIV;
+    private final WhoAreYouPacket packet;
+
+    private Challenge(final Bytes16 maskingIV, final WhoAreYouPacket packet) {
+      this.maskingIV = maskingIV;
+      this.packet = packet;
+    }
+
+    /** Same as stored by {@link NodeSession#sendOutgoingWhoAreYou(WhoAreYouPacket)} */
+    private Bytes getChallengeData() {
+      return Bytes.wrap(maskingIV, packet.getHeader().getBytes());
+    }
+  }
+}
@@ -101,11 +101,10 @@ public class WhoAreYouPacketHandler implements EnvelopeHandler {
               Bytes.wrap(ephemeralKeyBytes),
               remotePubKey,
               challengeData);
-      session.setInitiatorKey(hkdfKeys.getInitiatorKey());
-      session.setRecipientKey(hkdfKeys.getRecipientKey());
+      session.setKeys(hkdfKeys.getInitiatorKey(), hkdfKeys.getRecipientKey());
       final V5Message message =
           session
-              .getFirstAwaitRequestInfo()
+              .pollAwaitRequestInfo(Integer.MAX_VALUE)
               .or(session::getFirstSentRequestInfo)
               .map(RequestInfo::getMessage)
               .orElseThrow(
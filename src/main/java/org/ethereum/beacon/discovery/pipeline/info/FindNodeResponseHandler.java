@@ -3,10 +3,19 @@
  */
 package org.ethereum.beacon.discovery.pipeline.info;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import org.ethereum.beacon.discovery.message.NodesMessage;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
 
+/**
+ * Counts NODES packets of a single FINDNODE response and collects node records accepted from them,
+ * which become the result of the request.
+ */
 public class FindNodeResponseHandler implements MultiPacketResponseHandler<NodesMessage> {
   private static final int MAX_TOTAL_PACKETS = 16;
+  private final List<NodeRecord> foundNodes = new ArrayList<>();
   private int totalPackets = -1;
   private int receivedPackets = 0;
 
@@ -29,4 +38,21 @@ public class FindNodeResponseHandler implements MultiPacketResponseHandler<Nodes
     receivedPackets++;
     return receivedPackets >= totalPackets;
   }
+
+  /**
+   * Handles next packet of the response together with its node records which passed validation
+   *
+   * @return true if all expected packets are received, false otherwise
+   */
+  public synchronized boolean handleResponseMessage(
+      NodesMessage msg, Collection<NodeRecord> acceptedNodes) {
+    boolean isComplete = handleResponseMessage(msg);
+    foundNodes.addAll(acceptedNodes);
+    return isComplete;
+  }
+
+  /** Returns node records accepted from all packets handled so far */
+  public synchronized List<NodeRecord> getFoundNodes() {
+    return new ArrayList<>(foundNodes);
+  }
 }
@@ -34,6 +34,18 @@ public class ExpirationScheduler<Key> {
    * @param runnable Task
    */
   public void put(Key key, Runnable runnable) {
+    put(key, runnable, delay, timeUnit);
+  }
+
+  /**
+   * Same as {@link #put(Object, Runnable)} but with the delay specified for this task only
+   *
+   * @param key Task key
+   * @param runnable Task
+   * @param delay Delay of this task
+   * @param timeUnit Time unit of the delay
+   */
+  public void put(Key key, Runnable runnable, long delay, TimeUnit timeUnit) {
     cancel(key);
     ScheduledFuture<?> future =
         scheduler.schedule(
@@ -140,8 +140,17 @@ public class NodeRecord {
     return Objects.hash(seq, signature, fields);
   }
 
+  /** Returns true if the record fits {@link #MAX_ENCODED_SIZE} and is valid for its scheme */
   public boolean isValid() {
-    return identitySchemaInterpreter.isValid(this);
+    return getEncodedSize() <= MAX_ENCODED_SIZE && identitySchemaInterpreter.isValid(this);
+  }
+
+  /**
+   * Returns the size of the RLP encoded record. Unlike {@link #serialize()}, doesn't fail if it
+   * exceeds {@link #MAX_ENCODED_SIZE}.
+   */
+  public int getEncodedSize() {
+    return RlpEncoder.encode(asRlp()).length;
   }
 
   public void sign(Bytes privateKey) {
@@ -24,11 +24,11 @@ import org.web3j.rlp.RlpType;
  */
 public class NodeRecordInfo {
   private final NodeRecord node;
-  private final Long lastRetry;
+  private final long lastRetry;
   private final NodeStatus status;
-  private final Integer retry;
+  private final int retry;
 
-  public NodeRecordInfo(NodeRecord node, Long lastRetry, NodeStatus status, Integer retry) {
+  public NodeRecordInfo(NodeRecord node, long lastRetry, NodeStatus status, int retry) {
     this.node = node;
     this.lastRetry = lastRetry;
     this.status = status;
@@ -63,7 +63,7 @@ public class NodeRecordInfo {
     return node;
   }
 
-  public Long getLastRetry() {
+  public long getLastRetry() {
     return lastRetry;
   }
 
@@ -71,7 +71,7 @@ public class NodeRecordInfo {
     return status;
   }
 
-  public Integer getRetry() {
+  public int getRetry() {
     return retry;
   }
 
@@ -81,9 +81,9 @@ public class NodeRecordInfo {
     if (o == null || getClass() != o.getClass()) return false;
     NodeRecordInfo that = (NodeRecordInfo) o;
     return Objects.equal(node, that.node)
-        && Objects.equal(lastRetry, that.lastRetry)
+        && lastRetry == that.lastRetry
         && status == that.status
-        && Objects.equal(retry, that.retry);
+        && retry == that.retry;
   }
 
   @Override
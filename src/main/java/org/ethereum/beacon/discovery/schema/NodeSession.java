@@ -5,16 +5,18 @@
 package org.ethereum.beacon.discovery.schema;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static org.ethereum.beacon.discovery.task.TaskStatus.AWAIT;
 import static org.ethereum.beacon.discovery.task.TaskStatus.SENT;
 
 import java.net.InetSocketAddress;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -47,6 +49,11 @@ import org.ethereum.beacon.discovery.util.Functions;
 /**
  * Stores session status and all keys for discovery message exchange between us, `homeNode` and the
  * other `node`
+ *
+ * <p>The session is accessed concurrently from the pipelines, schedulers and request future
+ * callbacks, so instead of a single monitor the handshake state and keys are kept as immutable
+ * values published atomically, while the request queues are guarded by a dedicated lock which is
+ * never held during I/O or storage updates.
  */
 public class NodeSession {
   private static final Logger logger = LogManager.getLogger(NodeSession.class);
@@ -62,17 +69,21 @@ public class NodeSession {
   private final Consumer<NetworkParcel> outgoingPipeline;
   private final Random rnd;
   private final Bytes nodeId;
-  private Optional<NodeRecord> nodeRecord;
-  private SessionState state = SessionState.INITIAL;
-  private Bytes idNonce;
-  private Bytes initiatorKey;
-  private Bytes recipientKey;
+  private volatile Optional<NodeRecord> nodeRecord;
+  private final AtomicReference<SessionState> state = new AtomicReference<>(SessionState.INITIAL);
+  private volatile Bytes idNonce;
+  private volatile SessionKeys keys = SessionKeys.EMPTY;
   private final Map<Bytes, RequestInfo> requestIdStatuses = new ConcurrentHashMap<>();
+  // Requests in submission order, guarded by requestsLock
+  private final Object requestsLock = new Object();
+  private final Map<Bytes, RequestInfo> awaitRequests = new LinkedHashMap<>();
+  private final Map<Bytes, RequestInfo> sentRequests = new LinkedHashMap<>();
   private final ExpirationScheduler<Bytes> requestExpirationScheduler;
   private final Bytes staticNodeKey;
-  private Optional<InetSocketAddress> reportedExternalAddress = Optional.empty();
-  private Optional<Bytes> whoAreYouChallenge = Optional.empty();
-  private Optional<Bytes12> lastOutboundNonce = Optional.empty();
+  private volatile Optional<InetSocketAddress> reportedExternalAddress = Optional.empty();
+  private volatile Optional<Bytes> whoAreYouChallenge = Optional.empty();
+  private final AtomicReference<Optional<Bytes12>> lastOutboundNonce =
+      new AtomicReference<>(Optional.empty());
   private final Function<Random, Bytes12> nonceGenerator;
 
   public NodeSession(
@@ -118,7 +129,16 @@ public class NodeSession {
     return whoAreYouChallenge;
   }
 
-  public synchronized void updateNodeRecord(NodeRecord nodeRecord) {
+  /**
+   * Sets the challenge data of WHOAREYOU packet which was sent on behalf of this session before it
+   * was created, see {@link
+   * org.ethereum.beacon.discovery.pipeline.handler.StatelessWhoAreYouHandler}
+   */
+  public void setWhoAreYouChallenge(Bytes whoAreYouChallenge) {
+    this.whoAreYouChallenge = Optional.of(whoAreYouChallenge);
+  }
+
+  public void updateNodeRecord(NodeRecord nodeRecord) {
     logger.trace(
         () ->
             String.format(
@@ -182,7 +202,7 @@ public class NodeSession {
    * could ensure that restarts or even re-installs would increment the counter based on previously
    * saved state in all circumstances. The easiest to implement is a random number.
    */
-  public synchronized RequestInfo createNextRequest(Request<?> request) {
+  public RequestInfo createNextRequest(Request<?> request) {
     byte[] requestId = new byte[REQUEST_ID_SIZE];
     rnd.nextBytes(requestId);
     Bytes wrappedId = Bytes.wrap(requestId);
@@ -197,7 +217,10 @@ public class NodeSession {
               });
     }
     RequestInfo requestInfo = RequestInfo.create(wrappedId, request);
-    requestIdStatuses.put(wrappedId, requestInfo);
+    synchronized (requestsLock) {
+      requestIdStatuses.put(wrappedId, requestInfo);
+      awaitRequests.put(wrappedId, requestInfo);
+    }
     requestExpirationScheduler.put(
         wrappedId,
         new Runnable() {
@@ -207,20 +230,37 @@ public class NodeSession {
                 () ->
                     String.format(
                         "Request %s expired for id %s in session %s: no reply",
-                        requestInfo, wrappedId, this));
-            requestIdStatuses.remove(wrappedId);
+                        requestInfo, wrappedId, NodeSession.this));
+            removeRequestInfo(wrappedId);
+            nodeSessionManager.onRequestFinished(NodeSession.this);
           }
         });
+    // Request failed by its caller, e.g. on timeout, releases its slot without waiting for expiry
+    request
+        .getResultPromise()
+        .whenComplete(
+            (result, throwable) -> {
+              if (throwable != null && clearRequestInfo(wrappedId) != null) {
+                nodeSessionManager.onRequestFinished(this);
+              }
+            });
     return requestInfo;
   }
 
   /** Updates request info. Thread-safe. */
-  public synchronized void cancelAllRequests(String message) {
+  public void cancelAllRequests(String message) {
     logger.debug(() -> String.format("Cancelling all requests in session %s", this));
-    Set<Bytes> requestIdsCopy = new HashSet<>(requestIdStatuses.keySet());
-    requestIdsCopy.forEach(
-        requestId -> {
-          RequestInfo requestInfo = clearRequestInfo(requestId);
+    final List<RequestInfo> cancelledRequests;
+    synchronized (requestsLock) {
+      cancelledRequests = new ArrayList<>(requestIdStatuses.values());
+      awaitRequests.clear();
+      sentRequests.clear();
+      requestIdStatuses.clear();
+    }
+    // Expirations are cancelled after the lock is released, like in clearRequestInfo
+    cancelledRequests.forEach(
+        requestInfo -> {
+          requestExpirationScheduler.cancel(requestInfo.getRequestId());
           requestInfo
               .getRequest()
               .getResultPromise()
@@ -233,24 +273,19 @@ public class NodeSession {
 
   /** Generates random nonce */
   public Bytes12 generateNonce() {
-    final Optional<Bytes12> oldNonce;
-    final Bytes12 newNonce;
-    synchronized (this) {
-      newNonce = nonceGenerator.apply(rnd);
-      oldNonce = lastOutboundNonce;
-      lastOutboundNonce = Optional.of(newNonce);
-    }
+    final Bytes12 newNonce = nonceGenerator.apply(rnd);
+    final Optional<Bytes12> oldNonce = lastOutboundNonce.getAndSet(Optional.of(newNonce));
     nodeSessionManager.onSessionLastNonceUpdate(this, oldNonce, newNonce);
     return newNonce;
   }
 
-  public synchronized Optional<Bytes12> getLastOutboundNonce() {
-    return lastOutboundNonce;
+  public Optional<Bytes12> getLastOutboundNonce() {
+    return lastOutboundNonce.get();
   }
 
   /** If true indicates that handshake is complete */
-  public synchronized boolean isAuthenticated() {
-    return SessionState.AUTHENTICATED.equals(state);
+  public boolean isAuthenticated() {
+    return SessionState.AUTHENTICATED.equals(state.get());
   }
 
   public Bytes32 getHomeNodeId() {
@@ -265,20 +300,20 @@ public class NodeSession {
 
   /** return initiator key, also known as write key */
   public Bytes getInitiatorKey() {
-    return initiatorKey;
-  }
-
-  public void setInitiatorKey(Bytes initiatorKey) {
-    this.initiatorKey = initiatorKey;
+    return keys.initiatorKey;
   }
 
   /** return recipient key, also known as read key */
   public Bytes getRecipientKey() {
-    return recipientKey;
+    return keys.recipientKey;
   }
 
-  public void setRecipientKey(Bytes recipientKey) {
-    this.recipientKey = recipientKey;
+  /**
+   * Publishes both session keys at once, so no reader could observe the write key from one
+   * handshake and the read key from another
+   */
+  public void setKeys(Bytes initiatorKey, Bytes recipientKey) {
+    this.keys = new SessionKeys(initiatorKey, recipientKey);
   }
 
   public Optional<InetSocketAddress> getReportedExternalAddress() {
@@ -290,48 +325,89 @@ public class NodeSession {
   }
 
   @SuppressWarnings("unchecked")
-  public synchronized <T> void clearRequestInfo(Bytes requestId, T result) {
+  public <T> void clearRequestInfo(Bytes requestId, T result) {
     final RequestInfo requestInfo = clearRequestInfo(requestId);
     checkNotNull(requestInfo, "Attempting to clear an unknown request");
     ((Request<T>) requestInfo.getRequest()).getResultPromise().complete(result);
+    nodeSessionManager.onRequestFinished(this);
   }
 
-  /** Updates nodeRecord {@link NodeStatus} to ACTIVE of the node associated with this session */
-  public synchronized void updateLiveness() {
+  /**
+   * Updates nodeRecord {@link NodeStatus} to ACTIVE of the node associated with this session and
+   * confirms its liveness in the buckets. Runs without holding any session lock.
+   */
+  public void updateLiveness() {
     nodeRecord.ifPresent(
         record -> {
           NodeRecordInfo nodeRecordInfo =
               new NodeRecordInfo(record, Functions.getTime(), NodeStatus.ACTIVE, 0);
           nodeTable.save(nodeRecordInfo);
-          nodeBucketStorage.put(nodeRecordInfo);
+          nodeBucketStorage.onNodeContacted(nodeRecordInfo);
         });
   }
 
-  private synchronized RequestInfo clearRequestInfo(Bytes requestId) {
-    RequestInfo requestInfo = requestIdStatuses.remove(requestId);
+  private RequestInfo clearRequestInfo(Bytes requestId) {
+    RequestInfo requestInfo = removeRequestInfo(requestId);
     requestExpirationScheduler.cancel(requestId);
     return requestInfo;
   }
 
-  public synchronized Optional<RequestInfo> getRequestInfo(Bytes requestId) {
+  private RequestInfo removeRequestInfo(Bytes requestId) {
+    synchronized (requestsLock) {
+      awaitRequests.remove(requestId);
+      sentRequests.remove(requestId);
+      return requestIdStatuses.remove(requestId);
+    }
+  }
+
+  public Optional<RequestInfo> getRequestInfo(Bytes requestId) {
     RequestInfo requestInfo = requestIdStatuses.get(requestId);
-    return requestId == null ? Optional.empty() : Optional.of(requestInfo);
+    return requestId == null ? Optional.empty() : Optional.ofNullable(requestInfo);
   }
 
   /**
    * Returns any queued {@link RequestInfo} which was not started because session is not
    * authenticated
    */
-  public synchronized Optional<RequestInfo> getFirstAwaitRequestInfo() {
-    return requestIdStatuses.values().stream()
-        .filter(requestInfo -> AWAIT.equals(requestInfo.getTaskStatus()))
-        .findFirst();
+  public Optional<RequestInfo> getFirstAwaitRequestInfo() {
+    synchronized (requestsLock) {
+      return awaitRequests.values().stream().findFirst();
+    }
+  }
+
+  /**
+   * Marks the first {@link RequestInfo} awaiting to be sent as {@link
+   * org.ethereum.beacon.discovery.task.TaskStatus#SENT} and returns it, unless there are already
+   * {@code maxInFlightRequests} or more requests sent and not yet completed
+   */
+  public Optional<RequestInfo> pollAwaitRequestInfo(int maxInFlightRequests) {
+    synchronized (requestsLock) {
+      if (sentRequests.size() >= maxInFlightRequests || awaitRequests.isEmpty()) {
+        return Optional.empty();
+      }
+      Iterator<RequestInfo> awaitIterator = awaitRequests.values().iterator();
+      RequestInfo requestInfo = awaitIterator.next();
+      awaitIterator.remove();
+      requestInfo.setTaskStatus(SENT);
+      sentRequests.put(requestInfo.getRequestId(), requestInfo);
+      return Optional.of(requestInfo);
+    }
   }
 
-  public synchronized Optional<RequestInfo> getFirstSentRequestInfo() {
-    return requestIdStatuses.values().stream()
-        .filter(requestInfo -> SENT.equals(requestInfo.getTaskStatus()))
-        .findFirst();
+  /**
+   * Returns the earliest sent {@link RequestInfo} which is not yet being processed. Usually it's
+   * the head of sent requests queue, the loop only skips requests with partially received
+   * responses.
+   */
+  public Optional<RequestInfo> getFirstSentRequestInfo() {
+    synchronized (requestsLock) {
+      for (RequestInfo requestInfo : sentRequests.values()) {
+        if (SENT.equals(requestInfo.getTaskStatus())) {
+          return Optional.of(requestInfo);
+        }
+      }
+      return Optional.empty();
+    }
   }
 
   public NodeTable getNodeTable() {
@@ -346,11 +422,11 @@ public class NodeSession {
     return nodeBucketStorage.getNodeRecords(index);
   }
 
-  public synchronized Bytes getIdNonce() {
+  public Bytes getIdNonce() {
     return idNonce;
   }
 
-  public synchronized void setIdNonce(Bytes idNonce) {
+  public void setIdNonce(Bytes idNonce) {
     this.idNonce = idNonce;
   }
 
@@ -363,20 +439,51 @@ public class NodeSession {
     return "NodeSession{" + nodeId + " (" + state + ")}";
   }
 
-  public synchronized SessionState getState() {
-    return state;
+  public SessionState getState() {
+    return state.get();
   }
 
-  public synchronized void setState(SessionState newStatus) {
+  public void setState(SessionState newStatus) {
+    SessionState oldStatus = state.getAndSet(newStatus);
     logger.debug(
-        () -> String.format("Switching status of node %s from %s to %s", nodeId, state, newStatus));
-    this.state = newStatus;
+        () ->
+            String.format(
+                "Switching status of node %s from %s to %s", nodeId, oldStatus, newStatus));
+  }
+
+  /**
+   * Switches the state only if it's currently {@code expectedStatus}, so concurrent handlers
+   * can't both act on the same transition
+   *
+   * @return true if the state was switched
+   */
+  public boolean compareAndSetState(SessionState expectedStatus, SessionState newStatus) {
+    boolean switched = state.compareAndSet(expectedStatus, newStatus);
+    if (switched) {
+      logger.debug(
+          () ->
+              String.format(
+                  "Switching status of node %s from %s to %s", nodeId, expectedStatus, newStatus));
+    }
+    return switched;
   }
 
   public Bytes getStaticNodeKey() {
     return staticNodeKey;
   }
 
+  private static class SessionKeys {
+    private static final SessionKeys EMPTY = new SessionKeys(null, null);
+
+    private final Bytes initiatorKey;
+    private final Bytes recipientKey;
+
+    private SessionKeys(final Bytes initiatorKey, final Bytes recipientKey) {
+      this.initiatorKey = initiatorKey;
+      this.recipientKey = recipientKey;
+    }
+  }
+
   public enum SessionState {
     INITIAL, // other side is trying to connect, or we are initiating (before random packet is sent
     WHOAREYOU_SENT, // other side is initiator, we've sent whoareyou in response
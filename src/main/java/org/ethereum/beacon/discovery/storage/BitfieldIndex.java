@@ -0,0 +1,83 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Indexes nodes by the set bits of a bitvector field, like {@code attnets} or {@code syncnets}.
+ * Bits are numbered in SSZ order: bit {@code i} is bit {@code i % 8} of byte {@code i / 8}. Bits
+ * beyond the value are not set.
+ */
+public class BitfieldIndex extends EnrFieldIndex {
+  private final int size;
+  // Nodes by bit number
+  private final List<Set<Bytes>> nodesByBit;
+  private final Map<Bytes, Bytes> valuesByNode = new HashMap<>();
+
+  /**
+   * @param fieldName Field name
+   * @param size Number of bits in the bitvector, bits beyond are ignored
+   */
+  public BitfieldIndex(final String fieldName, final int size) {
+    super(fieldName);
+    checkArgument(size > 0, "Bitfield size should be positive");
+    this.size = size;
+    this.nodesByBit = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      nodesByBit.add(new HashSet<>());
+    }
+  }
+
+  /** Returns condition of the field bit being set */
+  public NodeQuery hasBit(final int bit) {
+    checkArgument(bit >= 0 && bit < size, "Bit should be in range [0, %s)", size);
+    return new NodeQuery(
+        this,
+        () -> getNodeIds(bit),
+        node -> getValue(node).filter(value -> isSet(value, bit)).isPresent());
+  }
+
+  @Override
+  protected synchronized void put(final Bytes nodeId, final Bytes value) {
+    remove(nodeId);
+    valuesByNode.put(nodeId, value);
+    for (int bit = 0; bit < size; bit++) {
+      if (isSet(value, bit)) {
+        nodesByBit.get(bit).add(nodeId);
+      }
+    }
+  }
+
+  @Override
+  protected synchronized void remove(final Bytes nodeId) {
+    final Bytes value = valuesByNode.remove(nodeId);
+    if (value == null) {
+      return;
+    }
+    for (int bit = 0; bit < size; bit++) {
+      if (isSet(value, bit)) {
+        nodesByBit.get(bit).remove(nodeId);
+      }
+    }
+  }
+
+  synchronized Set<Bytes> getNodeIds(final int bit) {
+    return new HashSet<>(nodesByBit.get(bit));
+  }
+
+  static boolean isSet(final Bytes value, final int bit) {
+    final int byteIndex = bit / Byte.SIZE;
+    return byteIndex < value.size() && ((value.get(byteIndex) >> (bit % Byte.SIZE)) & 1) != 0;
+  }
+}
@@ -8,6 +8,7 @@ import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.liveness.LivenessChecker;
+import org.ethereum.beacon.discovery.liveness.LivenessChecker.Priority;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 
 class BucketEntry {
@@ -51,9 +52,13 @@ class BucketEntry {
   }
 
   public void checkLiveness(final long currentTime) {
+    checkLiveness(currentTime, Priority.BUCKET_NODE);
+  }
+
+  public void checkLiveness(final long currentTime, final Priority priority) {
     if (currentTime - lastPingTime >= MIN_MILLIS_BETWEEN_PINGS
         && currentTime - lastLivenessConfirmationTime >= MIN_MILLIS_BETWEEN_PINGS) {
-      livenessChecker.checkLiveness(node);
+      livenessChecker.checkLiveness(node, priority);
       lastPingTime = currentTime;
     }
   }
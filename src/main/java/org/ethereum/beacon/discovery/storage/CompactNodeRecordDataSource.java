@@ -0,0 +1,268 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.database.DataSource;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+
+/**
+ * Memory-compact in-memory storage of {@link NodeRecordInfo}s keyed by 32-byte node ids.
+ *
+ * <p>Every node occupies a slot. Node id and serialized ENR of the slot are stored off-heap in
+ * fixed-size cells of direct buffer slabs, while {@code lastRetry}, {@code retry} and {@code
+ * status} are kept in parallel primitive arrays. Slots are found by node id with an open-addressing
+ * hash table of slot numbers, so the data source keeps no per-node objects on heap: about 20-30
+ * bytes of primitive arrays per node, up to twice that right after the arrays grow, instead of
+ * several hundred for a decoded {@link NodeRecordInfo} in a map.
+ *
+ * <p>That's not the whole heap cost of a node in {@link NodeTableImpl}: its {@link NodeIdTrie}
+ * index keeps the node id as a heap {@link Bytes} (about 70 bytes with its array) plus a leaf and a
+ * branch node, so the table still takes roughly 130-160 bytes of heap per node with compressed
+ * oops. Run {@code ./gradlew runNodeTableMemoryBenchmark} for measured numbers.
+ *
+ * <p>The price is that {@link org.ethereum.beacon.discovery.schema.NodeRecord} is decoded on every
+ * {@link #get(Bytes)}, so it suits large tables better than small hot ones.
+ */
+public class CompactNodeRecordDataSource implements DataSource<Bytes, NodeRecordInfo> {
+  private static final int NODE_ID_SIZE = 32;
+  private static final int CELL_SIZE = NODE_ID_SIZE + Short.BYTES + NodeRecord.MAX_ENCODED_SIZE;
+  private static final int CELLS_PER_SLAB = 1024;
+  private static final int INITIAL_TABLE_SIZE = 2 * CELLS_PER_SLAB;
+  private static final int EMPTY = -1;
+
+  private final NodeRecordFactory nodeRecordFactory;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private long[] lastRetries = new long[0];
+  private int[] retries = new int[0];
+  private byte[] statuses = new byte[0];
+  private int[] freeSlots = new int[0];
+  private int freeSlotCount = 0;
+  private int allocatedSlotCount = 0;
+  private int[] table = newTable(INITIAL_TABLE_SIZE);
+  private int size = 0;
+
+  public CompactNodeRecordDataSource(NodeRecordFactory nodeRecordFactory) {
+    this.nodeRecordFactory = nodeRecordFactory;
+  }
+
+  @Override
+  public Optional<NodeRecordInfo> get(@Nonnull Bytes key) {
+    final byte[] enr;
+    final long lastRetry;
+    final int retry;
+    final byte status;
+    lock.readLock().lock();
+    try {
+      int position = find(key);
+      if (table[position] == EMPTY) {
+        return Optional.empty();
+      }
+      int slot = table[position];
+      ByteBuffer cell = getCell(slot);
+      enr = new byte[cell.getShort()];
+      cell.get(enr);
+      lastRetry = lastRetries[slot];
+      retry = retries[slot];
+      status = statuses[slot];
+    } finally {
+      lock.readLock().unlock();
+    }
+    return Optional.of(
+        new NodeRecordInfo(
+            nodeRecordFactory.fromBytes(enr), lastRetry, NodeStatus.fromNumber(status), retry));
+  }
+
+  @Override
+  public void put(@Nonnull Bytes key, @Nonnull NodeRecordInfo value) {
+    checkArgument(key.size() == NODE_ID_SIZE, "Node id should be %s bytes", NODE_ID_SIZE);
+    // Fails on records exceeding the max size, they are rejected as invalid before saving
+    Bytes enr = value.getNode().serialize();
+    lock.writeLock().lock();
+    try {
+      int position = find(key);
+      int slot = table[position];
+      if (slot == EMPTY) {
+        slot = allocateSlot();
+        table[position] = slot;
+        size++;
+        if (size * 2 > table.length) {
+          resizeTable();
+        }
+      }
+      ByteBuffer cell = slabs.get(slot / CELLS_PER_SLAB).duplicate();
+      cell.position((slot % CELLS_PER_SLAB) * CELL_SIZE);
+      cell.put(key.toArrayUnsafe());
+      cell.putShort((short) enr.size());
+      cell.put(enr.toArrayUnsafe());
+      lastRetries[slot] = value.getLastRetry();
+      retries[slot] = value.getRetry();
+      statuses[slot] = value.getStatus().byteCode();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(@Nonnull Bytes key) {
+    lock.writeLock().lock();
+    try {
+      int position = find(key);
+      if (table[position] == EMPTY) {
+        return;
+      }
+      freeSlots[freeSlotCount++] = table[position];
+      size--;
+      deleteFromTable(position);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Stream<Bytes> keys() {
+    List<Bytes> keys = new ArrayList<>(size);
+    lock.readLock().lock();
+    try {
+      for (int slot : table) {
+        if (slot != EMPTY) {
+          byte[] nodeId = new byte[NODE_ID_SIZE];
+          getNodeId(slot).get(nodeId);
+          keys.add(Bytes.wrap(nodeId));
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return keys.stream();
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns table position which holds the key or an empty position where it could be put */
+  private int find(Bytes key) {
+    int mask = table.length - 1;
+    int position = hash(key.size() >= Integer.BYTES ? key.getInt(0) : 0) & mask;
+    while (table[position] != EMPTY && !isNodeId(table[position], key)) {
+      position = (position + 1) & mask;
+    }
+    return position;
+  }
+
+  private boolean isNodeId(int slot, Bytes key) {
+    if (key.size() != NODE_ID_SIZE) {
+      return false;
+    }
+    ByteBuffer nodeId = getNodeId(slot);
+    for (int i = 0; i < NODE_ID_SIZE; i++) {
+      if (nodeId.get() != key.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Linear probing deletion: shifts back entries which would become unreachable otherwise */
+  private void deleteFromTable(int position) {
+    int mask = table.length - 1;
+    int hole = position;
+    int current = position;
+    while (true) {
+      current = (current + 1) & mask;
+      int slot = table[current];
+      if (slot == EMPTY) {
+        break;
+      }
+      int home = getSlotHash(slot) & mask;
+      boolean reachable =
+          hole <= current ? hole < home && home <= current : hole < home || home <= current;
+      if (!reachable) {
+        table[hole] = slot;
+        hole = current;
+      }
+    }
+    table[hole] = EMPTY;
+  }
+
+  private void resizeTable() {
+    int[] oldTable = table;
+    table = newTable(oldTable.length * 2);
+    int mask = table.length - 1;
+    for (int slot : oldTable) {
+      if (slot != EMPTY) {
+        int position = getSlotHash(slot) & mask;
+        while (table[position] != EMPTY) {
+          position = (position + 1) & mask;
+        }
+        table[position] = slot;
+      }
+    }
+  }
+
+  private int allocateSlot() {
+    if (freeSlotCount > 0) {
+      return freeSlots[--freeSlotCount];
+    }
+    int slot = allocatedSlotCount++;
+    if (slot == lastRetries.length) {
+      int capacity = lastRetries.length + CELLS_PER_SLAB;
+      lastRetries = Arrays.copyOf(lastRetries, capacity);
+      retries = Arrays.copyOf(retries, capacity);
+      statuses = Arrays.copyOf(statuses, capacity);
+      freeSlots = Arrays.copyOf(freeSlots, capacity);
+      slabs.add(ByteBuffer.allocateDirect(CELLS_PER_SLAB * CELL_SIZE));
+    }
+    return slot;
+  }
+
+  private ByteBuffer getNodeId(int slot) {
+    ByteBuffer cell = slabs.get(slot / CELLS_PER_SLAB).duplicate();
+    cell.position((slot % CELLS_PER_SLAB) * CELL_SIZE);
+    return cell;
+  }
+
+  private ByteBuffer getCell(int slot) {
+    ByteBuffer cell = getNodeId(slot);
+    cell.position(cell.position() + NODE_ID_SIZE);
+    return cell;
+  }
+
+  private int getSlotHash(int slot) {
+    return hash(getNodeId(slot).getInt());
+  }
+
+  private static int hash(int nodeIdPrefix) {
+    // Node ids are hashes already, just mix the high bits in for small tables
+    return nodeIdPrefix ^ (nodeIdPrefix >>> 16);
+  }
+
+  private static int[] newTable(int size) {
+    int[] table = new int[size];
+    Arrays.fill(table, EMPTY);
+    return table;
+  }
+}
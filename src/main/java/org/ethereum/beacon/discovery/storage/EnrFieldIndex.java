@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+
+/**
+ * Secondary index of {@link NodeTable} nodes by the value of an ENR field, registered with {@link
+ * NodeTable#addIndex(EnrFieldIndex)}. Nodes without the field are not indexed. Conditions created
+ * by the index are {@link NodeQuery} predicates for {@link NodeTable#findNodes}.
+ *
+ * <p>The index follows the table through {@link NodeTableListener} notifications, so it may miss a
+ * node which is being saved concurrently with a query. Every indexed node is checked against its
+ * table record by the query, so a stale index entry never gets into the result.
+ */
+public abstract class EnrFieldIndex implements NodeTableListener {
+  private final String fieldName;
+
+  protected EnrFieldIndex(final String fieldName) {
+    this.fieldName = fieldName;
+  }
+
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  @Override
+  public void onNodeSaved(final NodeRecordInfo node) {
+    final Bytes nodeId = node.getNode().getNodeId();
+    getValue(node).ifPresentOrElse(value -> put(nodeId, value), () -> remove(nodeId));
+  }
+
+  @Override
+  public void onNodeRemoved(final Bytes nodeId) {
+    remove(nodeId);
+  }
+
+  /** Indexes the node by the field value, replacing its previous value if any */
+  protected abstract void put(Bytes nodeId, Bytes value);
+
+  protected abstract void remove(Bytes nodeId);
+
+  /** Returns raw value of the field, custom fields are decoded as bytes */
+  protected Optional<Bytes> getValue(final NodeRecordInfo node) {
+    final Object value = node.getNode().get(fieldName);
+    return value instanceof Bytes ? Optional.of((Bytes) value) : Optional.empty();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Indexes nodes by a key derived from the field value. The key function selects the part of the
+ * value to match, e.g. {@code value -> value.slice(0, 4)} for the fork digest which starts the
+ * {@code eth2} field. Nodes with a value the key function fails on, e.g. a too short one, are not
+ * indexed.
+ */
+public class ExactMatchIndex extends EnrFieldIndex {
+  private static final Logger LOG = LogManager.getLogger();
+  private final Function<Bytes, Bytes> keyFunction;
+  private final Map<Bytes, Set<Bytes>> nodesByKey = new HashMap<>();
+  private final Map<Bytes, Bytes> keysByNode = new HashMap<>();
+
+  /** Creates index matching the whole field value */
+  public ExactMatchIndex(final String fieldName) {
+    this(fieldName, Function.identity());
+  }
+
+  public ExactMatchIndex(final String fieldName, final Function<Bytes, Bytes> keyFunction) {
+    super(fieldName);
+    this.keyFunction = keyFunction;
+  }
+
+  /** Returns condition of the field key being equal to {@code key} */
+  public NodeQuery matching(final Bytes key) {
+    return new NodeQuery(
+        this,
+        () -> getNodeIds(key),
+        node -> getValue(node).flatMap(this::getKey).filter(key::equals).isPresent());
+  }
+
+  @Override
+  protected synchronized void put(final Bytes nodeId, final Bytes value) {
+    remove(nodeId);
+    getKey(value)
+        .ifPresent(
+            key -> {
+              keysByNode.put(nodeId, key);
+              nodesByKey.computeIfAbsent(key, __ -> new HashSet<>()).add(nodeId);
+            });
+  }
+
+  @Override
+  protected synchronized void remove(final Bytes nodeId) {
+    final Bytes key = keysByNode.remove(nodeId);
+    if (key == null) {
+      return;
+    }
+    final Set<Bytes> nodes = nodesByKey.get(key);
+    nodes.remove(nodeId);
+    if (nodes.isEmpty()) {
+      nodesByKey.remove(key);
+    }
+  }
+
+  synchronized Set<Bytes> getNodeIds(final Bytes key) {
+    return new HashSet<>(nodesByKey.getOrDefault(key, Set.of()));
+  }
+
+  private Optional<Bytes> getKey(final Bytes value) {
+    try {
+      return Optional.of(keyFunction.apply(value));
+    } catch (RuntimeException e) {
+      LOG.trace("Failed to get {} key of value {}", getFieldName(), value, e);
+      return Optional.empty();
+    }
+  }
+}
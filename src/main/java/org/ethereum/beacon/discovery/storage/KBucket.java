@@ -5,12 +5,17 @@ package org.ethereum.beacon.discovery.storage;
 
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import org.ethereum.beacon.discovery.liveness.LivenessChecker;
+import org.ethereum.beacon.discovery.liveness.LivenessChecker.Priority;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 
+/**
+ * Kademlia bucket of up to {@link #K} nodes. Updates are serialized on the bucket monitor, while
+ * readers get immutable snapshots of the bucket published after every update, so they never block.
+ */
 public class KBucket {
 
   static final int K = 16;
@@ -25,7 +30,7 @@ public class KBucket {
    * and the last node in the list is the node least recently confirmed as live that should be the
    * next to check.
    */
-  private final List<BucketEntry> nodes = new ArrayList<>();
+  private final List<BucketEntry> nodes = new ArrayList<>(K);
 
   /**
    * Stores a node which could not be added becasue the bucket was full, but is confirmed live and
@@ -33,31 +38,35 @@ public class KBucket {
    */
   private Optional<BucketEntry> pendingNode = Optional.empty();
 
+  private volatile List<NodeRecord> allNodesSnapshot = List.of();
+  private volatile List<NodeRecord> liveNodesSnapshot = List.of();
+
   public KBucket(final LivenessChecker livenessChecker, final Clock clock) {
     this.livenessChecker = livenessChecker;
     this.clock = clock;
   }
 
   public List<NodeRecord> getAllNodes() {
-    return nodes.stream().map(BucketEntry::getNode).collect(Collectors.toList());
+    return allNodesSnapshot;
   }
 
   public List<NodeRecord> getLiveNodes() {
-    return nodes.stream()
-        .takeWhile(BucketEntry::isLive)
-        .map(BucketEntry::getNode)
-        .collect(Collectors.toList());
+    return liveNodesSnapshot;
   }
 
-  public Optional<NodeRecord> getPendingNode() {
+  public synchronized Optional<NodeRecord> getPendingNode() {
     return pendingNode.map(BucketEntry::getNode);
   }
 
-  public void offer(final NodeRecord node) {
-    performMaintenance();
+  /**
+   * Adds the node to the bucket if there is a room for it, otherwise checks whether it could become
+   * the pending node. Timed out nodes are only removed by {@link #performMaintenance()}.
+   */
+  public synchronized void offer(final NodeRecord node) {
     getEntry(node)
         .ifPresentOrElse(
             existing -> updateExistingRecord(existing, node), () -> offerNewNode(node));
+    publishSnapshot();
   }
 
   private void updateExistingRecord(final BucketEntry existing, final NodeRecord newRecord) {
@@ -75,7 +84,7 @@ public class KBucket {
     if (isFull()) {
       getLastNode().checkLiveness(clock.millis());
       if (pendingNode.isEmpty()) {
-        livenessChecker.checkLiveness(node);
+        livenessChecker.checkLiveness(node, Priority.REPLACEMENT_CANDIDATE);
       }
     } else {
       final BucketEntry newEntry = new BucketEntry(livenessChecker, node);
@@ -84,14 +93,17 @@ public class KBucket {
     }
   }
 
-  public void onLivenessConfirmed(final NodeRecord node) {
+  /**
+   * Moves the node to the start of the bucket, adds it if there is a room for it or makes it the
+   * pending node otherwise. Timed out nodes are only removed by {@link #performMaintenance()}.
+   */
+  public synchronized void onLivenessConfirmed(final NodeRecord node) {
     getEntry(node)
         .ifPresentOrElse(
             existingEntry -> {
               // Move to the start of the bucket
               nodes.remove(existingEntry);
               nodes.add(0, existingEntry.withLastConfirmedTime(clock.millis()));
-              performMaintenance();
             },
             () -> {
               if (pendingNode.isPresent()
@@ -99,7 +111,6 @@ public class KBucket {
                 // Update pending node
                 pendingNode = Optional.of(pendingNode.get().withLastConfirmedTime(clock.millis()));
               }
-              performMaintenance();
               if (isFull()) {
                 if (pendingNode.isEmpty()) {
                   pendingNode = Optional.of(new BucketEntry(livenessChecker, node, clock.millis()));
@@ -108,6 +119,7 @@ public class KBucket {
                 nodes.add(0, new BucketEntry(livenessChecker, node, clock.millis()));
               }
             });
+    publishSnapshot();
   }
 
   /**
@@ -127,7 +139,7 @@ public class KBucket {
    * <p>b. if there is a pending node, insert it into the bucket (at appropriate position based on
    * when it was last confirmed as live)
    */
-  public void performMaintenance() {
+  public synchronized void performMaintenance() {
     performPendingNodeMaintenance();
 
     if (nodes.isEmpty()) {
@@ -136,12 +148,13 @@ public class KBucket {
     final long currentTime = clock.millis();
     final BucketEntry lastNode = getLastNode();
     if (lastNode.hasFailedLivenessCheck(currentTime)) {
-      nodes.remove(lastNode);
+      nodes.remove(nodes.size() - 1);
       pendingNode.ifPresent(
           pendingEntry -> {
             nodes.add(0, pendingEntry);
             pendingNode = Optional.empty();
           });
+      publishSnapshot();
     } else {
       lastNode.checkLiveness(currentTime);
     }
@@ -154,7 +167,7 @@ public class KBucket {
           if (pendingEntry.hasFailedLivenessCheck(currentTime)) {
             pendingNode = Optional.empty();
           } else {
-            pendingEntry.checkLiveness(currentTime);
+            pendingEntry.checkLiveness(currentTime, Priority.REPLACEMENT_CANDIDATE);
           }
         });
   }
@@ -168,6 +181,24 @@ public class KBucket {
   }
 
   private Optional<BucketEntry> getEntry(final NodeRecord nodeRecord) {
-    return nodes.stream().filter(node -> node.getNodeId().equals(nodeRecord.getNodeId())).findAny();
+    for (BucketEntry entry : nodes) {
+      if (entry.getNodeId().equals(nodeRecord.getNodeId())) {
+        return Optional.of(entry);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private void publishSnapshot() {
+    final List<NodeRecord> allNodes = new ArrayList<>(nodes.size());
+    int liveNodesCount = 0;
+    for (BucketEntry entry : nodes) {
+      allNodes.add(entry.getNode());
+      if (liveNodesCount == allNodes.size() - 1 && entry.isLive()) {
+        liveNodesCount++;
+      }
+    }
+    allNodesSnapshot = Collections.unmodifiableList(allNodes);
+    liveNodesSnapshot = Collections.unmodifiableList(allNodes.subList(0, liveNodesCount));
   }
 }
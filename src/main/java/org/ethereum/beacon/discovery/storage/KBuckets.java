@@ -4,16 +4,25 @@
 package org.ethereum.beacon.discovery.storage;
 
 import java.time.Clock;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.liveness.LivenessChecker;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
 import org.ethereum.beacon.discovery.util.Functions;
 
-public class KBuckets {
+/**
+ * Kademlia routing table: nodes are kept in {@link KBucket}s by log distance from the home node and
+ * are only served once their liveness is confirmed, unresponsive nodes are replaced by pending ones
+ * after a failed {@link LivenessChecker} ping.
+ *
+ * <p>Buckets are locked separately and are read from lock-free snapshots, so FINDNODE requests are
+ * served concurrently with liveness updates. Timed out nodes are evicted by the periodic {@link
+ * #performMaintenance()} rather than by the updates.
+ */
+public class KBuckets implements NodeBucketStorage {
   /**
    * Minimum distance we create a bucket for. 0 is our local node record and negative distances
    * aren't allowed.
@@ -25,45 +34,72 @@ public class KBuckets {
 
   private final LocalNodeRecordStore localNodeRecordStore;
   private final Bytes homeNodeId;
-  private final LivenessChecker livenessChecker;
-  private final Map<Integer, KBucket> buckets = new HashMap<>();
-  private final Clock clock;
+  private final KBucket[] buckets = new KBucket[MAXIMUM_BUCKET + 1];
 
   public KBuckets(
       final Clock clock,
       final LocalNodeRecordStore localNodeRecordStore,
       final LivenessChecker livenessChecker) {
-    this.clock = clock;
     this.localNodeRecordStore = localNodeRecordStore;
     this.homeNodeId = localNodeRecordStore.getLocalNodeRecord().getNodeId();
-    this.livenessChecker = livenessChecker;
+    for (int distance = MIN_BUCKET; distance <= MAXIMUM_BUCKET; distance++) {
+      buckets[distance] = new KBucket(livenessChecker, clock);
+    }
   }
 
-  public synchronized Stream<NodeRecord> getLiveNodeRecords(int distance) {
+  public Stream<NodeRecord> getLiveNodeRecords(int distance) {
     if (distance == 0) {
       return Stream.of(localNodeRecordStore.getLocalNodeRecord());
     }
     return getBucket(distance).stream().flatMap(bucket -> bucket.getLiveNodes().stream());
   }
 
-  public synchronized Stream<NodeRecord> getAllNodeRecords(int distance) {
+  public Stream<NodeRecord> getAllNodeRecords(int distance) {
     if (distance == 0) {
       return Stream.of(localNodeRecordStore.getLocalNodeRecord());
     }
     return getBucket(distance).stream().flatMap(bucket -> bucket.getAllNodes().stream());
   }
 
+  @Override
+  public Stream<NodeRecord> getNodeRecords(final int index) {
+    return getLiveNodeRecords(index);
+  }
+
+  /**
+   * Offers the node if it's ACTIVE, bucket checks the liveness of new nodes itself. Nodes which
+   * failed to respond (SLEEP or DEAD) are not offered, so they are not pinged again right away.
+   */
+  @Override
+  public void put(final NodeRecordInfo nodeRecordInfo) {
+    if (nodeRecordInfo.getStatus() == NodeStatus.ACTIVE) {
+      offer(nodeRecordInfo.getNode());
+    }
+  }
+
+  @Override
+  public void onNodeContacted(final NodeRecordInfo nodeRecordInfo) {
+    onNodeContacted(nodeRecordInfo.getNode());
+  }
+
+  /** Evicts timed out nodes and schedules liveness checks of the least recently confirmed ones */
+  @Override
+  public void performMaintenance() {
+    for (int distance = MIN_BUCKET; distance <= MAXIMUM_BUCKET; distance++) {
+      buckets[distance].performMaintenance();
+    }
+  }
+
   private Optional<KBucket> getBucket(final int distance) {
-    return Optional.ofNullable(buckets.get(distance));
+    if (distance > MAXIMUM_BUCKET || distance < MIN_BUCKET) {
+      return Optional.empty();
+    }
+    return Optional.of(buckets[distance]);
   }
 
-  public synchronized void offer(NodeRecord node) {
+  public void offer(NodeRecord node) {
     final int distance = Functions.logDistance(homeNodeId, node.getNodeId());
-    if (distance > MAXIMUM_BUCKET) {
-      // Distance too great, ignore.
-      return;
-    }
-    getOrCreateBucket(distance).ifPresent(bucket -> bucket.offer(node));
+    getBucket(distance).ifPresent(bucket -> bucket.offer(node));
   }
 
   /**
@@ -73,17 +109,8 @@ public class KBuckets {
    *
    * @param node the node for which liveness was confirmed.
    */
-  public synchronized void onNodeContacted(NodeRecord node) {
+  public void onNodeContacted(NodeRecord node) {
     final int distance = Functions.logDistance(homeNodeId, node.getNodeId());
-    getOrCreateBucket(distance).ifPresent(bucket -> bucket.onLivenessConfirmed(node));
-  }
-
-  private Optional<KBucket> getOrCreateBucket(final int distance) {
-    if (distance > MAXIMUM_BUCKET || distance < MIN_BUCKET) {
-      // Distance too great, ignore.
-      return Optional.empty();
-    }
-    return Optional.of(
-        buckets.computeIfAbsent(distance, __ -> new KBucket(livenessChecker, clock)));
+    getBucket(distance).ifPresent(bucket -> bucket.onLivenessConfirmed(node));
   }
 }
@@ -0,0 +1,93 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.ethereum.beacon.discovery.util.Functions;
+
+/**
+ * Evicts nodes from the most populated log-distance to the home node, so all distances stay
+ * covered evenly. Inside the distance the least live node goes first: {@link NodeStatus#DEAD}
+ * before {@link NodeStatus#SLEEP} before {@link NodeStatus#ACTIVE}, and the one which was checked
+ * least recently among nodes with the same status.
+ */
+public class LivenessDistanceEvictionPolicy implements NodeEvictionPolicy {
+  private static final int MAX_DISTANCE = 256;
+  private static final Comparator<Candidate> EVICTION_ORDER =
+      Comparator.<Candidate>comparingInt(candidate -> -candidate.status.ordinal())
+          .thenComparingLong(candidate -> candidate.lastRetry)
+          .thenComparing(candidate -> candidate.nodeId);
+
+  private final Bytes homeNodeId;
+  private final Map<Bytes, Candidate> candidates = new HashMap<>();
+  private final List<NavigableSet<Candidate>> candidatesByDistance = new ArrayList<>();
+
+  public LivenessDistanceEvictionPolicy(Bytes homeNodeId) {
+    this.homeNodeId = homeNodeId;
+    for (int i = 0; i <= MAX_DISTANCE; i++) {
+      candidatesByDistance.add(new TreeSet<>(EVICTION_ORDER));
+    }
+  }
+
+  @Override
+  public void onSave(NodeRecordInfo node) {
+    Bytes nodeId = node.getNode().getNodeId();
+    onRemove(nodeId);
+    Candidate candidate =
+        new Candidate(
+            nodeId,
+            Functions.logDistance(homeNodeId, nodeId),
+            node.getStatus(),
+            node.getLastRetry());
+    candidates.put(nodeId, candidate);
+    candidatesByDistance.get(candidate.distance).add(candidate);
+  }
+
+  @Override
+  public void onRemove(Bytes nodeId) {
+    Candidate candidate = candidates.remove(nodeId);
+    if (candidate != null) {
+      candidatesByDistance.get(candidate.distance).remove(candidate);
+    }
+  }
+
+  @Override
+  public Optional<Bytes> selectVictim() {
+    NavigableSet<Candidate> mostPopulated = candidatesByDistance.get(0);
+    for (NavigableSet<Candidate> distanceCandidates : candidatesByDistance) {
+      // Farther distance wins on tie as it's the cheapest to refill
+      if (distanceCandidates.size() >= mostPopulated.size()) {
+        mostPopulated = distanceCandidates;
+      }
+    }
+    return mostPopulated.isEmpty()
+        ? Optional.empty()
+        : Optional.of(mostPopulated.first().nodeId);
+  }
+
+  private static class Candidate {
+    private final Bytes nodeId;
+    private final int distance;
+    private final NodeStatus status;
+    private final long lastRetry;
+
+    private Candidate(Bytes nodeId, int distance, NodeStatus status, long lastRetry) {
+      this.nodeId = nodeId;
+      this.distance = distance;
+      this.status = status;
+      this.lastRetry = lastRetry;
+    }
+  }
+}
@@ -5,9 +5,12 @@
 package org.ethereum.beacon.discovery.storage;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.Map;
 import java.util.function.Predicate;
+import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 import org.ethereum.beacon.discovery.schema.NodeStatus;
 
@@ -15,58 +18,138 @@ import org.ethereum.beacon.discovery.schema.NodeStatus;
  * Storage for nodes, K-Bucket. Holds only {@link #K} nodes, replacing nodes with the same nodeId
  * and nodes with old lastRetry. Also throws out DEAD nodes without taking any notice on other
  * fields.
+ *
+ * <p>Nodes occupy fixed slots found by node id and are linked in the order they were put or
+ * updated with a newer lastRetry. The least recently updated node is the tail of the list and is
+ * evicted first, so insert, update and eviction all take constant time.
  */
 public class NodeBucket {
   /** Bucket size, number of nodes */
   public static final int K = 16;
 
+  private static final int NONE = -1;
+
   @SuppressWarnings("UnnecessaryLambda")
   private static final Predicate<NodeRecordInfo> FILTER =
       nodeRecord -> nodeRecord.getStatus().equals(NodeStatus.ACTIVE);
 
-  private final TreeSet<NodeRecordInfo> bucket =
-      new TreeSet<>((o1, o2) -> o2.getNode().hashCode() - o1.getNode().hashCode());
+  private final NodeRecordInfo[] records = new NodeRecordInfo[K];
+  private final Map<Bytes, Integer> slotsByNodeId = new HashMap<>(2 * K);
+  // Intrusive doubly linked list of used slots, head is the latest updated node
+  private final int[] newer = new int[K];
+  private final int[] older = new int[K];
+  private int head = NONE;
+  private int tail = NONE;
+  private int size = 0;
+  private List<NodeRecordInfo> nodeRecordsView = Collections.emptyList();
 
   public synchronized boolean put(NodeRecordInfo nodeRecord) {
-    if (FILTER.test(nodeRecord)) {
-      if (!bucket.contains(nodeRecord)) {
-        boolean modified = bucket.add(nodeRecord);
-        if (bucket.size() > K) {
-          NodeRecordInfo worst = null;
-          for (NodeRecordInfo nodeRecordInfo : bucket) {
-            if (worst == null) {
-              worst = nodeRecordInfo;
-            } else if (worst.getLastRetry() > nodeRecordInfo.getLastRetry()) {
-              worst = nodeRecordInfo;
-            }
-          }
-          bucket.remove(worst);
-        }
-        return modified;
-      } else {
-        NodeRecordInfo bucketNode = bucket.subSet(nodeRecord, true, nodeRecord, true).first();
-        if (nodeRecord.getLastRetry() > bucketNode.getLastRetry()) {
-          bucket.remove(bucketNode);
-          bucket.add(nodeRecord);
-          return true;
-        }
+    Bytes nodeId = nodeRecord.getNode().getNodeId();
+    Integer slot = slotsByNodeId.get(nodeId);
+    if (!FILTER.test(nodeRecord)) {
+      if (slot == null) {
+        return false;
       }
-    } else {
-      return bucket.remove(nodeRecord);
+      unlink(slot);
+      release(slot, nodeId);
+      onModified();
+      return true;
     }
-
-    return false;
+    if (slot != null) {
+      if (nodeRecord.getLastRetry() <= records[slot].getLastRetry()) {
+        return false;
+      }
+      records[slot] = nodeRecord;
+      unlink(slot);
+      linkFirst(slot);
+      onModified();
+      return true;
+    }
+    if (size == K) {
+      if (nodeRecord.getLastRetry() < records[tail].getLastRetry()) {
+        // New node is older than the least recently updated one
+        return false;
+      }
+      int evicted = tail;
+      unlink(evicted);
+      release(evicted, records[evicted].getNode().getNodeId());
+    }
+    int newSlot = size++;
+    records[newSlot] = nodeRecord;
+    slotsByNodeId.put(nodeId, newSlot);
+    linkFirst(newSlot);
+    onModified();
+    return true;
   }
 
   public synchronized boolean contains(NodeRecordInfo nodeRecordInfo) {
-    return bucket.contains(nodeRecordInfo);
+    return slotsByNodeId.containsKey(nodeRecordInfo.getNode().getNodeId());
   }
 
-  public int size() {
-    return bucket.size();
+  public synchronized int size() {
+    return size;
   }
 
+  /** Returns immutable list of nodes, the least recently updated node goes first */
   public synchronized List<NodeRecordInfo> getNodeRecords() {
-    return new ArrayList<>(bucket);
+    if (nodeRecordsView == null) {
+      List<NodeRecordInfo> nodeRecords = new ArrayList<>(size);
+      for (int slot = tail; slot != NONE; slot = newer[slot]) {
+        nodeRecords.add(records[slot]);
+      }
+      nodeRecordsView = Collections.unmodifiableList(nodeRecords);
+    }
+    return nodeRecordsView;
+  }
+
+  private void onModified() {
+    nodeRecordsView = null;
+  }
+
+  private void linkFirst(int slot) {
+    older[slot] = head;
+    newer[slot] = NONE;
+    if (head != NONE) {
+      newer[head] = slot;
+    } else {
+      tail = slot;
+    }
+    head = slot;
+  }
+
+  private void unlink(int slot) {
+    if (newer[slot] != NONE) {
+      older[newer[slot]] = older[slot];
+    } else {
+      head = older[slot];
+    }
+    if (older[slot] != NONE) {
+      newer[older[slot]] = newer[slot];
+    } else {
+      tail = newer[slot];
+    }
+  }
+
+  /** Frees the slot moving the last used slot into it, so used slots stay contiguous */
+  private void release(int slot, Bytes nodeId) {
+    slotsByNodeId.remove(nodeId);
+    int last = --size;
+    if (slot != last) {
+      records[slot] = records[last];
+      newer[slot] = newer[last];
+      older[slot] = older[last];
+      if (newer[slot] != NONE) {
+        older[newer[slot]] = slot;
+      } else {
+        head = slot;
+      }
+      if (older[slot] != NONE) {
+        newer[older[slot]] = slot;
+      } else {
+        tail = slot;
+      }
+      slotsByNodeId.put(records[slot].getNode().getNodeId(), slot);
+    }
+    records[last] = null;
   }
 }
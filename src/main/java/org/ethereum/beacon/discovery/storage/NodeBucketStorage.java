@@ -8,9 +8,22 @@ import java.util.stream.Stream;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 
-/** Stores {@link NodeRecordInfo}'s in {@link NodeBucket}'s */
+/**
+ * Routing table of nodes grouped in buckets by log distance from the home node, answering FINDNODE
+ * requests. See {@link KBuckets} and {@link NodeBucketStorageImpl}
+ */
 public interface NodeBucketStorage {
   Stream<NodeRecord> getNodeRecords(int index);
 
+  /** Offers a known node to the buckets */
   void put(NodeRecordInfo nodeRecordInfo);
+
+  /**
+   * Called when the node has responded to our request, so its liveness is confirmed. Must not be
+   * called for incoming requests from the node.
+   */
+  void onNodeContacted(NodeRecordInfo nodeRecordInfo);
+
+  /** Called periodically to evict unresponsive nodes and check liveness where needed */
+  void performMaintenance();
 }
@@ -61,4 +61,14 @@ public class NodeBucketStorageImpl implements NodeBucketStorage {
       }
     }
   }
+
+  @Override
+  public void onNodeContacted(NodeRecordInfo nodeRecordInfo) {
+    put(nodeRecordInfo);
+  }
+
+  @Override
+  public void performMaintenance() {
+    // Buckets don't check liveness, they're updated by the node table live check
+  }
 }
@@ -0,0 +1,25 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+
+/**
+ * Chooses nodes to be evicted from a {@link NodeTable} which has reached its capacity. Calls are
+ * serialized by the table, so implementations don't need to be thread-safe.
+ */
+public interface NodeEvictionPolicy {
+
+  /** Called when node is added to the table or its record is updated */
+  void onSave(NodeRecordInfo node);
+
+  /** Called when node is removed from the table, either explicitly or by eviction */
+  void onRemove(Bytes nodeId);
+
+  /** Returns id of the node which should be evicted or empty if there is nothing to evict */
+  Optional<Bytes> selectVictim();
+}
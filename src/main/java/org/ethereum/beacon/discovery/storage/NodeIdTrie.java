@@ -0,0 +1,180 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Set of node ids organized as a binary crit-bit (PATRICIA) trie, which allows to iterate ids in
+ * XOR-distance order from any target: every branch splits ids by the first bit they differ in, so
+ * all ids in the branch half that matches the target bit are closer than any id in the other half.
+ * Iteration of the {@code k} closest ids costs {@code O(log n + k)}.
+ *
+ * <p>The trie is persistent: updates copy the path from the root and publish the new root, so
+ * iterators walk a consistent snapshot without any locking. Updates are serialized on the trie
+ * monitor.
+ */
+class NodeIdTrie {
+  private volatile Node root = null;
+
+  /** Returns true if the id was not here before */
+  public synchronized boolean add(Bytes nodeId) {
+    Node oldRoot = root;
+    root = add(oldRoot, nodeId);
+    return root != oldRoot;
+  }
+
+  /** Returns true if the id was here */
+  public synchronized boolean remove(Bytes nodeId) {
+    Node oldRoot = root;
+    root = remove(oldRoot, nodeId);
+    return root != oldRoot;
+  }
+
+  public boolean isEmpty() {
+    return root == null;
+  }
+
+  /** Iterates over snapshot of all ids ordered by XOR distance to {@code target}, closest first */
+  public Iterator<Bytes> iterateClosest(Bytes target) {
+    return new ClosestIterator(root, target);
+  }
+
+  private static Node add(Node root, Bytes nodeId) {
+    if (root == null) {
+      return new Leaf(nodeId);
+    }
+    Node node = root;
+    while (node instanceof Branch) {
+      node = ((Branch) node).getChild(nodeId);
+    }
+    int critBit = firstDifferentBit(nodeId, ((Leaf) node).nodeId);
+    if (critBit < 0) {
+      // already here
+      return root;
+    }
+    return insert(root, nodeId, critBit);
+  }
+
+  private static Node insert(Node node, Bytes nodeId, int critBit) {
+    if (node instanceof Branch && ((Branch) node).bit < critBit) {
+      Branch branch = (Branch) node;
+      return branch.withChild(nodeId, insert(branch.getChild(nodeId), nodeId, critBit));
+    }
+    Leaf leaf = new Leaf(nodeId);
+    return bit(nodeId, critBit) == 0
+        ? new Branch(critBit, leaf, node)
+        : new Branch(critBit, node, leaf);
+  }
+
+  private static Node remove(Node node, Bytes nodeId) {
+    if (node == null) {
+      return null;
+    }
+    if (node instanceof Leaf) {
+      return ((Leaf) node).nodeId.equals(nodeId) ? null : node;
+    }
+    Branch branch = (Branch) node;
+    Node child = branch.getChild(nodeId);
+    Node newChild = remove(child, nodeId);
+    if (newChild == child) {
+      return node;
+    }
+    if (newChild == null) {
+      return branch.getOtherChild(nodeId);
+    }
+    return branch.withChild(nodeId, newChild);
+  }
+
+  /** Returns index of the first (most significant) different bit or -1 if ids are equal */
+  private static int firstDifferentBit(Bytes a, Bytes b) {
+    int size = Math.max(a.size(), b.size());
+    for (int i = 0; i < size; i++) {
+      int diff = (byteAt(a, i) ^ byteAt(b, i)) & 0xFF;
+      if (diff != 0) {
+        return i * Byte.SIZE + Integer.numberOfLeadingZeros(diff) - (Integer.SIZE - Byte.SIZE);
+      }
+    }
+    return -1;
+  }
+
+  private static int bit(Bytes nodeId, int index) {
+    return (byteAt(nodeId, index / Byte.SIZE) >> (7 - (index % Byte.SIZE))) & 1;
+  }
+
+  private static int byteAt(Bytes nodeId, int index) {
+    return index < nodeId.size() ? nodeId.get(index) : 0;
+  }
+
+  private abstract static class Node {}
+
+  private static class Leaf extends Node {
+    private final Bytes nodeId;
+
+    private Leaf(Bytes nodeId) {
+      this.nodeId = nodeId;
+    }
+  }
+
+  private static class Branch extends Node {
+    private final int bit;
+    private final Node zero;
+    private final Node one;
+
+    private Branch(int bit, Node zero, Node one) {
+      this.bit = bit;
+      this.zero = zero;
+      this.one = one;
+    }
+
+    private Node getChild(Bytes nodeId) {
+      return bit(nodeId, bit) == 0 ? zero : one;
+    }
+
+    private Node getOtherChild(Bytes nodeId) {
+      return bit(nodeId, bit) == 0 ? one : zero;
+    }
+
+    private Branch withChild(Bytes nodeId, Node child) {
+      return bit(nodeId, bit) == 0 ? new Branch(bit, child, one) : new Branch(bit, zero, child);
+    }
+  }
+
+  private static class ClosestIterator implements Iterator<Bytes> {
+    private final Deque<Node> stack = new ArrayDeque<>();
+    private final Bytes target;
+
+    private ClosestIterator(Node root, Bytes target) {
+      this.target = target;
+      if (root != null) {
+        stack.push(root);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public Bytes next() {
+      if (stack.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      Node node = stack.pop();
+      while (node instanceof Branch) {
+        Branch branch = (Branch) node;
+        // Farther half is visited only after the whole closer half
+        stack.push(branch.getOtherChild(target));
+        node = branch.getChild(target);
+      }
+      return ((Leaf) node).nodeId;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+
+/**
+ * Predicate on the table nodes which {@link NodeTable#findNodes(Predicate, int)} answers from
+ * secondary indexes. Conditions are created by {@link EnrFieldIndex} implementations and combined
+ * with {@link #and(Predicate)}, which also accepts plain predicates to filter the nodes found by
+ * the indexes, e.g. {@code forkIndex.matching(digest).and(attnetsIndex.hasBit(5)).and(isLive)}.
+ *
+ * <p>Conditions of the indexes which aren't registered with the table are tested like plain
+ * predicates.
+ */
+public class NodeQuery implements Predicate<NodeRecordInfo> {
+  private final List<Condition> conditions;
+  private final Predicate<NodeRecordInfo> filter;
+
+  NodeQuery(
+      final EnrFieldIndex index,
+      final Supplier<Set<Bytes>> lookup,
+      final Predicate<NodeRecordInfo> predicate) {
+    this(List.of(new Condition(index, lookup, predicate)), node -> true);
+  }
+
+  private NodeQuery(final List<Condition> conditions, final Predicate<NodeRecordInfo> filter) {
+    this.conditions = conditions;
+    this.filter = filter;
+  }
+
+  @Override
+  public boolean test(final NodeRecordInfo node) {
+    return conditions.stream().allMatch(condition -> condition.predicate.test(node))
+        && filter.test(node);
+  }
+
+  @Override
+  public NodeQuery and(final Predicate<? super NodeRecordInfo> other) {
+    if (other instanceof NodeQuery) {
+      final NodeQuery otherQuery = (NodeQuery) other;
+      final List<Condition> allConditions = new ArrayList<>(conditions);
+      allConditions.addAll(otherQuery.conditions);
+      return new NodeQuery(allConditions, filter.and(otherQuery.filter));
+    }
+    return new NodeQuery(conditions, filter.and(other));
+  }
+
+  /**
+   * Returns ids of the nodes matching all the conditions of the registered indexes, the smallest
+   * set goes first. Empty if none of the indexes is registered.
+   */
+  Optional<Set<Bytes>> lookup(final Collection<EnrFieldIndex> registeredIndexes) {
+    return conditions.stream()
+        .filter(condition -> registeredIndexes.contains(condition.index))
+        .map(condition -> condition.lookup.get())
+        .sorted(Comparator.comparing(Set::size))
+        .reduce(
+            (nodeIds, otherNodeIds) -> {
+              nodeIds.retainAll(otherNodeIds);
+              return nodeIds;
+            });
+  }
+
+  private static class Condition {
+    private final EnrFieldIndex index;
+    private final Supplier<Set<Bytes>> lookup;
+    private final Predicate<NodeRecordInfo> predicate;
+
+    private Condition(
+        final EnrFieldIndex index,
+        final Supplier<Set<Bytes>> lookup,
+        final Predicate<NodeRecordInfo> predicate) {
+      this.index = index;
+      this.lookup = lookup;
+      this.predicate = predicate;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Streams records of the nodes saved to {@link NodeTable} as {@link NodeStatus#ACTIVE}: new nodes
+ * returned by NODES responses and handshakes, records updated with a newer sequence number and
+ * nodes which have just passed a liveness check. A node is published again every time it's saved,
+ * so subscribers get changes incrementally instead of scanning the whole table.
+ *
+ * <p>Every subscriber gets its own buffer of records it hasn't requested yet. Once the buffer is
+ * full, records are dropped or the stream fails according to the {@link BufferOverflowStrategy}.
+ */
+public class NodeRecordUpdates {
+  private static final Logger LOG = LogManager.getLogger();
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  private final NodeTable nodeTable;
+
+  public NodeRecordUpdates(final NodeTable nodeTable) {
+    this.nodeTable = nodeTable;
+  }
+
+  /**
+   * Returns a stream of node records saved after subscription
+   *
+   * @param bufferSize maximum number of records kept for a subscriber which doesn't keep up
+   * @param overflowStrategy what to do with a record when the buffer is full
+   */
+  public Publisher<NodeRecord> stream(
+      final int bufferSize, final BufferOverflowStrategy overflowStrategy) {
+    checkArgument(bufferSize > 0, "Buffer size should be positive");
+    return Flux.<NodeRecord>create(
+            sink -> {
+              final NodeTableListener listener = new UpdatesListener(sink);
+              nodeTable.addListener(listener);
+              sink.onDispose(() -> nodeTable.removeListener(listener));
+            },
+            // Requests are unbounded, the buffer below applies the limit
+            FluxSink.OverflowStrategy.BUFFER)
+        .onBackpressureBuffer(
+            bufferSize,
+            nodeRecord -> LOG.trace("Node record updates buffer is full, dropped {}", nodeRecord),
+            overflowStrategy);
+  }
+
+  private static class UpdatesListener implements NodeTableListener {
+    private final FluxSink<NodeRecord> sink;
+
+    private UpdatesListener(final FluxSink<NodeRecord> sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    public void onNodeSaved(final NodeRecordInfo node) {
+      if (node.getStatus() == NodeStatus.ACTIVE) {
+        sink.next(node.getNode());
+      }
+    }
+
+    @Override
+    public void onNodeRemoved(final Bytes nodeId) {}
+  }
+}
@@ -4,8 +4,10 @@
 
 package org.ethereum.beacon.discovery.storage;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
@@ -17,8 +19,22 @@ import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 public interface NodeTable {
   void save(NodeRecordInfo node);
 
+  /** Saves all nodes at once, cheaper than {@link #save(NodeRecordInfo)} for every node */
+  void saveAll(Collection<NodeRecordInfo> nodes);
+
   void remove(NodeRecordInfo node);
 
+  /** Adds listener which is notified about all subsequent changes of the table nodes */
+  void addListener(NodeTableListener listener);
+
+  void removeListener(NodeTableListener listener);
+
+  /** Registers secondary index of the nodes and fills it with the nodes already in the table */
+  void addIndex(EnrFieldIndex index);
+
+  /** Returns the number of nodes evicted since start because the table was full */
+  long getEvictedCount();
+
   Optional<NodeRecordInfo> getNode(Bytes nodeId);
 
   /** Returns stream of nodes including `nodeId` (if it's found) in logLimit distance from it. */
@@ -26,4 +42,13 @@ public interface NodeTable {
 
   /** Returns list of nodes including `nodeId` (if it's found) in logLimit distance from it. */
   List<NodeRecordInfo> findClosestNodes(Bytes nodeId, int logLimit);
+
+  /**
+   * Returns up to `limit` nodes matching the predicate. A {@link NodeQuery} is answered from the
+   * registered indexes, any other predicate is tested against every node of the table.
+   */
+  List<NodeRecordInfo> findNodes(Predicate<NodeRecordInfo> predicate, int limit);
+
+  /** Closes the underlying data source, so a persistent one has all the nodes on disk */
+  void close();
 }
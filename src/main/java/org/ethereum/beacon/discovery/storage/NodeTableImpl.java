@@ -4,102 +4,256 @@
 
 package org.ethereum.beacon.discovery.storage;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.annotations.VisibleForTesting;
-import java.math.BigInteger;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.ethereum.beacon.discovery.database.DataSource;
-import org.ethereum.beacon.discovery.database.HoleyList;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 import org.ethereum.beacon.discovery.util.Functions;
 
 /**
  * Stores Ethereum Node Records in {@link NodeRecordInfo} containers. Also stores home node as node
- * record. Uses indexes, {@link NodeIndex} for quick access to nodes that are close to others.
+ * record. Node ids are indexed in {@link NodeIdTrie}s for quick access to nodes that are close to
+ * others in XOR metric.
+ *
+ * <p>Ids are split into {@link #NUMBER_OF_INDEXES} tries by the first byte. As the first byte is
+ * the most significant one for XOR distance, visiting tries in the order of {@code index ^
+ * targetIndex} and every trie in its own XOR order gives all nodes strictly ordered by distance to
+ * the target.
+ *
+ * <p>Safe for concurrent use: every index is guarded by its own lock (lock striping by index), so
+ * writers of nodes from different indexes never contend. Readers iterate immutable trie snapshots
+ * and need no locking.
+ *
+ * <p>The table could be bounded by capacity. When it's exceeded, nodes chosen by {@link
+ * NodeEvictionPolicy} are removed. Calls to the policy are serialized on the policy monitor, which
+ * is never acquired while an index lock is held.
+ *
+ * <p>{@link NodeTableListener}s are notified of saved, removed and evicted nodes after the change,
+ * without holding any table lock.
  */
 public class NodeTableImpl implements NodeTable {
-  static final long NUMBER_OF_INDEXES = 256;
-  private static final int MAXIMUM_INFO_IN_ONE_BYTE = 256;
-  private static final boolean START_FROM_BEGINNING = true;
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+  static final int NUMBER_OF_INDEXES = 256;
   private final DataSource<Bytes, NodeRecordInfo> nodeTable;
-  private final HoleyList<NodeIndex> indexTable;
+  private final NodeIdTrie[] indexes = new NodeIdTrie[NUMBER_OF_INDEXES];
+  private final int capacity;
+  private final NodeEvictionPolicy evictionPolicy;
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLong evictedCount = new AtomicLong();
+  private final List<NodeTableListener> listeners = new CopyOnWriteArrayList<>();
+  private final List<EnrFieldIndex> fieldIndexes = new CopyOnWriteArrayList<>();
+
+  public NodeTableImpl(DataSource<Bytes, NodeRecordInfo> nodeTable) {
+    this(nodeTable, UNBOUNDED, null);
+  }
 
   public NodeTableImpl(
-      DataSource<Bytes, NodeRecordInfo> nodeTable, HoleyList<NodeIndex> indexTable) {
+      DataSource<Bytes, NodeRecordInfo> nodeTable,
+      int capacity,
+      NodeEvictionPolicy evictionPolicy) {
+    checkArgument(capacity > 0, "Capacity should be positive");
+    checkArgument(
+        capacity == UNBOUNDED || evictionPolicy != null,
+        "Eviction policy is required for bounded table");
     this.nodeTable = nodeTable;
-    this.indexTable = indexTable;
+    this.capacity = capacity;
+    this.evictionPolicy = evictionPolicy;
+    for (int i = 0; i < NUMBER_OF_INDEXES; i++) {
+      indexes[i] = new NodeIdTrie();
+    }
+    // Data source could be persistent and already contain nodes
+    nodeTable
+        .keys()
+        .forEach(
+            nodeKey -> {
+              if (indexes[getNodeIndex(nodeKey)].add(nodeKey)) {
+                size.incrementAndGet();
+              }
+            });
+    if (isBounded()) {
+      onSaved(
+          nodeTable
+              .keys()
+              .map(nodeTable::get)
+              .flatMap(Optional::stream)
+              .collect(Collectors.toList()));
+    }
   }
 
   @VisibleForTesting
-  static long getNodeIndex(Bytes nodeKey) {
-    int activeBytes = 1;
-    long required = NUMBER_OF_INDEXES;
-    while (required > 0) {
-      if (required == MAXIMUM_INFO_IN_ONE_BYTE) {
-        required = 0;
-      } else {
-        required = required / MAXIMUM_INFO_IN_ONE_BYTE;
-      }
+  static int getNodeIndex(Bytes nodeKey) {
+    return nodeKey.get(0) & 0xFF;
+  }
 
-      if (required > 0) {
-        activeBytes++;
+  @Override
+  public void save(NodeRecordInfo node) {
+    Bytes nodeKey = node.getNode().getNodeId();
+    NodeIdTrie index = indexes[getNodeIndex(nodeKey)];
+    synchronized (index) {
+      nodeTable.put(nodeKey, node);
+      if (index.add(nodeKey)) {
+        size.incrementAndGet();
       }
     }
+    onSaved(List.of(node));
+  }
 
-    int start = START_FROM_BEGINNING ? 0 : nodeKey.size() - activeBytes;
-    Bytes active = nodeKey.slice(start, activeBytes);
-    BigInteger activeNumber = new BigInteger(1, active.toArray());
-    // XXX: could be optimized for small NUMBER_OF_INDEXES
-    BigInteger index = activeNumber.mod(BigInteger.valueOf(NUMBER_OF_INDEXES));
+  @Override
+  public void addListener(NodeTableListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(NodeTableListener listener) {
+    listeners.remove(listener);
+  }
 
-    return index.longValue();
+  /**
+   * Starts listening for the changes before the nodes of the table are indexed, so no node saved in
+   * between is missed. Queries use the index once it's filled.
+   */
+  @Override
+  public void addIndex(EnrFieldIndex index) {
+    addListener(index);
+    streamClosestNodes(Bytes32.ZERO, 0).forEach(index::onNodeSaved);
+    fieldIndexes.add(index);
   }
 
+  /**
+   * Saves all nodes taking each index lock once: nodes are grouped by index first and every group
+   * is applied in one go.
+   */
   @Override
-  public void save(NodeRecordInfo node) {
-    Bytes nodeKey = node.getNode().getNodeId();
-    nodeTable.put(nodeKey, node);
-    NodeIndex activeIndex = indexTable.get(getNodeIndex(nodeKey)).orElseGet(NodeIndex::new);
-    List<Bytes> nodes = activeIndex.getEntries();
-    if (!nodes.contains(nodeKey)) {
-      nodes.add(nodeKey);
-      indexTable.put(getNodeIndex(nodeKey), activeIndex);
-    }
+  public void saveAll(Collection<NodeRecordInfo> nodes) {
+    Map<Integer, List<NodeRecordInfo>> nodesByIndex =
+        nodes.stream()
+            .collect(Collectors.groupingBy(node -> getNodeIndex(node.getNode().getNodeId())));
+    nodesByIndex.forEach(
+        (i, indexNodes) -> {
+          NodeIdTrie index = indexes[i];
+          synchronized (index) {
+            for (NodeRecordInfo node : indexNodes) {
+              Bytes nodeKey = node.getNode().getNodeId();
+              nodeTable.put(nodeKey, node);
+              if (index.add(nodeKey)) {
+                size.incrementAndGet();
+              }
+            }
+          }
+        });
+    onSaved(nodes);
   }
 
   @Override
   public void remove(NodeRecordInfo node) {
     Bytes nodeKey = node.getNode().getNodeId();
-    nodeTable.remove(nodeKey);
-    NodeIndex activeIndex = indexTable.get(getNodeIndex(nodeKey)).orElseGet(NodeIndex::new);
-    List<Bytes> nodes = activeIndex.getEntries();
-    if (nodes.contains(nodeKey)) {
-      nodes.remove(nodeKey);
-      indexTable.put(getNodeIndex(nodeKey), activeIndex);
+    removeFromIndex(nodeKey);
+    if (isBounded()) {
+      synchronized (evictionPolicy) {
+        evictionPolicy.onRemove(nodeKey);
+      }
+    }
+    listeners.forEach(listener -> listener.onNodeRemoved(nodeKey));
+  }
+
+  private boolean removeFromIndex(Bytes nodeKey) {
+    NodeIdTrie index = indexes[getNodeIndex(nodeKey)];
+    synchronized (index) {
+      nodeTable.remove(nodeKey);
+      if (index.remove(nodeKey)) {
+        size.decrementAndGet();
+        return true;
+      }
+      return false;
     }
   }
 
+  private void onSaved(Collection<NodeRecordInfo> nodes) {
+    nodes.forEach(node -> listeners.forEach(listener -> listener.onNodeSaved(node)));
+    if (!isBounded()) {
+      return;
+    }
+    List<Bytes> evicted = new ArrayList<>();
+    synchronized (evictionPolicy) {
+      nodes.forEach(evictionPolicy::onSave);
+      while (size.get() > capacity) {
+        Optional<Bytes> victim = evictionPolicy.selectVictim();
+        if (victim.isEmpty()) {
+          break;
+        }
+        if (removeFromIndex(victim.get())) {
+          evictedCount.incrementAndGet();
+          evicted.add(victim.get());
+        }
+        evictionPolicy.onRemove(victim.get());
+      }
+    }
+    evicted.forEach(nodeKey -> listeners.forEach(listener -> listener.onNodeRemoved(nodeKey)));
+  }
+
+  private boolean isBounded() {
+    return capacity != UNBOUNDED;
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  @Override
+  public long getEvictedCount() {
+    return evictedCount.get();
+  }
+
   @Override
   public Optional<NodeRecordInfo> getNode(Bytes nodeId) {
     return nodeTable.get(nodeId);
   }
 
+  /**
+   * Streams nodes ordered by XOR distance to `nodeId`, closest first, including `nodeId` itself (if
+   * it's found). When logLimit is not zero only nodes with {@link Functions#logDistance(Bytes,
+   * Bytes)} less than logLimit are returned. Getting the first k nodes costs O(log n + k).
+   */
   @Override
   public Stream<NodeRecordInfo> streamClosestNodes(Bytes nodeId, int logLimit) {
-    return StreamSupport.stream(
-        Spliterators.spliteratorUnknownSize(
-            new ClosestNodeIterator(nodeId, logLimit), Spliterator.ORDERED),
-        false);
+    int targetIndex = getNodeIndex(nodeId);
+    Stream<NodeRecordInfo> nodes =
+        IntStream.range(0, NUMBER_OF_INDEXES)
+            .mapToObj(distance -> indexes[targetIndex ^ distance])
+            .filter(index -> !index.isEmpty())
+            .flatMap(
+                index ->
+                    StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(
+                            index.iterateClosest(nodeId), Spliterator.ORDERED),
+                        false))
+            .map(this::getNode)
+            .flatMap(Optional::stream);
+    if (logLimit == 0) {
+      return nodes;
+    }
+    // Distance only grows along the stream
+    return nodes.takeWhile(
+        node -> Functions.logDistance(node.getNode().getNodeId(), nodeId) < logLimit);
   }
 
   /**
@@ -112,75 +266,23 @@ public class NodeTableImpl implements NodeTable {
     return streamClosestNodes(nodeId, logLimit).collect(Collectors.toList());
   }
 
-  private class ClosestNodeIterator implements Iterator<NodeRecordInfo> {
-    private final Bytes nodeId;
-    private final int logLimit;
-    private boolean limitReached = false;
-    private long currentIndexUp;
-    private long currentIndexDown;
-    private Iterator<NodeRecordInfo> currentBatch = Collections.emptyIterator();
-
-    public ClosestNodeIterator(final Bytes nodeId, final int logLimit) {
-      this.nodeId = nodeId;
-      this.logLimit = logLimit;
-      final long start = getNodeIndex(nodeId);
-      this.currentIndexUp = start;
-      this.currentIndexDown = start;
-    }
-
-    @Override
-    public boolean hasNext() {
-      if (!currentBatch.hasNext()) {
-        loadNextBatch();
-      }
-      return currentBatch.hasNext();
-    }
-
-    @Override
-    public NodeRecordInfo next() {
-      return currentBatch.next();
-    }
+  @Override
+  public List<NodeRecordInfo> findNodes(Predicate<NodeRecordInfo> predicate, int limit) {
+    checkArgument(limit > 0, "Limit should be positive");
+    Optional<Set<Bytes>> indexedNodeIds =
+        predicate instanceof NodeQuery
+            ? ((NodeQuery) predicate).lookup(fieldIndexes)
+            : Optional.empty();
+    Stream<NodeRecordInfo> candidates =
+        indexedNodeIds
+            .map(nodeIds -> nodeIds.stream().map(this::getNode).flatMap(Optional::stream))
+            .orElseGet(() -> streamClosestNodes(Bytes32.ZERO, 0));
+    // Indexed nodes are checked too, as the index may lag behind the table
+    return candidates.filter(predicate).limit(limit).collect(Collectors.toList());
+  }
 
-    private void loadNextBatch() {
-      Set<NodeRecordInfo> res = new HashSet<>();
-      while (!limitReached && res.isEmpty()) {
-        Optional<NodeIndex> upNodesOptional =
-            currentIndexUp >= NUMBER_OF_INDEXES ? Optional.empty() : indexTable.get(currentIndexUp);
-        Optional<NodeIndex> downNodesOptional =
-            currentIndexDown < 0 ? Optional.empty() : indexTable.get(currentIndexDown);
-        if (currentIndexUp >= NUMBER_OF_INDEXES && currentIndexDown < 0) {
-          // Bounds are reached from both top and bottom
-          break;
-        }
-        upNodesOptional.ifPresent(
-            upNodes -> {
-              for (Bytes currentNodeId : upNodes.getEntries()) {
-                if (logLimit != 0 && Functions.logDistance(currentNodeId, nodeId) >= logLimit) {
-                  limitReached = true;
-                  break;
-                } else {
-                  getNode(currentNodeId).ifPresent(res::add);
-                }
-              }
-            });
-        downNodesOptional.ifPresent(
-            downNodes -> {
-              List<Bytes> entries = downNodes.getEntries();
-              // XXX: iterate in reverse order to reach logDistance limit from the right side
-              for (int i = entries.size() - 1; i >= 0; i--) {
-                Bytes currentNodeId = entries.get(i);
-                if (logLimit != 0 && Functions.logDistance(currentNodeId, nodeId) >= logLimit) {
-                  limitReached = true;
-                  break;
-                } else {
-                  getNode(currentNodeId).ifPresent(res::add);
-                }
-              }
-            });
-        currentIndexUp++;
-        currentIndexDown--;
-      }
-      this.currentBatch = res.iterator();
-    }
+  @Override
+  public void close() {
+    nodeTable.close();
   }
 }
@@ -0,0 +1,21 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+
+/**
+ * Listens for changes of {@link NodeTable} nodes. Called after the change is applied, not holding
+ * any table lock, possibly from several threads at once.
+ */
+public interface NodeTableListener {
+
+  /** Called when node is added to the table or its record is updated */
+  void onNodeSaved(NodeRecordInfo node);
+
+  /** Called when node is removed from the table, either explicitly or by eviction */
+  void onNodeRemoved(Bytes nodeId);
+}
@@ -6,11 +6,72 @@ package org.ethereum.beacon.discovery.storage;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.nio.file.Path;
 import java.util.List;
+import java.util.function.Supplier;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.database.DataSource;
+import org.ethereum.beacon.discovery.database.HashMapDataSource;
+import org.ethereum.beacon.discovery.database.MappedFileDataSource;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 
 public class NodeTableStorageFactoryImpl implements NodeTableStorageFactory {
+  private final Supplier<DataSource<Bytes, NodeRecordInfo>> dataSourceSupplier;
+  private final int capacity;
+  private final Supplier<NodeEvictionPolicy> evictionPolicySupplier;
+
+  /** Creates factory of in-memory node tables */
+  public NodeTableStorageFactoryImpl() {
+    this(HashMapDataSource::new);
+  }
+
+  public NodeTableStorageFactoryImpl(
+      Supplier<DataSource<Bytes, NodeRecordInfo>> dataSourceSupplier) {
+    this(dataSourceSupplier, NodeTableImpl.UNBOUNDED, () -> null);
+  }
+
+  private NodeTableStorageFactoryImpl(
+      Supplier<DataSource<Bytes, NodeRecordInfo>> dataSourceSupplier,
+      int capacity,
+      Supplier<NodeEvictionPolicy> evictionPolicySupplier) {
+    this.dataSourceSupplier = dataSourceSupplier;
+    this.capacity = capacity;
+    this.evictionPolicySupplier = evictionPolicySupplier;
+  }
+
+  /**
+   * Creates factory of in-memory node tables which keep node records off-heap with {@link
+   * CompactNodeRecordDataSource}
+   */
+  public static NodeTableStorageFactoryImpl createCompact(NodeRecordFactory nodeRecordFactory) {
+    return new NodeTableStorageFactoryImpl(
+        () -> new CompactNodeRecordDataSource(nodeRecordFactory));
+  }
+
+  /**
+   * Returns factory of the same tables, but bounded by {@code capacity}. Nodes chosen by the
+   * eviction policy are removed when the capacity is exceeded.
+   */
+  public NodeTableStorageFactoryImpl withCapacity(
+      int capacity, Supplier<NodeEvictionPolicy> evictionPolicySupplier) {
+    return new NodeTableStorageFactoryImpl(dataSourceSupplier, capacity, evictionPolicySupplier);
+  }
+
+  /**
+   * Creates factory of node tables persisted in {@code directory} with {@link
+   * MappedFileDataSource}, so the nodes known before restart are available immediately
+   */
+  public static NodeTableStorageFactoryImpl createPersistent(
+      Path directory, NodeRecordFactory nodeRecordFactory) {
+    return new NodeTableStorageFactoryImpl(
+        () ->
+            new MappedFileDataSource<>(
+                directory,
+                NodeRecordInfo::toRlpBytes,
+                bytes -> NodeRecordInfo.fromRlpBytes(bytes, nodeRecordFactory)));
+  }
 
   /**
    * Creates storage for nodes table
@@ -22,14 +83,23 @@ public class NodeTableStorageFactoryImpl implements NodeTableStorageFactory {
    */
   @Override
   public NodeTableStorage createTable(List<NodeRecord> bootnodes) {
-    NodeTableStorage nodeTableStorage = new NodeTableStorageImpl();
+    NodeTableStorage nodeTableStorage =
+        new NodeTableStorageImpl(
+            dataSourceSupplier.get(), capacity, evictionPolicySupplier.get());
 
-    // Init storage with boot nodes
+    // Init storage with boot nodes, keeping those a persistent table already knows as well
     bootnodes.forEach(
         nodeRecord -> {
           checkArgument(nodeRecord.isValid(), "Invalid bootnode: " + nodeRecord.asEnr());
-          NodeRecordInfo nodeRecordInfo = NodeRecordInfo.createDefault(nodeRecord);
-          nodeTableStorage.get().save(nodeRecordInfo);
+          boolean shouldSave =
+              nodeTableStorage
+                  .get()
+                  .getNode(nodeRecord.getNodeId())
+                  .map(known -> known.getNode().getSeq().compareTo(nodeRecord.getSeq()) < 0)
+                  .orElse(true);
+          if (shouldSave) {
+            nodeTableStorage.get().save(NodeRecordInfo.createDefault(nodeRecord));
+          }
         });
     return nodeTableStorage;
   }
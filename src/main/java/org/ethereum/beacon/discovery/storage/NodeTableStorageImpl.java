@@ -4,8 +4,10 @@
 
 package org.ethereum.beacon.discovery.storage;
 
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.database.DataSource;
 import org.ethereum.beacon.discovery.database.HashMapDataSource;
-import org.ethereum.beacon.discovery.database.HoleyList;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 
 /** Creates NodeTableStorage containing NodeTable with indexes */
 public class NodeTableStorageImpl implements NodeTableStorage {
@@ -13,8 +15,18 @@ public class NodeTableStorageImpl implements NodeTableStorage {
   private final NodeTable nodeTable;
 
   public NodeTableStorageImpl() {
-    HoleyList<NodeIndex> nodeIndexesTable = new HoleyList<>();
-    this.nodeTable = new NodeTableImpl(new HashMapDataSource<>(), nodeIndexesTable);
+    this(new HashMapDataSource<>());
+  }
+
+  public NodeTableStorageImpl(DataSource<Bytes, NodeRecordInfo> dataSource) {
+    this.nodeTable = new NodeTableImpl(dataSource);
+  }
+
+  public NodeTableStorageImpl(
+      DataSource<Bytes, NodeRecordInfo> dataSource,
+      int capacity,
+      NodeEvictionPolicy evictionPolicy) {
+    this.nodeTable = new NodeTableImpl(dataSource, capacity, evictionPolicy);
   }
 
   @Override
@@ -0,0 +1,208 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import com.google.common.collect.Sets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.scheduler.Scheduler;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.ethereum.beacon.discovery.storage.KBuckets;
+import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.storage.NodeTableListener;
+import org.ethereum.beacon.discovery.task.RecursiveLookupTask.FindNodesAction;
+import org.ethereum.beacon.discovery.util.Functions;
+
+/**
+ * Fills the node table with live peers right after start. All bootnodes are queried at once for
+ * the farthest distances, which hold most of the network, the nodes they return are pinged and the
+ * home node id is looked up as soon as the first bootnode responds.
+ *
+ * <p>A peer is live once the table saves it as {@link NodeStatus#ACTIVE} after a response received
+ * since the bootstrap start. The bootstrap is over when {@code peerCount} peers are live or the
+ * timeout passes, whichever comes first.
+ */
+class BootstrapTask implements NodeTableListener {
+  private static final Logger LOG = LogManager.getLogger();
+  static final int QUERIES_PER_BOOTNODE = 3;
+  static final List<List<Integer>> BOOTSTRAP_DISTANCES = createBootstrapDistances();
+  // Limits pings of the nodes returned by bootnodes, as some of them are dead
+  static final int MAX_PINGS_PER_PEER = 4;
+
+  private final NodeTable nodeTable;
+  private final Scheduler scheduler;
+  private final FindNodesAction findNodesAction;
+  private final Consumer<NodeRecord> checkLiveness;
+  private final Function<Bytes32, CompletableFuture<List<NodeRecord>>> lookup;
+  private final Bytes32 homeNodeId;
+  private final List<NodeRecord> bootnodes;
+  private final int peerCount;
+  private final Duration timeout;
+  private final Set<Bytes> livePeers = Sets.newConcurrentHashSet();
+  private final Set<Bytes> pingedNodes = new HashSet<>();
+  private final AtomicInteger remainingQueries = new AtomicInteger();
+  private final AtomicBoolean lookupStarted = new AtomicBoolean();
+  private final CompletableFuture<Integer> future = new CompletableFuture<>();
+  private volatile long startTimeSeconds;
+  private long startTimeMillis;
+  private Optional<Duration> timeToPeerCount = Optional.empty();
+  private boolean completed = false;
+
+  BootstrapTask(
+      final NodeTable nodeTable,
+      final Scheduler scheduler,
+      final FindNodesAction findNodesAction,
+      final Consumer<NodeRecord> checkLiveness,
+      final Function<Bytes32, CompletableFuture<List<NodeRecord>>> lookup,
+      final Bytes32 homeNodeId,
+      final List<NodeRecord> bootnodes,
+      final int peerCount,
+      final Duration timeout) {
+    this.nodeTable = nodeTable;
+    this.scheduler = scheduler;
+    this.findNodesAction = findNodesAction;
+    this.checkLiveness = checkLiveness;
+    this.lookup = lookup;
+    this.homeNodeId = homeNodeId;
+    this.bootnodes = bootnodes;
+    this.peerCount = peerCount;
+    this.timeout = timeout;
+  }
+
+  /** Returns future of the number of live peers when the bootstrap is over */
+  CompletableFuture<Integer> execute() {
+    synchronized (this) {
+      startTimeSeconds = Functions.getTime();
+      startTimeMillis = scheduler.getCurrentTime();
+    }
+    nodeTable.addListener(this);
+    future.whenComplete((__, error) -> nodeTable.removeListener(this));
+    scheduler.executeWithDelayR(timeout, this::complete);
+
+    remainingQueries.set(bootnodes.size() * BOOTSTRAP_DISTANCES.size());
+    if (bootnodes.isEmpty()) {
+      // Nodes known from the previous run are the only way in
+      startLookup();
+    }
+    for (NodeRecord bootnode : bootnodes) {
+      for (List<Integer> distances : BOOTSTRAP_DISTANCES) {
+        findNodesAction
+            .findNodes(NodeRecordInfo.createDefault(bootnode), distances)
+            .whenComplete(
+                (foundNodes, error) -> {
+                  if (error != null) {
+                    LOG.debug("Failed to query bootnode " + bootnode.getNodeId(), error);
+                  }
+                  onQueryCompleted(foundNodes, error);
+                });
+      }
+    }
+    return future;
+  }
+
+  /** Returns the time it took to get {@code peerCount} live peers, if they were reached */
+  synchronized Optional<Duration> getTimeToPeerCount() {
+    return timeToPeerCount;
+  }
+
+  @Override
+  public void onNodeSaved(final NodeRecordInfo node) {
+    final Bytes nodeId = node.getNode().getNodeId();
+    if (node.getStatus() == NodeStatus.ACTIVE && node.getLastRetry() >= startTimeSeconds) {
+      livePeers.add(nodeId);
+      if (livePeers.size() >= peerCount) {
+        complete();
+      }
+    } else {
+      livePeers.remove(nodeId);
+    }
+  }
+
+  @Override
+  public void onNodeRemoved(final Bytes nodeId) {
+    livePeers.remove(nodeId);
+  }
+
+  private void onQueryCompleted(final Collection<NodeRecord> foundNodes, final Throwable error) {
+    if (error == null) {
+      // The responded bootnode is live now, so the lookup has a node to start from
+      startLookup();
+      foundNodes.forEach(this::ping);
+    }
+    if (remainingQueries.decrementAndGet() == 0) {
+      startLookup();
+    }
+  }
+
+  private void startLookup() {
+    if (future.isDone() || !lookupStarted.compareAndSet(false, true)) {
+      return;
+    }
+    lookup
+        .apply(homeNodeId)
+        .whenComplete(
+            (__, error) -> {
+              if (error != null) {
+                LOG.debug("Bootstrap lookup failed", error);
+              }
+            });
+  }
+
+  private synchronized void ping(final NodeRecord node) {
+    if (completed
+        || pingedNodes.size() >= peerCount * MAX_PINGS_PER_PEER
+        || node.getNodeId().equals(homeNodeId)
+        || !pingedNodes.add(node.getNodeId())) {
+      return;
+    }
+    checkLiveness.accept(node);
+  }
+
+  private void complete() {
+    final int livePeerCount;
+    synchronized (this) {
+      if (completed) {
+        return;
+      }
+      completed = true;
+      livePeerCount = livePeers.size();
+      if (livePeerCount >= peerCount) {
+        timeToPeerCount =
+            Optional.of(Duration.ofMillis(scheduler.getCurrentTime() - startTimeMillis));
+      }
+    }
+    LOG.debug("Bootstrap is over with {} live peers", livePeerCount);
+    future.complete(livePeerCount);
+  }
+
+  private static List<List<Integer>> createBootstrapDistances() {
+    final List<List<Integer>> queries = new ArrayList<>();
+    for (int query = 0; query < QUERIES_PER_BOOTNODE; query++) {
+      final List<Integer> distances = new ArrayList<>();
+      for (int i = 0; i < RecursiveLookupTask.MAX_DISTANCES_PER_QUERY; i++) {
+        distances.add(
+            KBuckets.MAXIMUM_BUCKET - query * RecursiveLookupTask.MAX_DISTANCES_PER_QUERY - i);
+      }
+      queries.add(distances);
+    }
+    return queries;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import java.util.Random;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.bytes.MutableBytes32;
+import org.ethereum.beacon.discovery.storage.KBuckets;
+import org.ethereum.beacon.discovery.storage.NodeBucket;
+import org.ethereum.beacon.discovery.storage.NodeBucketStorage;
+
+/**
+ * Tracks when every bucket of {@link NodeBucketStorage} was refreshed by a lookup of a target at
+ * its distance, and selects the bucket to refresh next.
+ *
+ * <p>Refresh interval of a bucket grows with its size from {@link #MIN_REFRESH_INTERVAL_SECONDS}
+ * for an empty bucket to {@link #MAX_REFRESH_INTERVAL_SECONDS} for a full one, and the bucket with
+ * the largest part of its interval passed since the last refresh is the most stale one. Only the
+ * buckets starting from the closest non-empty one are refreshed, as closer buckets stay empty
+ * unless the network is huge.
+ */
+class BucketRefreshSchedule {
+  static final long MIN_REFRESH_INTERVAL_SECONDS = 30;
+  static final long MAX_REFRESH_INTERVAL_SECONDS = 600;
+
+  private final NodeBucketStorage nodeBucketStorage;
+  // Seconds by distance, zero for buckets which were never refreshed
+  private final long[] lastRefreshTimes = new long[KBuckets.MAXIMUM_BUCKET + 1];
+
+  BucketRefreshSchedule(final NodeBucketStorage nodeBucketStorage) {
+    this.nodeBucketStorage = nodeBucketStorage;
+  }
+
+  /**
+   * Returns the distance of the most stale bucket, the closest one among equally stale buckets
+   *
+   * @param currentTime current time in seconds
+   */
+  synchronized int getMostStaleBucket(final long currentTime) {
+    final int closestBucket = getClosestNonEmptyBucket();
+    int mostStaleBucket = KBuckets.MAXIMUM_BUCKET;
+    double maxStaleness = -1;
+    for (int distance = closestBucket; distance <= KBuckets.MAXIMUM_BUCKET; distance++) {
+      final double staleness = getStaleness(distance, currentTime);
+      if (staleness > maxStaleness) {
+        maxStaleness = staleness;
+        mostStaleBucket = distance;
+      }
+    }
+    return mostStaleBucket;
+  }
+
+  /** Returns true if the refresh interval of the bucket has passed since its last refresh */
+  synchronized boolean isDue(final int distance, final long currentTime) {
+    return getStaleness(distance, currentTime) >= 1;
+  }
+
+  synchronized void onRefreshed(final int distance, final long currentTime) {
+    lastRefreshTimes[distance] = currentTime;
+  }
+
+  long getRefreshInterval(final int distance) {
+    final long size = Math.min(NodeBucket.K, nodeBucketStorage.getNodeRecords(distance).count());
+    return MIN_REFRESH_INTERVAL_SECONDS
+        + (MAX_REFRESH_INTERVAL_SECONDS - MIN_REFRESH_INTERVAL_SECONDS) * size / NodeBucket.K;
+  }
+
+  /** Returns random node id at the log distance from the home node, see {@link KBuckets} */
+  static Bytes32 createTarget(final Bytes homeNodeId, final int distance, final Random random) {
+    final MutableBytes32 xor = MutableBytes32.create();
+    if (distance > 0) {
+      // The highest set bit of the XOR is bit (distance - 1), lower bits are random
+      final byte[] randomBytes = new byte[Bytes32.SIZE];
+      random.nextBytes(randomBytes);
+      final int highestByte = (KBuckets.MAXIMUM_BUCKET - distance) / Byte.SIZE;
+      final int highestBit = (distance - 1) % Byte.SIZE;
+      xor.set(
+          highestByte,
+          (byte) ((randomBytes[highestByte] & ((1 << highestBit) - 1)) | (1 << highestBit)));
+      for (int i = highestByte + 1; i < Bytes32.SIZE; i++) {
+        xor.set(i, randomBytes[i]);
+      }
+    }
+    return Bytes32.wrap(homeNodeId.xor(xor));
+  }
+
+  private double getStaleness(final int distance, final long currentTime) {
+    return (double) (currentTime - lastRefreshTimes[distance]) / getRefreshInterval(distance);
+  }
+
+  private int getClosestNonEmptyBucket() {
+    for (int distance = 1; distance < KBuckets.MAXIMUM_BUCKET; distance++) {
+      if (nodeBucketStorage.getNodeRecords(distance).findAny().isPresent()) {
+        return distance;
+      }
+    }
+    return KBuckets.MAXIMUM_BUCKET;
+  }
+}
@@ -4,14 +4,18 @@
 
 package org.ethereum.beacon.discovery.task;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.ethereum.beacon.discovery.schema.NodeStatus.DEAD;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
-import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -25,9 +29,13 @@ import org.ethereum.beacon.discovery.scheduler.Scheduler;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.ethereum.beacon.discovery.storage.NodeBucket;
 import org.ethereum.beacon.discovery.storage.NodeBucketStorage;
 import org.ethereum.beacon.discovery.storage.NodeTable;
 import org.ethereum.beacon.discovery.util.Functions;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
 
 /** Manages recurrent node check task(s) */
 public class DiscoveryTaskManager {
@@ -38,46 +46,29 @@ public class DiscoveryTaskManager {
   private static final int CONCURRENT_LIVENESS_CHECK_LIMIT = 5;
   private static final int RECURSIVE_LOOKUP_INTERVAL_SECONDS = 10;
   private static final int RECURSIVE_SEARCH_QUERY_LIMIT = 15;
-  private static final int MAX_RETRIES = 10;
+  public static final int DEFAULT_LOOKUP_CONCURRENCY = 3;
+  public static final int DEFAULT_LOOKUP_RESULT_SIZE = NodeBucket.K;
+  public static final int DEFAULT_LOOKUP_DISTANCES_PER_QUERY = 3;
+  private static final int LOOKUP_QUERY_LIMIT = 64;
+  private static final Duration LOOKUP_CACHE_TTL = Duration.ofSeconds(10);
+  public static final int DEFAULT_BOOTSTRAP_PEER_COUNT = NodeBucket.K;
+  public static final Duration DEFAULT_BOOTSTRAP_TIMEOUT = Duration.ofSeconds(30);
+  static final int MAX_RETRIES = 10;
   private final Scheduler scheduler;
   private final Bytes homeNodeId;
   private final LiveCheckTasks liveCheckTasks;
   private final RecursiveLookupTasks recursiveLookupTasks;
   private final NodeTable nodeTable;
   private final NodeBucketStorage nodeBucketStorage;
-  /**
-   * Checks whether {@link NodeRecord} is ready for alive status check. Plus, marks records as DEAD
-   * if there were a lot of unsuccessful retries to get reply from node.
-   *
-   * <p>We don't need to recheck the node if
-   *
-   * <ul>
-   *   <li>Node is ACTIVE and last connection retry was not too much time ago
-   *   <li>Node is marked as {@link NodeStatus#DEAD}
-   *   <li>Node is not ACTIVE but last connection retry was "seconds ago"
-   * </ul>
-   *
-   * <p>In all other cases method returns true, meaning node is ready for ping check
-   */
-  @SuppressWarnings("UnnecessaryLambda")
-  private static final Predicate<NodeRecordInfo> LIVE_CHECK_NODE_RULE =
-      nodeRecord -> {
-        long currentTime = Functions.getTime();
-        if (nodeRecord.getStatus() == NodeStatus.ACTIVE
-            && nodeRecord.getLastRetry() > currentTime - STATUS_EXPIRATION_SECONDS) {
-          return false; // no need to rediscover
-        }
-        if (DEAD.equals(nodeRecord.getStatus())) {
-          return false; // node looks dead but we are keeping its records for some reason
-        }
-        if ((currentTime - nodeRecord.getLastRetry())
-            < (nodeRecord.getRetry() * nodeRecord.getRetry())) {
-          return false; // too early for retry
-        }
-
-        return true;
-      };
-
+  private final LiveCheckSchedule liveCheckDeadlines = new LiveCheckSchedule();
+  private final long liveCheckLeaseSeconds;
+  private final int lookupConcurrency;
+  private final int lookupResultSize;
+  private final int lookupDistancesPerQuery;
+  private final LookupCache lookupCache = new LookupCache(LOOKUP_CACHE_TTL, Clock.systemUTC());
+  private final BucketRefreshSchedule bucketRefreshSchedule;
+  private final Random random = new Random();
+  private volatile Optional<BootstrapTask> bootstrapTask = Optional.empty();
   /**
    * Checks whether {@link org.ethereum.beacon.discovery.schema.NodeRecord} is ready for FINDNODE
    * query which expands the list of all known nodes.
@@ -99,12 +90,15 @@ public class DiscoveryTaskManager {
   private static final Predicate<NodeRecordInfo> DEAD_RULE =
       nodeRecord -> nodeRecord.getRetry() >= MAX_RETRIES;
 
-  private final Consumer<NodeRecord>[] nodeRecordUpdatesConsumers;
   private final Duration liveCheckInterval;
-  private boolean resetDead;
-  private boolean removeDead;
+  private final boolean resetDead;
+  private final boolean removeDead;
+  private boolean liveCheckDeadlinesLoaded = false;
   private CompletableFuture<Void> liveCheckSchedule;
   private CompletableFuture<Void> recursiveLookupSchedule;
+  // Accessed on the scheduler thread only
+  private CompletableFuture<Void> currentSearchForNewPeers =
+      CompletableFuture.completedFuture(null);
 
   /**
    * @param discoveryManager Discovery manager
@@ -117,10 +111,12 @@ public class DiscoveryTaskManager {
    *     status at startup and sets number of used retries to 0. Reset applies after remove, so if
    *     remove is on, reset will be applied to 0 nodes
    * @param removeDead Whether to remove nodes that are found dead after several retries
-   * @param nodeRecordUpdatesConsumers consumers are executed when nodeRecord is updated with new
-   *     sequence number, so it should be updated in nodeSession
+   * @param retryTimeout Maximum time to wait for a response, the actual timeout of a request is
+   *     derived from the round trip times of the peer
+   * @param lookupConcurrency Number of FINDNODE requests in flight during a lookup (alpha)
+   * @param lookupResultSize Number of closest nodes returned by a lookup (k)
+   * @param lookupDistancesPerQuery Number of distances requested by a single FINDNODE of a lookup
    */
-  @SafeVarargs
   public DiscoveryTaskManager(
       DiscoveryManager discoveryManager,
       NodeTable nodeTable,
@@ -132,20 +128,29 @@ public class DiscoveryTaskManager {
       ExpirationSchedulerFactory expirationSchedulerFactory,
       Duration retryTimeout,
       Duration liveCheckInterval,
-      Consumer<NodeRecord>... nodeRecordUpdatesConsumers) {
+      int lookupConcurrency,
+      int lookupResultSize,
+      int lookupDistancesPerQuery) {
     this.scheduler = scheduler;
     this.nodeTable = nodeTable;
     this.nodeBucketStorage = nodeBucketStorage;
+    this.bucketRefreshSchedule = new BucketRefreshSchedule(nodeBucketStorage);
     this.homeNodeId = homeNode.getNodeId();
+    final RttEstimator rttEstimator = new RttEstimator(retryTimeout);
     this.liveCheckTasks =
-        new LiveCheckTasks(discoveryManager, scheduler, expirationSchedulerFactory, retryTimeout);
+        new LiveCheckTasks(discoveryManager, scheduler, expirationSchedulerFactory, rttEstimator);
     this.recursiveLookupTasks =
         new RecursiveLookupTasks(
-            discoveryManager, scheduler, expirationSchedulerFactory, retryTimeout);
+            discoveryManager, scheduler, expirationSchedulerFactory, rttEstimator);
     this.liveCheckInterval = liveCheckInterval;
+    // Node is rescheduled if its live check result was not saved in time for any reason
+    this.liveCheckLeaseSeconds = retryTimeout.getSeconds() + 1;
     this.resetDead = resetDead;
     this.removeDead = removeDead;
-    this.nodeRecordUpdatesConsumers = nodeRecordUpdatesConsumers;
+    this.lookupConcurrency = lookupConcurrency;
+    this.lookupResultSize = lookupResultSize;
+    this.lookupDistancesPerQuery = lookupDistancesPerQuery;
+    nodeTable.addListener(liveCheckDeadlines);
   }
 
   public synchronized void start() {
@@ -155,7 +160,7 @@ public class DiscoveryTaskManager {
         scheduler.executeAtFixedRate(
             Duration.ZERO,
             Duration.ofSeconds(RECURSIVE_LOOKUP_INTERVAL_SECONDS),
-            this::performSearchForNewPeers);
+            this::refreshBuckets);
   }
 
   public synchronized void stop() {
@@ -169,63 +174,122 @@ public class DiscoveryTaskManager {
     }
   }
 
+  /**
+   * Pops nodes due for a check from {@link LiveCheckSchedule}: removes or marks as DEAD nodes with
+   * too many retries and pings up to {@link #CONCURRENT_LIVENESS_CHECK_LIMIT} others. The whole
+   * table is only scanned once to load the schedule.
+   */
   private void liveCheckTask() {
-    List<NodeRecordInfo> nodes = nodeTable.findClosestNodes(homeNodeId, 0);
+    nodeBucketStorage.performMaintenance();
+    if (!liveCheckDeadlinesLoaded) {
+      loadLiveCheckDeadlines();
+      liveCheckDeadlinesLoaded = true;
+    }
 
-    // Dead nodes handling
-    nodes.stream()
-        .filter(DEAD_RULE)
+    long currentTime = Functions.getTime();
+    int liveChecks = 0;
+    while (liveChecks < CONCURRENT_LIVENESS_CHECK_LIMIT) {
+      Optional<Bytes> dueNodeId = liveCheckDeadlines.pollDue(currentTime);
+      if (dueNodeId.isEmpty()) {
+        break;
+      }
+      Optional<NodeRecordInfo> dueNode = nodeTable.getNode(dueNodeId.get());
+      if (dueNode.isEmpty()) {
+        continue;
+      }
+      NodeRecordInfo nodeRecord = dueNode.get();
+      if (DEAD_RULE.test(nodeRecord)) {
+        if (removeDead) {
+          nodeTable.remove(nodeRecord);
+        } else {
+          nodeTable.save(
+              new NodeRecordInfo(
+                  nodeRecord.getNode(), nodeRecord.getLastRetry(), DEAD, nodeRecord.getRetry()));
+        }
+      } else if (LiveCheckSchedule.getDeadline(nodeRecord) > currentTime) {
+        // Node was updated after it was taken from the schedule
+        liveCheckDeadlines.onNodeSaved(nodeRecord);
+      } else {
+        liveCheckDeadlines.schedule(
+            nodeRecord.getNode().getNodeId(), currentTime + liveCheckLeaseSeconds);
+        checkLiveness(nodeRecord);
+        liveChecks++;
+      }
+    }
+  }
+
+  /** Schedules all nodes of the table, removing or resetting DEAD nodes if required */
+  private void loadLiveCheckDeadlines() {
+    nodeTable
+        .streamClosestNodes(homeNodeId, 0)
         .forEach(
-            deadMarkedNode -> {
-              if (removeDead) {
-                nodeTable.remove(deadMarkedNode);
-              } else {
+            nodeRecordInfo -> {
+              if (removeDead && DEAD_RULE.test(nodeRecordInfo)) {
+                nodeTable.remove(nodeRecordInfo);
+              } else if (resetDead && DEAD.equals(nodeRecordInfo.getStatus())) {
                 nodeTable.save(
                     new NodeRecordInfo(
-                        deadMarkedNode.getNode(),
-                        deadMarkedNode.getLastRetry(),
-                        DEAD,
-                        deadMarkedNode.getRetry()));
+                        nodeRecordInfo.getNode(),
+                        nodeRecordInfo.getLastRetry(),
+                        NodeStatus.SLEEP,
+                        0));
+              } else {
+                liveCheckDeadlines.onNodeSaved(nodeRecordInfo);
               }
             });
+  }
 
-    // resets dead records
-    Stream<NodeRecordInfo> closestNodes = nodes.stream();
-    if (resetDead) {
-      closestNodes =
-          closestNodes.map(
-              nodeRecordInfo -> {
-                if (DEAD.equals(nodeRecordInfo.getStatus())) {
-                  return new NodeRecordInfo(
-                      nodeRecordInfo.getNode(), nodeRecordInfo.getLastRetry(), NodeStatus.SLEEP, 0);
-                } else {
-                  return nodeRecordInfo;
-                }
-              });
-      resetDead = false;
-    }
+  private void checkLiveness(final NodeRecord nodeRecord) {
+    checkLiveness(
+        nodeTable
+            .getNode(nodeRecord.getNodeId())
+            .orElseGet(() -> NodeRecordInfo.createDefault(nodeRecord)));
+  }
 
-    // Live check task
-    closestNodes
-        .filter(LIVE_CHECK_NODE_RULE)
-        .limit(CONCURRENT_LIVENESS_CHECK_LIMIT)
-        .forEach(
-            nodeRecord ->
-                liveCheckTasks.add(
-                    nodeRecord,
-                    () ->
-                        updateNode(
-                            nodeRecord,
-                            new NodeRecordInfo(
-                                nodeRecord.getNode(), Functions.getTime(), NodeStatus.ACTIVE, 0)),
-                    () ->
-                        updateNode(
-                            nodeRecord,
-                            new NodeRecordInfo(
-                                nodeRecord.getNode(),
-                                Functions.getTime(),
-                                NodeStatus.SLEEP,
-                                (nodeRecord.getRetry() + 1)))));
+  private void checkLiveness(final NodeRecordInfo nodeRecord) {
+    liveCheckTasks.add(
+        nodeRecord,
+        () ->
+            updateNode(
+                nodeRecord,
+                new NodeRecordInfo(
+                    nodeRecord.getNode(), Functions.getTime(), NodeStatus.ACTIVE, 0)),
+        () ->
+            updateNode(
+                nodeRecord,
+                new NodeRecordInfo(
+                    nodeRecord.getNode(),
+                    Functions.getTime(),
+                    NodeStatus.SLEEP,
+                    (nodeRecord.getRetry() + 1))));
+  }
+
+  /**
+   * Queries bootnodes and the nodes they return in parallel until there are {@code peerCount} live
+   * peers or the timeout passes, see {@link BootstrapTask}
+   *
+   * @return future of the number of live peers when the bootstrap is over
+   */
+  public CompletableFuture<Integer> bootstrap(
+      final List<NodeRecord> bootnodes, final int peerCount, final Duration timeout) {
+    final BootstrapTask task =
+        new BootstrapTask(
+            nodeTable,
+            scheduler,
+            this::findNodes,
+            this::checkLiveness,
+            this::lookup,
+            Bytes32.wrap(homeNodeId),
+            bootnodes,
+            peerCount,
+            timeout);
+    bootstrapTask = Optional.of(task);
+    return task.execute();
+  }
+
+  /** Returns the time it took the bootstrap to get the requested number of live peers, if it did */
+  public Optional<Duration> getBootstrapTime() {
+    return bootstrapTask.flatMap(BootstrapTask::getTimeToPeerCount);
   }
 
   public CompletableFuture<Void> searchForNewPeers() {
@@ -233,16 +297,127 @@ public class DiscoveryTaskManager {
     return scheduler.execute(this::performSearchForNewPeers).thenCompose(Function.identity());
   }
 
+  /**
+   * Refreshes the most stale bucket, see {@link BucketRefreshSchedule}. Joins the search which is
+   * in progress already, if any, instead of starting another one
+   */
   private CompletableFuture<Void> performSearchForNewPeers() {
+    if (currentSearchForNewPeers.isDone()) {
+      refreshBucket(bucketRefreshSchedule.getMostStaleBucket(Functions.getTime()));
+    }
+    return currentSearchForNewPeers;
+  }
+
+  /** Refreshes the most stale bucket if its refresh interval has passed */
+  private void refreshBuckets() {
+    if (!currentSearchForNewPeers.isDone()) {
+      return;
+    }
+    final long currentTime = Functions.getTime();
+    final int distance = bucketRefreshSchedule.getMostStaleBucket(currentTime);
+    if (bucketRefreshSchedule.isDue(distance, currentTime)) {
+      refreshBucket(distance);
+    }
+  }
+
+  private void refreshBucket(final int distance) {
+    bucketRefreshSchedule.onRefreshed(distance, Functions.getTime());
+    currentSearchForNewPeers =
+        new RecursiveLookupTask(
+                nodeTable,
+                this::findNodes,
+                homeNodeId,
+                BucketRefreshSchedule.createTarget(homeNodeId, distance, random),
+                lookupConcurrency,
+                lookupResultSize,
+                lookupDistancesPerQuery,
+                RECURSIVE_SEARCH_QUERY_LIMIT)
+            .execute()
+            .thenAccept(__ -> {});
+  }
+
+  /**
+   * Looks up the closest to the target nodes, see {@link RecursiveLookupTask}. Lookups of nearby
+   * targets are shared, see {@link LookupCache}
+   */
+  public CompletableFuture<List<NodeRecord>> lookup(final Bytes32 target) {
+    return scheduler
+        .execute(() -> lookupCache.lookup(target, this::performLookup))
+        .thenCompose(Function.identity());
+  }
+
+  private CompletableFuture<List<NodeRecord>> performLookup(final Bytes32 target) {
+    // Any lookup refreshes the bucket of its target
+    final int distance = Functions.logDistance(homeNodeId, target);
+    if (distance > 0) {
+      bucketRefreshSchedule.onRefreshed(distance, Functions.getTime());
+    }
     return new RecursiveLookupTask(
-            nodeTable, this::findNodes, RECURSIVE_SEARCH_QUERY_LIMIT, Bytes32.random())
+            nodeTable,
+            this::findNodes,
+            homeNodeId,
+            target,
+            lookupConcurrency,
+            lookupResultSize,
+            lookupDistancesPerQuery,
+            LOOKUP_QUERY_LIMIT)
         .execute();
   }
 
-  private CompletableFuture<Void> findNodes(
-      final NodeRecordInfo nodeRecordInfo, final int distance) {
-    final CompletableFuture<Void> searchResult =
-        recursiveLookupTasks.add(nodeRecordInfo.getNode(), distance);
+  /**
+   * Searches the network for nodes matching the predicate, see {@link NodeSearchTask}. Every
+   * subscriber runs its own search, cancelling the subscription stops it.
+   *
+   * @return stream of matching nodes, completed when the search is over
+   */
+  public Publisher<NodeRecord> searchNodes(
+      final Predicate<NodeRecord> predicate, final int count, final Duration timeBudget) {
+    checkArgument(count > 0, "Node count should be positive");
+    return Flux.create(
+        sink -> {
+          final NodeSearchTask task =
+              new NodeSearchTask(
+                  scheduler,
+                  (target, findNodesAction) ->
+                      new RecursiveLookupTask(
+                          nodeTable,
+                          findNodesAction,
+                          homeNodeId,
+                          target,
+                          lookupConcurrency,
+                          lookupResultSize,
+                          lookupDistancesPerQuery,
+                          LOOKUP_QUERY_LIMIT),
+                  this::findNodes,
+                  random,
+                  homeNodeId,
+                  predicate,
+                  count,
+                  timeBudget,
+                  sink::next,
+                  sink::complete);
+          sink.onCancel(task::cancel);
+          task.execute();
+        },
+        // Search yields at most count nodes
+        FluxSink.OverflowStrategy.BUFFER);
+  }
+
+  public long getLookupCacheHitCount() {
+    return lookupCache.getHitCount();
+  }
+
+  public long getLookupCacheMissCount() {
+    return lookupCache.getMissCount();
+  }
+
+  private CompletableFuture<Collection<NodeRecord>> findNodes(
+      final NodeRecordInfo candidate, final List<Integer> distances) {
+    // Candidates found during the lookup are not aware of the node state in the table
+    final NodeRecordInfo nodeRecordInfo =
+        nodeTable.getNode(candidate.getNode().getNodeId()).orElse(candidate);
+    final CompletableFuture<Collection<NodeRecord>> searchResult =
+        recursiveLookupTasks.add(nodeRecordInfo.getNode(), distances);
     searchResult.handle(
         (__, error) -> {
           if (error != null) {
@@ -267,12 +442,6 @@ public class DiscoveryTaskManager {
     return searchResult;
   }
 
-  void onNodeRecordUpdate(NodeRecord nodeRecord) {
-    for (Consumer<NodeRecord> consumer : nodeRecordUpdatesConsumers) {
-      consumer.accept(nodeRecord);
-    }
-  }
-
   private void updateNode(NodeRecordInfo oldNodeRecordInfo, NodeRecordInfo newNodeRecordInfo) {
     // use node with latest seq known
     if (newNodeRecordInfo.getNode().getSeq().compareTo(oldNodeRecordInfo.getNode().getSeq()) < 0) {
@@ -282,8 +451,6 @@ public class DiscoveryTaskManager {
               newNodeRecordInfo.getLastRetry(),
               newNodeRecordInfo.getStatus(),
               newNodeRecordInfo.getRetry());
-    } else {
-      onNodeRecordUpdate(newNodeRecordInfo.getNode());
     }
     LOG.trace(
         "Updating node {} to status {}",
@@ -0,0 +1,128 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import static java.util.Comparator.comparingLong;
+import static org.ethereum.beacon.discovery.task.DiscoveryTaskManager.MAX_RETRIES;
+import static org.ethereum.beacon.discovery.task.DiscoveryTaskManager.STATUS_EXPIRATION_SECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.storage.NodeTableListener;
+
+/**
+ * Queue of {@link NodeTable} nodes ordered by the time (in seconds) when they are due for a
+ * liveness check or dead node handling. It's kept up to date as a {@link NodeTableListener}, so
+ * getting k due nodes costs O(k log n) instead of scanning the whole table.
+ *
+ * <p>Updates don't search the queue for the old entry of the node. A new entry is added instead
+ * and the outdated one is dropped when it reaches the head of the queue, as it doesn't match the
+ * current deadline of the node anymore. The queue is rebuilt when outdated entries prevail.
+ */
+class LiveCheckSchedule implements NodeTableListener {
+  static final long NEVER = Long.MAX_VALUE;
+  private static final int MIN_REBUILD_SIZE = 1024;
+
+  private final PriorityQueue<Entry> queue = new PriorityQueue<>(comparingLong(Entry::getDeadline));
+  private final Map<Bytes, Long> deadlines = new HashMap<>();
+
+  /**
+   * Returns the time when the node should be checked next, mirroring the rules of {@link
+   * DiscoveryTaskManager}: nodes with too many retries are due for dead handling immediately,
+   * active nodes are checked when their status expires, other nodes are retried with quadratic
+   * backoff and DEAD nodes are never checked.
+   */
+  static long getDeadline(NodeRecordInfo node) {
+    if (node.getStatus() == NodeStatus.DEAD) {
+      return NEVER;
+    }
+    if (node.getRetry() >= MAX_RETRIES) {
+      return Long.MIN_VALUE;
+    }
+    long retryTime = node.getLastRetry() + (long) node.getRetry() * node.getRetry();
+    if (node.getStatus() == NodeStatus.ACTIVE) {
+      return Math.max(node.getLastRetry() + STATUS_EXPIRATION_SECONDS, retryTime);
+    }
+    return retryTime;
+  }
+
+  @Override
+  public void onNodeSaved(NodeRecordInfo node) {
+    schedule(node.getNode().getNodeId(), getDeadline(node));
+  }
+
+  @Override
+  public synchronized void onNodeRemoved(Bytes nodeId) {
+    deadlines.remove(nodeId);
+  }
+
+  /** Sets the time when the node is due, replacing the previous one */
+  public synchronized void schedule(Bytes nodeId, long deadline) {
+    if (deadline == NEVER) {
+      deadlines.remove(nodeId);
+      return;
+    }
+    Long oldDeadline = deadlines.put(nodeId, deadline);
+    if (oldDeadline == null || oldDeadline != deadline) {
+      queue.add(new Entry(nodeId, deadline));
+      rebuildIfNeeded();
+    }
+  }
+
+  /** Removes the node with the earliest deadline from the schedule if it's due by currentTime */
+  public synchronized Optional<Bytes> pollDue(long currentTime) {
+    while (!queue.isEmpty() && queue.peek().getDeadline() <= currentTime) {
+      Entry entry = queue.poll();
+      Long deadline = deadlines.get(entry.getNodeId());
+      if (deadline != null && deadline == entry.getDeadline()) {
+        deadlines.remove(entry.getNodeId());
+        return Optional.of(entry.getNodeId());
+      }
+    }
+    return Optional.empty();
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return deadlines.size();
+  }
+
+  @VisibleForTesting
+  synchronized int getQueueSize() {
+    return queue.size();
+  }
+
+  private void rebuildIfNeeded() {
+    if (queue.size() > MIN_REBUILD_SIZE && queue.size() > 2 * deadlines.size()) {
+      queue.clear();
+      deadlines.forEach((nodeId, deadline) -> queue.add(new Entry(nodeId, deadline)));
+    }
+  }
+
+  private static class Entry {
+    private final Bytes nodeId;
+    private final long deadline;
+
+    private Entry(Bytes nodeId, long deadline) {
+      this.nodeId = nodeId;
+      this.deadline = deadline;
+    }
+
+    public Bytes getNodeId() {
+      return nodeId;
+    }
+
+    public long getDeadline() {
+      return deadline;
+    }
+  }
+}
@@ -5,11 +5,10 @@
 package org.ethereum.beacon.discovery.task;
 
 import com.google.common.collect.Sets;
-import java.time.Duration;
-import java.time.temporal.ChronoUnit;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
@@ -22,24 +21,28 @@ import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 /**
  * Sends {@link TaskType#PING} to closest NodeRecords added via {@link #add(NodeRecordInfo,
  * Runnable, Runnable)}. Tasks is called failed if timeout is reached and reply from node is not
- * received.
+ * received. The timeout is derived from the round trip times of the node tracked by {@link
+ * RttEstimator}.
  */
 public class LiveCheckTasks {
   private static final Logger logger = LogManager.getLogger();
   private final Scheduler scheduler;
   private final DiscoveryManager discoveryManager;
   private final Set<Bytes> currentTasks = Sets.newConcurrentHashSet();
+  private final RttEstimator rttEstimator;
   private final ExpirationScheduler<Bytes> taskTimeouts;
 
   public LiveCheckTasks(
       DiscoveryManager discoveryManager,
       Scheduler scheduler,
       ExpirationSchedulerFactory expirationSchedulerFactory,
-      Duration timeout) {
+      RttEstimator rttEstimator) {
     this.discoveryManager = discoveryManager;
     this.scheduler = scheduler;
+    this.rttEstimator = rttEstimator;
     this.taskTimeouts =
-        expirationSchedulerFactory.create(timeout.get(ChronoUnit.SECONDS), TimeUnit.SECONDS);
+        expirationSchedulerFactory.create(
+            rttEstimator.getMaxTimeout().toMillis(), TimeUnit.MILLISECONDS);
   }
 
   public void add(NodeRecordInfo nodeRecordInfo, Runnable successCallback, Runnable failCallback) {
@@ -52,10 +55,17 @@ public class LiveCheckTasks {
 
     scheduler.execute(
         () -> {
+          final Bytes nodeId = nodeRecordInfo.getNode().getNodeId();
+          final long startTime = scheduler.getCurrentTime();
           CompletableFuture<Void> ping = discoveryManager.ping(nodeRecordInfo.getNode());
           addTimeout(nodeRecordInfo, ping);
           ping.whenComplete(
               (aVoid, throwable) -> {
+                if (throwable instanceof TimeoutException) {
+                  rttEstimator.onTimeout(nodeId);
+                } else {
+                  taskTimeouts.cancel(nodeId);
+                }
                 if (throwable != null) {
                   logger.trace(
                       () -> "Liveness check failed for " + nodeRecordInfo.getNode().getNodeId(),
@@ -63,6 +73,7 @@ public class LiveCheckTasks {
                   failCallback.run();
                   currentTasks.remove(nodeRecordInfo.getNode().getNodeId());
                 } else {
+                  rttEstimator.onResponse(nodeId, scheduler.getCurrentTime() - startTime);
                   successCallback.run();
                   currentTasks.remove(nodeRecordInfo.getNode().getNodeId());
                 }
@@ -71,8 +82,11 @@ public class LiveCheckTasks {
   }
 
   private void addTimeout(final NodeRecordInfo nodeRecordInfo, final CompletableFuture<Void> ping) {
+    final Bytes nodeId = nodeRecordInfo.getNode().getNodeId();
     taskTimeouts.put(
-        nodeRecordInfo.getNode().getNodeId(),
-        () -> ping.completeExceptionally(new RuntimeException("Timeout for node check task")));
+        nodeId,
+        () -> ping.completeExceptionally(new TimeoutException("Timeout for node check task")),
+        rttEstimator.getTimeout(nodeId).toMillis(),
+        TimeUnit.MILLISECONDS);
   }
 }
@@ -0,0 +1,104 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+
+/**
+ * Shares lookups of nearby targets. Targets with the same {@link #PREFIX_SIZE} bytes prefix join
+ * the lookup which is in progress already or reuse its result for {@code ttl} after it completes.
+ * The closest nodes to targets that share a long prefix are the same unless the network is huge,
+ * so the result is just reordered by the distance to the requested target.
+ *
+ * <p>Failed lookups are not cached. Hits and misses are counted for the hit rate.
+ */
+class LookupCache {
+  static final int PREFIX_SIZE = 2;
+  static final int MAX_CACHED_LOOKUPS = 1024;
+
+  private final Cache<Bytes, CompletableFuture<List<NodeRecord>>> lookups;
+
+  LookupCache(final Duration ttl, final Clock clock) {
+    this.lookups =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_LOOKUPS)
+            .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+            .ticker(
+                new Ticker() {
+                  @Override
+                  public long read() {
+                    return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+                  }
+                })
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * Returns the closest nodes to the target found by a shared lookup, starting a new one with
+   * {@code performLookup} if there is no lookup for the target prefix
+   */
+  CompletableFuture<List<NodeRecord>> lookup(
+      final Bytes32 target,
+      final Function<Bytes32, CompletableFuture<List<NodeRecord>>> performLookup) {
+    final Bytes prefix = target.slice(0, PREFIX_SIZE);
+    final AtomicBoolean isNewLookup = new AtomicBoolean();
+    final CompletableFuture<List<NodeRecord>> lookup;
+    try {
+      lookup =
+          lookups.get(
+              prefix,
+              () -> {
+                isNewLookup.set(true);
+                return performLookup.apply(target);
+              });
+    } catch (ExecutionException e) {
+      return CompletableFuture.failedFuture(e.getCause());
+    }
+    // Completion is handled outside of the loader, which may not modify the cache
+    if (isNewLookup.get()) {
+      lookup.whenComplete(
+          (result, error) -> {
+            if (error != null) {
+              lookups.asMap().remove(prefix, lookup);
+            } else {
+              // Time to live starts when the result is ready
+              lookups.asMap().replace(prefix, lookup, lookup);
+            }
+          });
+    }
+    return lookup.thenApply(result -> sortByDistance(result, target));
+  }
+
+  long getHitCount() {
+    return lookups.stats().hitCount();
+  }
+
+  long getMissCount() {
+    return lookups.stats().missCount();
+  }
+
+  private static List<NodeRecord> sortByDistance(
+      final List<NodeRecord> nodeRecords, final Bytes32 target) {
+    return nodeRecords.stream()
+        .sorted(Comparator.comparing(nodeRecord -> target.xor(nodeRecord.getNodeId())))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.scheduler.Scheduler;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.task.RecursiveLookupTask.FindNodesAction;
+
+/**
+ * Searches the network for nodes matching the predicate by running {@link RecursiveLookupTask}s
+ * towards random targets one after another. Every node record returned by a FINDNODE of a lookup,
+ * which is validated by the NODES handler already, is tested against the predicate and reported
+ * right away.
+ *
+ * <p>The search is over when {@code count} matching nodes are found, the time budget runs out,
+ * it's cancelled or a lookup finds no responding nodes at all. The lookup in progress is stopped
+ * then, so no more requests are sent.
+ */
+class NodeSearchTask {
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final Scheduler scheduler;
+  private final LookupFactory lookupFactory;
+  private final FindNodesAction findNodesAction;
+  private final Random random;
+  private final Bytes homeNodeId;
+  private final Predicate<NodeRecord> predicate;
+  private final int count;
+  private final Duration timeBudget;
+  private final Consumer<NodeRecord> onNodeFound;
+  private final Runnable onComplete;
+  private final Set<Bytes> foundNodes = new HashSet<>();
+  private CompletableFuture<List<NodeRecord>> currentLookup;
+  private int lookupCount = 0;
+  private boolean completed = false;
+
+  NodeSearchTask(
+      final Scheduler scheduler,
+      final LookupFactory lookupFactory,
+      final FindNodesAction findNodesAction,
+      final Random random,
+      final Bytes homeNodeId,
+      final Predicate<NodeRecord> predicate,
+      final int count,
+      final Duration timeBudget,
+      final Consumer<NodeRecord> onNodeFound,
+      final Runnable onComplete) {
+    this.scheduler = scheduler;
+    this.lookupFactory = lookupFactory;
+    this.findNodesAction = findNodesAction;
+    this.random = random;
+    this.homeNodeId = homeNodeId;
+    this.predicate = predicate;
+    this.count = count;
+    this.timeBudget = timeBudget;
+    this.onNodeFound = onNodeFound;
+    this.onComplete = onComplete;
+  }
+
+  void execute() {
+    scheduler.executeWithDelayR(timeBudget, this::cancel);
+    startNextLookup();
+  }
+
+  /** Stops the search, the nodes found so far are reported already */
+  void cancel() {
+    final CompletableFuture<List<NodeRecord>> lookup;
+    synchronized (this) {
+      if (completed) {
+        return;
+      }
+      completed = true;
+      lookup = currentLookup;
+      LOG.debug(
+          "Node search is over with {} nodes found by {} lookups", foundNodes.size(), lookupCount);
+    }
+    if (lookup != null) {
+      // Completed lookup future stops the lookup from sending more requests
+      lookup.cancel(false);
+    }
+    onComplete.run();
+  }
+
+  private void startNextLookup() {
+    synchronized (this) {
+      if (completed) {
+        return;
+      }
+      lookupCount++;
+    }
+    final CompletableFuture<List<NodeRecord>> lookup =
+        lookupFactory.create(Bytes32.random(random), this::findNodes).execute();
+    synchronized (this) {
+      currentLookup = lookup;
+      if (completed) {
+        // Cancelled while the lookup was starting
+        lookup.cancel(false);
+        return;
+      }
+    }
+    lookup.whenComplete(
+        (result, error) -> {
+          if (error != null) {
+            if (!(error instanceof CancellationException)) {
+              LOG.debug("Node search lookup failed", error);
+            }
+            startNextLookup();
+          } else if (result.isEmpty()) {
+            // Nobody responded, so the next lookup would have nobody to ask either
+            cancel();
+          } else {
+            startNextLookup();
+          }
+        });
+  }
+
+  private CompletableFuture<Collection<NodeRecord>> findNodes(
+      final NodeRecordInfo peer, final List<Integer> distances) {
+    return findNodesAction
+        .findNodes(peer, distances)
+        .thenApply(
+            nodes -> {
+              nodes.forEach(this::checkNode);
+              return nodes;
+            });
+  }
+
+  private void checkNode(final NodeRecord node) {
+    final boolean isCountReached;
+    synchronized (this) {
+      if (completed
+          || node.getNodeId().equals(homeNodeId)
+          || foundNodes.contains(node.getNodeId())
+          || !predicate.test(node)) {
+        return;
+      }
+      foundNodes.add(node.getNodeId());
+      // Reported under the lock, so no node is reported after the completion
+      onNodeFound.accept(node);
+      isCountReached = foundNodes.size() >= count;
+    }
+    if (isCountReached) {
+      cancel();
+    }
+  }
+
+  interface LookupFactory {
+    RecursiveLookupTask create(Bytes32 target, FindNodesAction findNodesAction);
+  }
+}
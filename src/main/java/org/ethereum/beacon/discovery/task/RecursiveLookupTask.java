@@ -6,84 +6,207 @@ package org.ethereum.beacon.discovery.task;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.storage.KBuckets;
 import org.ethereum.beacon.discovery.storage.NodeTable;
 import org.ethereum.beacon.discovery.util.Functions;
 
+/**
+ * Iterative Kademlia lookup of the nodes closest to the target.
+ *
+ * <p>Candidates are kept sorted by XOR distance to the target. They are seeded once with the
+ * closest live nodes of the node table and extended with the nodes returned by queried candidates.
+ * Up to {@code alpha} requests are in flight at a time, each one sent to the closest candidate not
+ * queried yet among the {@code k} closest candidates which haven't failed. The lookup is over when
+ * all of them have responded or the total query limit is reached, and returns up to {@code k}
+ * closest candidates which have responded.
+ *
+ * <p>Every FINDNODE asks for several distances around the distance from the queried peer to the
+ * target, so a sparse bucket doesn't cost a round trip with few or no nodes returned.
+ */
 public class RecursiveLookupTask {
   private static final Logger LOG = LogManager.getLogger();
-  private static final int MAX_CONCURRENT_QUERIES = 3;
+  // Keeps responses within FindNodeResponseHandler limit of total packets
+  public static final int MAX_DISTANCES_PER_QUERY = 5;
   private final NodeTable nodeTable;
   private final FindNodesAction sendFindNodesRequest;
+  private final Bytes homeNodeId;
   private final Bytes targetNodeId;
-  private final Set<Bytes> queriedNodeIds = new HashSet<>();
-  private int availableQuerySlots = MAX_CONCURRENT_QUERIES;
+  private final int alpha;
+  private final int k;
+  private final int distancesPerQuery;
+  // Candidates by distance to the target, which is unique for every node id
+  private final NavigableMap<Bytes, Candidate> candidates = new TreeMap<>();
+  private int inFlightQueries = 0;
   private int remainingTotalQueryLimit;
-  private final CompletableFuture<Void> future = new CompletableFuture<>();
+  private final CompletableFuture<List<NodeRecord>> future = new CompletableFuture<>();
 
   public RecursiveLookupTask(
       final NodeTable nodeTable,
       final FindNodesAction sendFindNodesRequest,
-      final int totalQueryLimit,
-      final Bytes targetNodeId) {
+      final Bytes homeNodeId,
+      final Bytes targetNodeId,
+      final int alpha,
+      final int k,
+      final int distancesPerQuery,
+      final int totalQueryLimit) {
+    checkArgument(alpha > 0, "Lookup concurrency should be positive");
+    checkArgument(k > 0, "Lookup result size should be positive");
+    checkArgument(
+        distancesPerQuery > 0 && distancesPerQuery <= MAX_DISTANCES_PER_QUERY,
+        "Distances per query should be in range [1, %s]",
+        MAX_DISTANCES_PER_QUERY);
     this.nodeTable = nodeTable;
     this.sendFindNodesRequest = sendFindNodesRequest;
-    this.remainingTotalQueryLimit = totalQueryLimit;
+    this.homeNodeId = homeNodeId;
     this.targetNodeId = targetNodeId;
+    this.alpha = alpha;
+    this.k = k;
+    this.distancesPerQuery = distancesPerQuery;
+    this.remainingTotalQueryLimit = totalQueryLimit;
   }
 
-  public CompletableFuture<Void> execute() {
+  public CompletableFuture<List<NodeRecord>> execute() {
+    synchronized (this) {
+      nodeTable
+          .streamClosestNodes(targetNodeId, 0)
+          .filter(DiscoveryTaskManager.RECURSIVE_LOOKUP_NODE_RULE)
+          .filter(node -> !node.getNode().getNodeId().equals(homeNodeId))
+          .limit(k)
+          .forEach(this::addCandidate);
+    }
     sendRequests();
     return future;
   }
 
-  private synchronized void sendRequests() {
-    checkArgument(availableQuerySlots >= 0, "Available query slots should never be negative");
-    if (availableQuerySlots == 0 || future.isDone()) {
-      return;
+  private void sendRequests() {
+    final List<Candidate> toQuery = new ArrayList<>();
+    final List<NodeRecord> result;
+    synchronized (this) {
+      if (future.isDone()) {
+        return;
+      }
+      int closestCandidates = 0;
+      for (Candidate candidate : candidates.values()) {
+        if (inFlightQueries >= alpha || remainingTotalQueryLimit == 0 || closestCandidates == k) {
+          break;
+        }
+        if (candidate.state == QueryState.FAILED) {
+          continue;
+        }
+        closestCandidates++;
+        if (candidate.state == QueryState.NOT_QUERIED) {
+          candidate.state = QueryState.QUERYING;
+          inFlightQueries++;
+          remainingTotalQueryLimit--;
+          toQuery.add(candidate);
+        }
+      }
+      result = inFlightQueries == 0 ? getClosestResponded() : null;
     }
-    if (nodeTable.getNode(targetNodeId).isPresent()) {
-      future.complete(null);
+    if (result != null) {
+      // Nothing is in progress even after we looked for more to send, so the closest candidates
+      // are queried already or the query limit is reached
+      future.complete(result);
       return;
     }
-    nodeTable
-        .streamClosestNodes(targetNodeId, 0)
-        .filter(DiscoveryTaskManager.RECURSIVE_LOOKUP_NODE_RULE)
-        .filter(record -> !queriedNodeIds.contains(record.getNode().getNodeId()))
-        .limit(Math.min(availableQuerySlots, remainingTotalQueryLimit))
-        .forEach(this::queryPeer);
-    if (availableQuerySlots == MAX_CONCURRENT_QUERIES) {
-      // There are no in-progress queries even after we looked for more to send so must have run out
-      // of possible nodes to query or reached the query limit.
-      future.complete(null);
-    }
+    toQuery.forEach(this::queryPeer);
   }
 
-  private void queryPeer(final NodeRecordInfo peer) {
-    queriedNodeIds.add(peer.getNode().getNodeId());
-    availableQuerySlots--;
-    remainingTotalQueryLimit--;
+  private void queryPeer(final Candidate candidate) {
+    final NodeRecordInfo peer = candidate.node;
     sendFindNodesRequest
-        .findNodes(peer, Functions.logDistance(peer.getNode().getNodeId(), targetNodeId))
+        .findNodes(
+            peer, getLookupDistances(peer.getNode().getNodeId(), targetNodeId, distancesPerQuery))
         .whenComplete(
-            (__, error) -> {
+            (foundNodes, error) -> {
               if (error != null) {
                 LOG.debug("Failed to query " + peer.getNode().getNodeId(), error);
               }
               synchronized (RecursiveLookupTask.this) {
-                availableQuerySlots++;
-                sendRequests();
+                inFlightQueries--;
+                if (error != null) {
+                  candidate.state = QueryState.FAILED;
+                } else {
+                  candidate.state = QueryState.RESPONDED;
+                  foundNodes.stream()
+                      .filter(node -> !node.getNodeId().equals(homeNodeId))
+                      .map(NodeRecordInfo::createDefault)
+                      .forEach(this::addCandidate);
+                }
               }
+              sendRequests();
             });
   }
 
+  /**
+   * Returns distances from the peer to request: the distance to the target goes first followed by
+   * the neighbouring ones, alternating farther and closer ones, e.g. d, d+1, d-1, d+2. Only
+   * distance 0 is never requested as a neighbour, as it's just the peer's own record.
+   */
+  static List<Integer> getLookupDistances(
+      final Bytes peerNodeId, final Bytes targetNodeId, final int count) {
+    final int distance = Functions.logDistance(peerNodeId, targetNodeId);
+    final List<Integer> distances = new ArrayList<>(count);
+    distances.add(distance);
+    for (int i = 1; distances.size() < count && i <= KBuckets.MAXIMUM_BUCKET; i++) {
+      if (distance + i <= KBuckets.MAXIMUM_BUCKET) {
+        distances.add(distance + i);
+      }
+      if (distance - i > 0 && distances.size() < count) {
+        distances.add(distance - i);
+      }
+    }
+    return distances;
+  }
+
+  private void addCandidate(final NodeRecordInfo node) {
+    candidates.putIfAbsent(
+        targetNodeId.xor(node.getNode().getNodeId()), new Candidate(node, QueryState.NOT_QUERIED));
+  }
+
+  private List<NodeRecord> getClosestResponded() {
+    final List<NodeRecord> closest = new ArrayList<>(k);
+    for (Candidate candidate : candidates.values()) {
+      if (closest.size() == k) {
+        break;
+      }
+      if (candidate.state == QueryState.RESPONDED) {
+        closest.add(candidate.node.getNode());
+      }
+    }
+    return closest;
+  }
+
+  private enum QueryState {
+    NOT_QUERIED,
+    QUERYING,
+    RESPONDED,
+    FAILED
+  }
+
+  private static class Candidate {
+    private final NodeRecordInfo node;
+    private QueryState state;
+
+    private Candidate(final NodeRecordInfo node, final QueryState state) {
+      this.node = node;
+      this.state = state;
+    }
+  }
+
   public interface FindNodesAction {
-    CompletableFuture<Void> findNodes(NodeRecordInfo sendTo, int distance);
+    CompletableFuture<Collection<NodeRecord>> findNodes(
+        NodeRecordInfo sendTo, List<Integer> distances);
   }
 }
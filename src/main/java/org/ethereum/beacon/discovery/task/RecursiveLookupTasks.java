@@ -4,12 +4,13 @@
 
 package org.ethereum.beacon.discovery.task;
 
-import com.google.common.collect.Sets;
-import java.time.Duration;
-import java.time.temporal.ChronoUnit;
-import java.util.Collections;
-import java.util.Set;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.apache.tuweni.bytes.Bytes;
@@ -20,55 +21,110 @@ import org.ethereum.beacon.discovery.scheduler.Scheduler;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 
 /**
- * Sends FindNode to closest NodeRecords added via {@link #add(NodeRecord, int)}. Tasks is called
- * failed if timeout is reached and reply from node is not received.
+ * Sends FindNode to closest NodeRecords added via {@link #add(NodeRecord, List)}. Tasks is called
+ * failed if timeout is reached and reply from node is not received. The timeout is derived from the
+ * round trip times of the node tracked by {@link RttEstimator}.
+ *
+ * <p>Concurrent tasks for the same node and distances share a single request, so lookups of nearby
+ * targets don't send duplicate requests to the peers they have in common.
  */
 public class RecursiveLookupTasks {
   private final Scheduler scheduler;
   private final DiscoveryManager discoveryManager;
-  private final Set<Bytes> currentTasks = Sets.newConcurrentHashSet();
-  private final ExpirationScheduler<Bytes> taskTimeouts;
+  private final Map<TaskKey, CompletableFuture<Collection<NodeRecord>>> currentTasks =
+      new ConcurrentHashMap<>();
+  private final RttEstimator rttEstimator;
+  private final ExpirationScheduler<TaskKey> taskTimeouts;
 
   public RecursiveLookupTasks(
       DiscoveryManager discoveryManager,
       Scheduler scheduler,
       ExpirationSchedulerFactory expirationSchedulerFactory,
-      Duration timeout) {
+      RttEstimator rttEstimator) {
     this.discoveryManager = discoveryManager;
     this.scheduler = scheduler;
+    this.rttEstimator = rttEstimator;
     this.taskTimeouts =
-        expirationSchedulerFactory.create(timeout.get(ChronoUnit.SECONDS), TimeUnit.SECONDS);
+        expirationSchedulerFactory.create(
+            rttEstimator.getMaxTimeout().toMillis(), TimeUnit.MILLISECONDS);
   }
 
-  public CompletableFuture<Void> add(NodeRecord nodeRecord, int distance) {
-    if (!currentTasks.add(nodeRecord.getNodeId())) {
-      return CompletableFuture.failedFuture(new IllegalStateException("Already querying node"));
+  public CompletableFuture<Collection<NodeRecord>> add(
+      NodeRecord nodeRecord, List<Integer> distances) {
+    final TaskKey key = new TaskKey(nodeRecord.getNodeId(), distances);
+    final CompletableFuture<Collection<NodeRecord>> result = new CompletableFuture<>();
+    final CompletableFuture<Collection<NodeRecord>> currentTask =
+        currentTasks.putIfAbsent(key, result);
+    if (currentTask != null) {
+      return currentTask;
     }
 
-    final CompletableFuture<Void> result = new CompletableFuture<>();
     scheduler.execute(
         () -> {
-          CompletableFuture<Void> request =
-              discoveryManager.findNodes(nodeRecord, Collections.singletonList(distance));
-          addTimeout(nodeRecord, request);
+          final long startTime = scheduler.getCurrentTime();
+          CompletableFuture<Collection<NodeRecord>> request =
+              discoveryManager.findNodes(nodeRecord, distances);
+          addTimeout(key, request);
           request.whenComplete(
-              (aVoid, throwable) -> {
-                currentTasks.remove(nodeRecord.getNodeId());
+              (foundNodes, throwable) -> {
+                if (throwable instanceof TimeoutException) {
+                  rttEstimator.onTimeout(nodeRecord.getNodeId());
+                } else {
+                  taskTimeouts.cancel(key);
+                }
+                currentTasks.remove(key, result);
                 if (throwable != null) {
                   result.completeExceptionally(throwable);
                 } else {
-                  result.complete(null);
+                  rttEstimator.onResponse(
+                      nodeRecord.getNodeId(), scheduler.getCurrentTime() - startTime);
+                  result.complete(foundNodes);
                 }
               });
         });
     return result;
   }
 
-  private void addTimeout(final NodeRecord nodeRecord, final CompletableFuture<Void> retry) {
+  @VisibleForTesting
+  int getCurrentTaskCount() {
+    return currentTasks.size();
+  }
+
+  private void addTimeout(
+      final TaskKey key, final CompletableFuture<Collection<NodeRecord>> retry) {
     taskTimeouts.put(
-        nodeRecord.getNodeId(),
+        key,
         () ->
             retry.completeExceptionally(
-                new TimeoutException("Timeout for node recursive lookup task")));
+                new TimeoutException("Timeout for node recursive lookup task")),
+        rttEstimator.getTimeout(key.nodeId).toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private static class TaskKey {
+    private final Bytes nodeId;
+    private final List<Integer> distances;
+
+    private TaskKey(final Bytes nodeId, final List<Integer> distances) {
+      this.nodeId = nodeId;
+      this.distances = distances;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final TaskKey taskKey = (TaskKey) o;
+      return nodeId.equals(taskKey.nodeId) && distances.equals(taskKey.distances);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(nodeId, distances);
+    }
   }
 }
@@ -0,0 +1,86 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Duration;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Per peer round trip time estimates used to derive request timeouts, computed like TCP
+ * retransmission timeouts (RFC 6298): smoothed round trip time {@code SRTT} and its variation
+ * {@code RTTVAR} are updated on every response and the timeout is {@code SRTT + 4 * RTTVAR},
+ * bounded by {@link #MIN_TIMEOUT} and the maximum timeout, the latter taking precedence. The
+ * timeout is doubled every time a request to the peer times out until the next response arrives.
+ *
+ * <p>Peers without any response yet get the maximum timeout. Estimates are kept for up to {@link
+ * #MAX_TRACKED_PEERS} peers, the least recently used ones are dropped first.
+ */
+public class RttEstimator {
+  public static final Duration MIN_TIMEOUT = Duration.ofMillis(500);
+  static final int MAX_TRACKED_PEERS = 8192;
+
+  private final long maxTimeoutMillis;
+  private final Cache<Bytes, Estimate> estimates =
+      CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_PEERS).build();
+
+  public RttEstimator(final Duration maxTimeout) {
+    this.maxTimeoutMillis = maxTimeout.toMillis();
+  }
+
+  public Duration getMaxTimeout() {
+    return Duration.ofMillis(maxTimeoutMillis);
+  }
+
+  /** Returns the time to wait for a response from the peer */
+  public Duration getTimeout(final Bytes nodeId) {
+    final Estimate estimate = estimates.getIfPresent(nodeId);
+    if (estimate == null) {
+      return getMaxTimeout();
+    }
+    synchronized (estimate) {
+      return Duration.ofMillis(estimate.timeoutMillis);
+    }
+  }
+
+  /** Updates the estimate with the time it took the peer to respond */
+  public void onResponse(final Bytes nodeId, final long roundTripMillis) {
+    final long sample = Math.max(0, roundTripMillis);
+    final Estimate estimate = estimates.asMap().computeIfAbsent(nodeId, __ -> new Estimate());
+    synchronized (estimate) {
+      if (estimate.smoothedRttMillis < 0) {
+        estimate.smoothedRttMillis = sample;
+        estimate.rttVariationMillis = sample / 2;
+      } else {
+        estimate.rttVariationMillis =
+            (3 * estimate.rttVariationMillis + Math.abs(estimate.smoothedRttMillis - sample)) / 4;
+        estimate.smoothedRttMillis = (7 * estimate.smoothedRttMillis + sample) / 8;
+      }
+      estimate.timeoutMillis = bound(estimate.smoothedRttMillis + 4 * estimate.rttVariationMillis);
+    }
+  }
+
+  /** Backs off the timeout of the peer after a request to it timed out */
+  public void onTimeout(final Bytes nodeId) {
+    final Estimate estimate = estimates.getIfPresent(nodeId);
+    if (estimate == null) {
+      return;
+    }
+    synchronized (estimate) {
+      estimate.timeoutMillis = bound(2 * estimate.timeoutMillis);
+    }
+  }
+
+  private long bound(final long timeoutMillis) {
+    return Math.min(maxTimeoutMillis, Math.max(MIN_TIMEOUT.toMillis(), timeoutMillis));
+  }
+
+  private static class Estimate {
+    private long smoothedRttMillis = -1;
+    private long rttVariationMillis;
+    private long timeoutMillis;
+  }
+}
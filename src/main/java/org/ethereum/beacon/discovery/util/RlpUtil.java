@@ -89,6 +89,17 @@ public class RlpUtil {
     return new DecodedList(RlpDecoder.decode(data.slice(0, len).toArray()), data.slice(len));
   }
 
+  /** Wraps already RLP encoded items into an RLP list */
+  public static Bytes encodeList(Bytes... encodedItems) {
+    Bytes payload = Bytes.concatenate(encodedItems);
+    if (payload.size() <= 55) {
+      return Bytes.concatenate(Bytes.of(OFFSET_SHORT_LIST + payload.size()), payload);
+    }
+    Bytes payloadSize = Bytes.minimalBytes(payload.size());
+    return Bytes.concatenate(
+        Bytes.of(OFFSET_LONG_LIST + payloadSize.size()), payloadSize, payload);
+  }
+
   /**
    * Decodes strictly the list of byte strings of specified lengths The list should contain strictly
    * {@code lengths.length} strings
@@ -21,6 +21,7 @@ import org.ethereum.beacon.discovery.network.NettyDiscoveryServerImpl;
 import org.ethereum.beacon.discovery.packet.HandshakeMessagePacket;
 import org.ethereum.beacon.discovery.packet.OrdinaryMessagePacket;
 import org.ethereum.beacon.discovery.packet.WhoAreYouPacket;
+import org.ethereum.beacon.discovery.pipeline.handler.NextTaskHandler;
 import org.ethereum.beacon.discovery.scheduler.ExpirationSchedulerFactory;
 import org.ethereum.beacon.discovery.scheduler.Schedulers;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
@@ -71,7 +72,9 @@ public class DiscoveryNetworkTest {
             NODE_RECORD_FACTORY_NO_VERIFICATION,
             Schedulers.createDefault().newSingleThreadDaemon("tasks-1"),
             expirationSchedulerFactory,
-            TalkHandler.NOOP);
+            TalkHandler.NOOP,
+            false,
+            NextTaskHandler.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
     DiscoveryManagerImpl discoveryManager2 =
         new DiscoveryManagerImpl(
             new NettyDiscoveryServerImpl(
@@ -87,7 +90,9 @@ public class DiscoveryNetworkTest {
             NODE_RECORD_FACTORY_NO_VERIFICATION,
             Schedulers.createDefault().newSingleThreadDaemon("tasks-2"),
             expirationSchedulerFactory,
-            TalkHandler.NOOP);
+            TalkHandler.NOOP,
+            false,
+            NextTaskHandler.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
 
     // 3) Expect standard 1 => 2 dialog
     CountDownLatch randomSent1to2 = new CountDownLatch(1);
@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.ethereum.beacon.discovery.app;
+
+import java.lang.ref.Reference;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.function.Supplier;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.database.DataSource;
+import org.ethereum.beacon.discovery.database.HashMapDataSource;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.storage.CompactNodeRecordDataSource;
+import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.storage.NodeTableImpl;
+
+/**
+ * Reports heap retained by a node table of 100k nodes backed by {@link HashMapDataSource} and by
+ * {@link CompactNodeRecordDataSource}. Run with {@code ./gradlew runNodeTableMemoryBenchmark}
+ */
+public class NodeTableMemoryBenchmark {
+  private static final int NODE_COUNT = 100_000;
+
+  public static void main(String[] args) throws UnknownHostException {
+    final NodeRecordFactory nodeRecordFactory =
+        new NodeRecordFactory(new SimpleIdentitySchemaInterpreter());
+    report("HashMapDataSource", HashMapDataSource::new);
+    report("CompactNodeRecordDataSource", () -> new CompactNodeRecordDataSource(nodeRecordFactory));
+  }
+
+  private static void report(
+      final String name, final Supplier<DataSource<Bytes, NodeRecordInfo>> dataSourceSupplier)
+      throws UnknownHostException {
+    final Random random = new Random(1);
+    final long before = usedHeap();
+    final NodeTable nodeTable = new NodeTableImpl(dataSourceSupplier.get());
+    for (int i = 0; i < NODE_COUNT; i++) {
+      nodeTable.save(NodeRecordInfo.createDefault(createNodeRecord(random)));
+    }
+    final long retained = usedHeap() - before;
+    Reference.reachabilityFence(nodeTable);
+    System.out.printf(
+        "%s: %.1f MB of heap per %d nodes, %d bytes per node%n",
+        name, retained / 1024.0 / 1024.0, NODE_COUNT, retained / NODE_COUNT);
+  }
+
+  private static NodeRecord createNodeRecord(final Random random) throws UnknownHostException {
+    final byte[] ip = new byte[4];
+    random.nextBytes(ip);
+    return SimpleIdentitySchemaInterpreter.createNodeRecord(
+        Bytes32.random(random), new InetSocketAddress(InetAddress.getByAddress(ip), 30303));
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
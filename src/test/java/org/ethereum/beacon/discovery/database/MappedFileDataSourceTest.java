@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedFileDataSourceTest {
+  private static final int SEGMENT_SIZE = 1024;
+
+  @TempDir Path directory;
+
+  @Test
+  void shouldReadWrittenValues() {
+    final MappedFileDataSource<Bytes> dataSource = createDataSource();
+    final Bytes32 key = Bytes32.random();
+
+    dataSource.put(key, Bytes.fromHexString("0x1234"));
+    assertThat(dataSource.get(key)).contains(Bytes.fromHexString("0x1234"));
+
+    dataSource.put(key, Bytes.fromHexString("0x5678"));
+    assertThat(dataSource.get(key)).contains(Bytes.fromHexString("0x5678"));
+
+    dataSource.remove(key);
+    assertThat(dataSource.get(key)).isEmpty();
+  }
+
+  @Test
+  void shouldRestoreValuesAfterReopen() {
+    final MappedFileDataSource<Bytes> dataSource = createDataSource();
+    final Bytes32 key1 = Bytes32.random();
+    final Bytes32 key2 = Bytes32.random();
+    final Bytes32 removedKey = Bytes32.random();
+    for (int i = 0; i < 100; i++) {
+      dataSource.put(key1, Bytes.ofUnsignedInt(i));
+    }
+    dataSource.put(key2, Bytes.fromHexString("0x22"));
+    dataSource.put(removedKey, Bytes.fromHexString("0x33"));
+    dataSource.remove(removedKey);
+    dataSource.close();
+
+    final MappedFileDataSource<Bytes> reopened = createDataSource();
+    assertThat(reopened.get(key1)).contains(Bytes.ofUnsignedInt(99));
+    assertThat(reopened.get(key2)).contains(Bytes.fromHexString("0x22"));
+    assertThat(reopened.get(removedKey)).isEmpty();
+    assertThat(reopened.size()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldDropSealedSegmentsOnCompaction() {
+    final MappedFileDataSource<Bytes> dataSource = createDataSource();
+    final Bytes32 key = Bytes32.random();
+    final Bytes32 otherKey = Bytes32.random();
+    dataSource.put(otherKey, Bytes.fromHexString("0x01"));
+    for (int i = 0; i < 100; i++) {
+      dataSource.put(key, Bytes.ofUnsignedInt(i));
+    }
+    dataSource.compact();
+
+    assertThat(dataSource.getSegmentCount()).isEqualTo(1);
+    assertThat(dataSource.get(key)).contains(Bytes.ofUnsignedInt(99));
+    assertThat(dataSource.get(otherKey)).contains(Bytes.fromHexString("0x01"));
+    dataSource.close();
+
+    final MappedFileDataSource<Bytes> reopened = createDataSource();
+    assertThat(reopened.get(key)).contains(Bytes.ofUnsignedInt(99));
+    assertThat(reopened.get(otherKey)).contains(Bytes.fromHexString("0x01"));
+  }
+
+  @Test
+  void shouldNotReplayRecordsWithBrokenChecksum() throws Exception {
+    final MappedFileDataSource<Bytes> dataSource = createDataSource();
+    final Bytes32 key = Bytes32.random();
+    final Bytes32 tornKey = Bytes32.random();
+    dataSource.put(key, Bytes.fromHexString("0x01"));
+    dataSource.put(tornKey, Bytes.fromHexString("0xcafe"));
+    dataSource.close();
+
+    // Record size is on disk, but the value is not
+    final Path segment = directory.resolve(String.format("%016d.seg", 0));
+    final byte[] content = Files.readAllBytes(segment);
+    int lastValueByte = content.length - 1;
+    while (content[lastValueByte] == 0) {
+      lastValueByte--;
+    }
+    content[lastValueByte] = 0;
+    Files.write(segment, content);
+
+    final MappedFileDataSource<Bytes> reopened = createDataSource();
+    assertThat(reopened.get(key)).contains(Bytes.fromHexString("0x01"));
+    assertThat(reopened.get(tornKey)).isEmpty();
+    assertThat(reopened.size()).isEqualTo(1);
+
+    // Leftovers of the torn record don't break records written after it
+    reopened.put(tornKey, Bytes.fromHexString("0x02"));
+    reopened.close();
+    assertThat(createDataSource().get(tornKey)).contains(Bytes.fromHexString("0x02"));
+  }
+
+  private MappedFileDataSource<Bytes> createDataSource() {
+    return new MappedFileDataSource<>(
+        directory, Function.identity(), Function.identity(), SEGMENT_SIZE);
+  }
+}
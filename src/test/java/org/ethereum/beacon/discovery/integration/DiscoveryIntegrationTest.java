@@ -16,8 +16,10 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.net.BindException;
 import java.net.InetAddress;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -32,6 +34,7 @@ import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.ethereum.beacon.discovery.DiscoverySystem;
 import org.ethereum.beacon.discovery.DiscoverySystemBuilder;
 import org.ethereum.beacon.discovery.TalkHandler;
@@ -44,6 +47,7 @@ import org.ethereum.beacon.discovery.util.Functions;
 import org.ethereum.beacon.discovery.util.Utils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.web3j.crypto.ECKeyPair;
 
 public class DiscoveryIntegrationTest {
@@ -71,11 +75,12 @@ public class DiscoveryIntegrationTest {
     assertTrue(pingResult.isDone());
     assertFalse(pingResult.isCompletedExceptionally());
 
-    final CompletableFuture<Void> findNodesResult =
+    final CompletableFuture<Collection<NodeRecord>> findNodesResult =
         client.findNodes(bootnode.getLocalNodeRecord(), singletonList(0));
     waitFor(findNodesResult);
     assertTrue(findNodesResult.isDone());
     assertFalse(findNodesResult.isCompletedExceptionally());
+    assertEquals(List.of(bootnode.getLocalNodeRecord()), List.copyOf(findNodesResult.join()));
   }
 
   @Test
@@ -104,12 +109,13 @@ public class DiscoveryIntegrationTest {
     assertFalse(pingResult.isCompletedExceptionally());
 
     // Find nodes at a distance we know has no node records to return.
-    final CompletableFuture<Void> findNodesResult =
+    final CompletableFuture<Collection<NodeRecord>> findNodesResult =
         client.findNodes(
             bootnode.getLocalNodeRecord(), singletonList(distance == 1 ? 2 : distance - 1));
     waitFor(findNodesResult);
     assertTrue(findNodesResult.isDone());
     assertFalse(findNodesResult.isCompletedExceptionally());
+    assertTrue(findNodesResult.join().isEmpty());
   }
 
   @Test
@@ -137,6 +143,23 @@ public class DiscoveryIntegrationTest {
         });
   }
 
+  @Test
+  public void shouldLookupClosestNodes() throws Exception {
+    final DiscoverySystem bootnode = createDiscoveryClient();
+    final DiscoverySystem node1 = createDiscoveryClient(bootnode.getLocalNodeRecord());
+    final DiscoverySystem node2 = createDiscoveryClient(bootnode.getLocalNodeRecord());
+    final Bytes32 target = Bytes32.wrap(node2.getLocalNodeRecord().getNodeId());
+
+    waitFor(
+        () -> {
+          final CompletableFuture<List<NodeRecord>> lookupResult = node1.lookup(target);
+          waitFor(lookupResult);
+          // Node itself is the closest one to its id
+          assertEquals(node2.getLocalNodeRecord(), lookupResult.join().get(0));
+          assertTrue(lookupResult.join().contains(bootnode.getLocalNodeRecord()));
+        });
+  }
+
   private void assertKnownNodes(
       final DiscoverySystem source, final DiscoverySystem... expectedNodes) {
     final Set<NodeRecord> actual =
@@ -316,6 +339,30 @@ public class DiscoveryIntegrationTest {
         .isEqualTo(client.getLocalNodeRecord().getNodeId());
   }
 
+  @Test
+  public void shouldKeepKnownNodesInPersistentTableAfterStop(@TempDir final Path nodeTableDirectory)
+      throws Exception {
+    final DiscoverySystem bootnode = createDiscoveryClient();
+    final Consumer<DiscoverySystemBuilder> persistentTable =
+        builder -> builder.nodeTableDirectory(nodeTableDirectory);
+    final DiscoverySystem client =
+        createDiscoveryClient(
+            true,
+            LOCALHOST,
+            Functions.generateECKeyPair(),
+            persistentTable,
+            bootnode.getLocalNodeRecord());
+    waitFor(client.ping(bootnode.getLocalNodeRecord()));
+
+    client.stop();
+    managers.remove(client);
+
+    final DiscoverySystem restartedClient =
+        createDiscoveryClient(true, LOCALHOST, Functions.generateECKeyPair(), persistentTable);
+    assertThat(restartedClient.streamKnownNodes().map(node -> node.getNode().getNodeId()))
+        .contains(bootnode.getLocalNodeRecord().getNodeId());
+  }
+
   private DiscoverySystem createDiscoveryClient(final NodeRecord... bootnodes) throws Exception {
     return createDiscoveryClient(true, bootnodes);
   }
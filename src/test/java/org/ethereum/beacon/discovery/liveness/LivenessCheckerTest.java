@@ -17,8 +17,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.StubClock;
 import org.ethereum.beacon.discovery.liveness.LivenessChecker.Pinger;
+import org.ethereum.beacon.discovery.liveness.LivenessChecker.Priority;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,7 +32,9 @@ class LivenessCheckerTest {
   private final Pinger pinger = mock(Pinger.class);
   private final Map<NodeRecord, CompletableFuture<Void>> pingResults = new HashMap<>();
 
-  private final LivenessChecker livenessChecker = new LivenessChecker(pinger);
+  private final StubClock clock = new StubClock();
+
+  private final LivenessChecker livenessChecker = new LivenessChecker(pinger, clock);
 
   @BeforeEach
   void setUp() {
@@ -149,6 +154,125 @@ class LivenessCheckerTest {
     verify(pinger, never()).ping(ignoredNode);
   }
 
+  @Test
+  void shouldPingBucketNodesBeforeReplacementCandidates() {
+    final List<NodeRecord> pingedNodes = sendMaxConcurrentPings();
+
+    final NodeRecord candidate = createNewNodeRecord();
+    final NodeRecord bucketNode = createNewNodeRecord();
+    livenessChecker.checkLiveness(candidate, Priority.REPLACEMENT_CANDIDATE);
+    livenessChecker.checkLiveness(bucketNode, Priority.BUCKET_NODE);
+
+    pingCompleted(pingedNodes.get(0));
+    assertThat(pingResults).containsKey(bucketNode).doesNotContainKey(candidate);
+
+    pingCompleted(pingedNodes.get(1));
+    assertThat(pingResults).containsKey(candidate);
+  }
+
+  @Test
+  void shouldRaisePriorityOfQueuedNode() {
+    final List<NodeRecord> pingedNodes = sendMaxConcurrentPings();
+
+    final NodeRecord otherCandidate = createNewNodeRecord();
+    final NodeRecord candidate = createNewNodeRecord();
+    livenessChecker.checkLiveness(otherCandidate, Priority.REPLACEMENT_CANDIDATE);
+    livenessChecker.checkLiveness(candidate, Priority.REPLACEMENT_CANDIDATE);
+    // Node became a bucket node while its check was queued
+    livenessChecker.checkLiveness(candidate, Priority.BUCKET_NODE);
+    // But isn't lowered back
+    livenessChecker.checkLiveness(candidate, Priority.REPLACEMENT_CANDIDATE);
+    assertThat(livenessChecker.getBacklog()).isEqualTo(2);
+
+    pingCompleted(pingedNodes.get(0));
+    assertThat(pingResults).containsKey(candidate).doesNotContainKey(otherCandidate);
+  }
+
+  @Test
+  void shouldDropOldestReplacementCandidateForBucketNodeWhenQueueIsFull() {
+    sendMaxConcurrentPings();
+    final NodeRecord droppedCandidate = createNewNodeRecord();
+    livenessChecker.checkLiveness(droppedCandidate, Priority.REPLACEMENT_CANDIDATE);
+    for (int i = 1; i < LivenessChecker.MAX_QUEUE_SIZE; i++) {
+      livenessChecker.checkLiveness(createNewNodeRecord(), Priority.REPLACEMENT_CANDIDATE);
+    }
+
+    final NodeRecord bucketNode = createNewNodeRecord();
+    livenessChecker.checkLiveness(bucketNode);
+    assertThat(livenessChecker.getBacklog()).isEqualTo(LivenessChecker.MAX_QUEUE_SIZE);
+    assertThat(livenessChecker.getDroppedCount()).isEqualTo(1);
+
+    // Candidates don't displace each other
+    livenessChecker.checkLiveness(createNewNodeRecord(), Priority.REPLACEMENT_CANDIDATE);
+    assertThat(livenessChecker.getDroppedCount()).isEqualTo(2);
+
+    while (!pingResults.isEmpty()) {
+      pingCompleted(pingResults.keySet().iterator().next());
+    }
+    verify(pinger).ping(bucketNode);
+    verify(pinger, never()).ping(droppedCandidate);
+  }
+
+  @Test
+  void shouldIncreaseConcurrencyLimitWhilePingsAreFast() {
+    final List<NodeRecord> pingedNodes = sendMaxConcurrentPings();
+    final NodeRecord queuedNode = createNewNodeRecord();
+    livenessChecker.checkLiveness(queuedNode);
+
+    // Limit grows by about one once a limit worth of pings succeeds quickly
+    pingedNodes.forEach(this::pingCompleted);
+    pingCompleted(queuedNode);
+    assertThat(livenessChecker.getConcurrencyLimit())
+        .isEqualTo(LivenessChecker.INITIAL_CONCURRENCY_LIMIT + 1);
+  }
+
+  @Test
+  void shouldNotIncreaseConcurrencyLimitWhenPingsAreSlow() {
+    final List<NodeRecord> pingedNodes = sendMaxConcurrentPings();
+
+    clock.advanceTimeMillis(LivenessChecker.FAST_PING_TIME.toMillis());
+    pingedNodes.forEach(this::pingCompleted);
+    assertThat(livenessChecker.getConcurrencyLimit())
+        .isEqualTo(LivenessChecker.INITIAL_CONCURRENCY_LIMIT);
+  }
+
+  @Test
+  void shouldHalveConcurrencyLimitOnceForTimeoutsOfConcurrentPings() {
+    final List<NodeRecord> pingedNodes = sendMaxConcurrentPings();
+    final NodeRecord queuedNode = createNewNodeRecord();
+    livenessChecker.checkLiveness(queuedNode);
+
+    pingTimedOut(pingedNodes.get(0));
+    pingTimedOut(pingedNodes.get(1));
+    assertThat(livenessChecker.getConcurrencyLimit())
+        .isEqualTo(LivenessChecker.INITIAL_CONCURRENCY_LIMIT / 2);
+    // Last ping is still in flight, so the queued node has to wait
+    assertThat(pingResults).doesNotContainKey(queuedNode);
+
+    pingCompleted(pingedNodes.get(2));
+    assertThat(pingResults).containsKey(queuedNode);
+
+    // Ping sent after the decrease reports new congestion
+    pingTimedOut(queuedNode);
+    assertThat(livenessChecker.getConcurrencyLimit())
+        .isEqualTo(LivenessChecker.MIN_CONCURRENCY_LIMIT);
+  }
+
+  @Test
+  void shouldNotChangeConcurrencyLimitOnOtherFailures() {
+    final NodeRecord node = createNewNodeRecord();
+    livenessChecker.checkLiveness(node);
+
+    pingResults.remove(node).completeExceptionally(new RuntimeException("Handshake failed"));
+    assertThat(livenessChecker.getConcurrencyLimit())
+        .isEqualTo(LivenessChecker.INITIAL_CONCURRENCY_LIMIT);
+    assertThat(livenessChecker.getActivePingCount()).isZero();
+  }
+
+  private void pingTimedOut(final NodeRecord node) {
+    pingResults.remove(node).completeExceptionally(new TimeoutException());
+  }
+
   private void pingCompleted(final NodeRecord node) {
     pingResults.get(node).complete(null);
     pingResults.remove(node);
@@ -156,7 +280,7 @@ class LivenessCheckerTest {
 
   private List<NodeRecord> sendMaxConcurrentPings() {
     final List<NodeRecord> initialPings = new ArrayList<>();
-    for (int i = 0; i < LivenessChecker.MAX_CONCURRENT_PINGS; i++) {
+    for (int i = 0; i < LivenessChecker.INITIAL_CONCURRENCY_LIMIT; i++) {
       final NodeRecord node = createNewNodeRecord();
       initialPings.add(node);
       livenessChecker.checkLiveness(node);
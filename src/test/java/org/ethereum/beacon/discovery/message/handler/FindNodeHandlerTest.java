@@ -4,6 +4,7 @@
 package org.ethereum.beacon.discovery.message.handler;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.ethereum.beacon.discovery.message.handler.FindNodeHandler.MAX_MESSAGE_SIZE;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
@@ -134,6 +135,25 @@ public class FindNodeHandlerTest {
                 .collect(Collectors.toList()));
   }
 
+  @Test
+  void testNodesArePackedBySize() {
+    nodeHandler.handle(
+        new FindNodeMessage(
+            Bytes.fromHexString("0xaa00"),
+            IntStream.range(0, 255).boxed().collect(Collectors.toList())),
+        session);
+
+    ArgumentCaptor<NodesMessage> captor = ArgumentCaptor.forClass(NodesMessage.class);
+    Mockito.verify(session, atLeastOnce()).sendOutgoingOrdinary(captor.capture());
+    List<NodesMessage> messages = captor.getAllValues();
+
+    assertThat(messages.stream().mapToInt(m -> m.getNodeRecords().size()).sum()).isEqualTo(16);
+    // Records are much smaller than 300 bytes, so more than 4 fit into a packet
+    assertThat(messages.size()).isLessThan(4);
+    messages.forEach(
+        msg -> assertThat(msg.getBytes().size()).isLessThanOrEqualTo(MAX_MESSAGE_SIZE));
+  }
+
   @Test
   void testShouldReturnEmptyOnLargeDistances() {
     nodeHandler.handle(
@@ -152,6 +172,28 @@ public class FindNodeHandlerTest {
     assertThat(msg.getNodeRecords()).isEmpty();
   }
 
+  @Test
+  void testCachedResponseIsUpdatedWhenBucketChanges() {
+    nodeHandler.handle(new FindNodeMessage(Bytes.fromHexString("0xaa01"), List.of(254)), session);
+    nodeHandler.handle(new FindNodeMessage(Bytes.fromHexString("0xaa02"), List.of(254)), session);
+    NodeRecord newRecord = generateNodeAtDistance(254);
+    nodeBucketStorage.put(new NodeRecordInfo(newRecord, 1L, NodeStatus.ACTIVE, 0));
+    nodeHandler.handle(new FindNodeMessage(Bytes.fromHexString("0xaa03"), List.of(254)), session);
+
+    ArgumentCaptor<NodesMessage> captor = ArgumentCaptor.forClass(NodesMessage.class);
+    Mockito.verify(session, times(3)).sendOutgoingOrdinary(captor.capture());
+    List<NodesMessage> messages = captor.getAllValues();
+
+    assertThat(messages.get(0).getNodeRecords())
+        .containsExactlyInAnyOrderElementsOf(tableRecords.get(254));
+    assertThat(messages.get(1).getRequestId()).isEqualTo(Bytes.fromHexString("0xaa02"));
+    assertThat(messages.get(1).getBytes())
+        .isEqualTo(
+            new NodesMessage(Bytes.fromHexString("0xaa02"), 1, messages.get(0).getNodeRecords())
+                .getBytes());
+    assertThat(messages.get(2).getNodeRecords()).contains(newRecord).hasSize(3);
+  }
+
   private NodeRecord generateNodeAtDistance(int distance) {
     if (distance == 0) {
       return homeNodeRecord;
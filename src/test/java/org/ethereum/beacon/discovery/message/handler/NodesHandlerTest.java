@@ -5,6 +5,7 @@
 package org.ethereum.beacon.discovery.message.handler;
 
 import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -12,6 +13,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -23,10 +25,13 @@ import org.ethereum.beacon.discovery.message.NodesMessage;
 import org.ethereum.beacon.discovery.pipeline.info.FindNodeResponseHandler;
 import org.ethereum.beacon.discovery.pipeline.info.Request;
 import org.ethereum.beacon.discovery.pipeline.info.RequestInfo;
+import org.ethereum.beacon.discovery.schema.EnrField;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 import org.ethereum.beacon.discovery.schema.NodeSession;
+import org.ethereum.beacon.discovery.storage.CompactNodeRecordDataSource;
 import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.storage.NodeTableImpl;
 import org.ethereum.beacon.discovery.util.Functions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -61,9 +66,9 @@ class NodesHandlerTest {
     handler.handle(message, session);
 
     final NodeRecordInfo nodeRecordInfo = NodeRecordInfo.createDefault(nodeInfo.getNodeRecord());
-    verify(nodeTable).save(nodeRecordInfo);
+    verify(nodeTable).saveAll(List.of(nodeRecordInfo));
     verify(session, never()).putRecordInBucket(nodeRecordInfo);
-    verify(session).clearRequestInfo(REQUEST_ID, null);
+    verify(session).clearRequestInfo(REQUEST_ID, records);
   }
 
   @Test
@@ -89,10 +94,10 @@ class NodesHandlerTest {
     handler.handle(message, session);
 
     final NodeRecordInfo nodeRecordInfo = NodeRecordInfo.createDefault(updatedRecord);
-    verify(nodeTable).save(nodeRecordInfo);
+    verify(nodeTable).saveAll(List.of(nodeRecordInfo));
     verify(session, never()).updateNodeRecord(any());
     verify(session, never()).putRecordInBucket(any());
-    verify(session).clearRequestInfo(REQUEST_ID, null);
+    verify(session).clearRequestInfo(REQUEST_ID, records);
   }
 
   @Test
@@ -119,10 +124,29 @@ class NodesHandlerTest {
     handler.handle(message, session);
 
     final NodeRecordInfo nodeRecordInfo = NodeRecordInfo.createDefault(updatedRecord);
-    verify(nodeTable).save(nodeRecordInfo);
+    verify(nodeTable).saveAll(List.of(nodeRecordInfo));
     verify(session).updateNodeRecord(updatedRecord);
     verify(session, never()).putRecordInBucket(any());
-    verify(session).clearRequestInfo(REQUEST_ID, null);
+    verify(session).clearRequestInfo(REQUEST_ID, records);
+  }
+
+  @Test
+  public void shouldAcceptRecordsAtAnyOfRequestedDistances() {
+    final NodeInfo nodeInfo = TestUtil.generateNode(9000);
+    final int distance = Functions.logDistance(PEER_ID, nodeInfo.getNodeRecord().getNodeId());
+    Request<Void> request =
+        new Request<>(
+            new CompletableFuture<>(),
+            id -> new FindNodeMessage(id, List.of(distance + 1, distance, distance - 1)),
+            new FindNodeResponseHandler());
+    final RequestInfo requestInfo = RequestInfo.create(REQUEST_ID, request);
+    when(session.getRequestInfo(REQUEST_ID)).thenReturn(Optional.of(requestInfo));
+    final List<NodeRecord> records = singletonList(nodeInfo.getNodeRecord());
+    final NodesMessage message = new NodesMessage(REQUEST_ID, records.size(), records);
+    handler.handle(message, session);
+
+    verify(nodeTable).saveAll(List.of(NodeRecordInfo.createDefault(nodeInfo.getNodeRecord())));
+    verify(session).clearRequestInfo(REQUEST_ID, records);
   }
 
   @Test
@@ -143,6 +167,36 @@ class NodesHandlerTest {
     verifyNoInteractions(nodeTable);
   }
 
+  @Test
+  public void shouldRejectOversizedRecordsAndSaveOthersToCompactTable() {
+    final NodeTable compactTable =
+        new NodeTableImpl(new CompactNodeRecordDataSource(TestUtil.NODE_RECORD_FACTORY));
+    when(session.getNodeTable()).thenReturn(compactTable);
+    final NodeRecord validRecord = TestUtil.generateNode(9000).getNodeRecord();
+    final NodeRecord oversizedRecord = createOversizedRecord(TestUtil.generateNode(9001));
+    assertThat(oversizedRecord.getEncodedSize()).isGreaterThan(NodeRecord.MAX_ENCODED_SIZE);
+    Request<Void> request =
+        new Request<>(
+            new CompletableFuture<>(),
+            id ->
+                new FindNodeMessage(
+                    id,
+                    List.of(
+                        Functions.logDistance(PEER_ID, validRecord.getNodeId()),
+                        Functions.logDistance(PEER_ID, oversizedRecord.getNodeId()))),
+            new FindNodeResponseHandler());
+    final RequestInfo requestInfo = RequestInfo.create(REQUEST_ID, request);
+    when(session.getRequestInfo(REQUEST_ID)).thenReturn(Optional.of(requestInfo));
+    final List<NodeRecord> records = List.of(oversizedRecord, validRecord);
+    final NodesMessage message = new NodesMessage(REQUEST_ID, records.size(), records);
+    handler.handle(message, session);
+
+    assertThat(compactTable.getNode(validRecord.getNodeId()).map(NodeRecordInfo::getNode))
+        .contains(validRecord);
+    assertThat(compactTable.getNode(oversizedRecord.getNodeId())).isEmpty();
+    verify(session).clearRequestInfo(REQUEST_ID, List.of(validRecord));
+  }
+
   @Test
   public void shouldRejectReceivedRecordsThatAreNotAtCorrectDistance() {
     final NodeInfo nodeInfo = TestUtil.generateNode(9000);
@@ -160,4 +214,13 @@ class NodesHandlerTest {
 
     verifyNoInteractions(nodeTable);
   }
+
+  private static NodeRecord createOversizedRecord(final NodeInfo nodeInfo) {
+    final NodeRecord record = nodeInfo.getNodeRecord();
+    final List<EnrField> fields = new ArrayList<>();
+    record.forEachField((name, value) -> fields.add(new EnrField(name, value)));
+    fields.add(new EnrField("test", Bytes.wrap(new byte[NodeRecord.MAX_ENCODED_SIZE])));
+    // Not signed, as signing fails on the oversized record
+    return TestUtil.NODE_RECORD_FACTORY.createFromValues(record.getSeq().add(1), fields);
+  }
 }
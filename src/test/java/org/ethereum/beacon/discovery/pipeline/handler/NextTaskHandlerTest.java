@@ -0,0 +1,83 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.pipeline.handler;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import org.ethereum.beacon.discovery.TestUtil;
+import org.ethereum.beacon.discovery.message.V5Message;
+import org.ethereum.beacon.discovery.pipeline.Envelope;
+import org.ethereum.beacon.discovery.pipeline.Field;
+import org.ethereum.beacon.discovery.pipeline.info.RequestInfo;
+import org.ethereum.beacon.discovery.schema.NodeSession;
+import org.ethereum.beacon.discovery.schema.NodeSession.SessionState;
+import org.junit.jupiter.api.Test;
+
+class NextTaskHandlerTest {
+
+  private static final int MAX_IN_FLIGHT = 2;
+  private final NodeSession session = mock(NodeSession.class);
+  private final NextTaskHandler handler = new NextTaskHandler(MAX_IN_FLIGHT);
+
+  @Test
+  void shouldSendAllAwaitingRequestsAllowedByLimitAtOnce() {
+    final RequestInfo request1 = createRequestInfo();
+    final RequestInfo request2 = createRequestInfo();
+    when(session.getNodeRecord())
+        .thenReturn(Optional.of(TestUtil.generateNode(9000).getNodeRecord()));
+    when(session.getState()).thenReturn(SessionState.AUTHENTICATED);
+    when(session.pollAwaitRequestInfo(MAX_IN_FLIGHT))
+        .thenReturn(Optional.of(request1), Optional.of(request2), Optional.empty());
+
+    handler.handle(createEnvelope());
+
+    verify(session).sendOutgoingOrdinary(request1.getMessage());
+    verify(session).sendOutgoingOrdinary(request2.getMessage());
+  }
+
+  @Test
+  void shouldStartHandshakeWhenRequestAwaitsInInitialState() {
+    when(session.getNodeRecord())
+        .thenReturn(Optional.of(TestUtil.generateNode(9000).getNodeRecord()));
+    when(session.getState()).thenReturn(SessionState.INITIAL);
+    when(session.getFirstAwaitRequestInfo()).thenReturn(Optional.of(createRequestInfo()));
+    when(session.compareAndSetState(SessionState.INITIAL, SessionState.RANDOM_PACKET_SENT))
+        .thenReturn(true);
+
+    handler.handle(createEnvelope());
+
+    verify(session).sendOutgoingRandom(any());
+    verify(session, never()).sendOutgoingOrdinary(any());
+  }
+
+  @Test
+  void shouldNotSendRequestsWhileHandshakeIsInProgress() {
+    when(session.getNodeRecord())
+        .thenReturn(Optional.of(TestUtil.generateNode(9000).getNodeRecord()));
+    when(session.getState()).thenReturn(SessionState.RANDOM_PACKET_SENT);
+
+    handler.handle(createEnvelope());
+
+    verify(session, never()).pollAwaitRequestInfo(MAX_IN_FLIGHT);
+    verify(session, never()).sendOutgoingOrdinary(any());
+  }
+
+  private RequestInfo createRequestInfo() {
+    final RequestInfo requestInfo = mock(RequestInfo.class);
+    when(requestInfo.getMessage()).thenReturn(mock(V5Message.class));
+    return requestInfo;
+  }
+
+  private Envelope createEnvelope() {
+    final Envelope envelope = new Envelope();
+    envelope.put(Field.SESSION, session);
+    return envelope;
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.pipeline.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.StubClock;
+import org.ethereum.beacon.discovery.TestUtil;
+import org.ethereum.beacon.discovery.TestUtil.NodeInfo;
+import org.ethereum.beacon.discovery.network.NetworkParcel;
+import org.ethereum.beacon.discovery.packet.HandshakeMessagePacket;
+import org.ethereum.beacon.discovery.packet.Header;
+import org.ethereum.beacon.discovery.packet.OrdinaryMessagePacket;
+import org.ethereum.beacon.discovery.packet.Packet;
+import org.ethereum.beacon.discovery.pipeline.Envelope;
+import org.ethereum.beacon.discovery.pipeline.Field;
+import org.ethereum.beacon.discovery.pipeline.Pipeline;
+import org.ethereum.beacon.discovery.scheduler.ExpirationSchedulerFactory;
+import org.ethereum.beacon.discovery.schema.NodeSession;
+import org.ethereum.beacon.discovery.schema.NodeSession.SessionState;
+import org.ethereum.beacon.discovery.storage.LocalNodeRecordStore;
+import org.ethereum.beacon.discovery.storage.NewAddressHandler;
+import org.ethereum.beacon.discovery.storage.NodeBucketStorage;
+import org.ethereum.beacon.discovery.storage.NodeRecordListener;
+import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.type.Bytes12;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class StatelessWhoAreYouHandlerTest {
+
+  private static final Bytes32 NODE_ID = Bytes32.fromHexString("0x888888");
+  private static final InetSocketAddress SENDER = new InetSocketAddress("127.0.0.1", 9000);
+  private final NodeInfo homeNodeInfo = TestUtil.generateNode(9001);
+  private final ExpirationSchedulerFactory expirationSchedulerFactory =
+      new ExpirationSchedulerFactory(Executors.newSingleThreadScheduledExecutor());
+  private final NodeTable nodeTable = mock(NodeTable.class);
+  private final Pipeline outgoingPipeline = mock(Pipeline.class);
+  private final StubClock clock = new StubClock();
+
+  private final NodeSessionManager nodeSessionManager =
+      new NodeSessionManager(
+          new LocalNodeRecordStore(
+              homeNodeInfo.getNodeRecord(),
+              homeNodeInfo.getPrivateKey(),
+              NodeRecordListener.NOOP,
+              NewAddressHandler.NOOP),
+          Bytes.fromHexString("0x1234"),
+          mock(NodeBucketStorage.class),
+          nodeTable,
+          outgoingPipeline,
+          expirationSchedulerFactory);
+
+  private final StatelessWhoAreYouHandler handler =
+      new StatelessWhoAreYouHandler(nodeSessionManager, nodeTable, outgoingPipeline, clock);
+
+  @AfterEach
+  public void tearDown() {
+    expirationSchedulerFactory.stop();
+  }
+
+  @Test
+  void shouldSendChallengeWithoutCreatingSession() {
+    when(nodeTable.getNode(NODE_ID)).thenReturn(Optional.empty());
+    final Envelope envelope = createEnvelope(createRandomPacket());
+
+    handler.handle(envelope);
+
+    verify(outgoingPipeline).push(any(NetworkParcel.class));
+    assertThat(envelope.contains(Field.PACKET)).isFalse();
+    assertThat(envelope.contains(Field.SESSION_LOOKUP)).isFalse();
+    assertThat(nodeSessionManager.getNodeSession(NODE_ID, SENDER)).isEmpty();
+    assertThat(handler.getPendingChallengeCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldCreateSessionWhenHandshakeMatchesPendingChallenge() {
+    when(nodeTable.getNode(NODE_ID)).thenReturn(Optional.empty());
+    handler.handle(createEnvelope(createRandomPacket()));
+
+    final Envelope envelope = createEnvelope(mock(HandshakeMessagePacket.class));
+    handler.handle(envelope);
+
+    final NodeSession session = envelope.get(Field.SESSION);
+    assertThat(session).isNotNull();
+    assertThat(session.getState()).isEqualTo(SessionState.WHOAREYOU_SENT);
+    assertThat(session.getWhoAreYouChallenge()).isPresent();
+    assertThat(envelope.contains(Field.PACKET)).isTrue();
+    assertThat(handler.getPendingChallengeCount()).isZero();
+  }
+
+  @Test
+  void shouldDeriveSameChallengeForSameRequest() {
+    when(nodeTable.getNode(NODE_ID)).thenReturn(Optional.empty());
+    final OrdinaryMessagePacket packet = createRandomPacket();
+    handler.handle(createEnvelope(packet));
+    final Envelope first = createEnvelope(mock(HandshakeMessagePacket.class));
+    handler.handle(first);
+    final Bytes firstChallenge = first.get(Field.SESSION).getWhoAreYouChallenge().orElseThrow();
+    nodeSessionManager.dropSession(first.get(Field.SESSION));
+
+    handler.handle(createEnvelope(packet));
+    final Envelope second = createEnvelope(mock(HandshakeMessagePacket.class));
+    handler.handle(second);
+
+    assertThat(second.get(Field.SESSION).getWhoAreYouChallenge()).contains(firstChallenge);
+  }
+
+  @Test
+  void shouldRejectHandshakeWithoutPendingChallenge() {
+    final Envelope envelope = createEnvelope(mock(HandshakeMessagePacket.class));
+
+    handler.handle(envelope);
+
+    assertThat(envelope.contains(Field.SESSION)).isFalse();
+    assertThat(envelope.contains(Field.BAD_PACKET)).isTrue();
+    assertThat(nodeSessionManager.getNodeSession(NODE_ID, SENDER)).isEmpty();
+  }
+
+  @Test
+  void shouldRejectHandshakeFromDifferentAddress() {
+    when(nodeTable.getNode(NODE_ID)).thenReturn(Optional.empty());
+    handler.handle(createEnvelope(createRandomPacket()));
+
+    final Envelope envelope =
+        createEnvelope(
+            mock(HandshakeMessagePacket.class), new InetSocketAddress("127.0.0.1", 9002));
+    handler.handle(envelope);
+
+    assertThat(envelope.contains(Field.SESSION)).isFalse();
+    assertThat(envelope.contains(Field.BAD_PACKET)).isTrue();
+  }
+
+  @Test
+  void shouldAcceptChallengeFromPreviousSecret() {
+    when(nodeTable.getNode(NODE_ID)).thenReturn(Optional.empty());
+    handler.handle(createEnvelope(createRandomPacket()));
+    clock.advanceTimeMillis(StatelessWhoAreYouHandler.DEFAULT_SECRET_ROTATION.toMillis());
+
+    final Envelope envelope = createEnvelope(mock(HandshakeMessagePacket.class));
+    handler.handle(envelope);
+
+    assertThat(envelope.contains(Field.SESSION)).isTrue();
+  }
+
+  @Test
+  void shouldRejectChallengeAfterSecretIsRotatedOut() {
+    when(nodeTable.getNode(NODE_ID)).thenReturn(Optional.empty());
+    handler.handle(createEnvelope(createRandomPacket()));
+    clock.advanceTimeMillis(StatelessWhoAreYouHandler.DEFAULT_SECRET_ROTATION.toMillis() * 2);
+
+    final Envelope envelope = createEnvelope(mock(HandshakeMessagePacket.class));
+    handler.handle(envelope);
+
+    assertThat(envelope.contains(Field.SESSION)).isFalse();
+    assertThat(envelope.contains(Field.BAD_PACKET)).isTrue();
+  }
+
+  @Test
+  void shouldIgnorePacketsFromKnownSessions() {
+    nodeSessionManager.getOrCreateNodeSession(NODE_ID, SENDER);
+    final Envelope envelope = createEnvelope(createRandomPacket());
+
+    handler.handle(envelope);
+
+    verify(outgoingPipeline, never()).push(any());
+    assertThat(envelope.contains(Field.PACKET)).isTrue();
+    assertThat(envelope.contains(Field.SESSION_LOOKUP)).isTrue();
+  }
+
+  private OrdinaryMessagePacket createRandomPacket() {
+    return OrdinaryMessagePacket.createRandom(
+        Header.createOrdinaryHeader(NODE_ID, Bytes12.wrap(Bytes.random(12))), Bytes.random(44));
+  }
+
+  private Envelope createEnvelope(final Packet<?> packet) {
+    return createEnvelope(packet, SENDER);
+  }
+
+  private Envelope createEnvelope(final Packet<?> packet, final InetSocketAddress sender) {
+    final Envelope envelope = new Envelope();
+    envelope.put(Field.PACKET, packet);
+    envelope.put(Field.SESSION_LOOKUP, new SessionLookup(NODE_ID));
+    envelope.put(Field.REMOTE_SENDER, sender);
+    return envelope;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.schema;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.TestUtil;
+import org.ethereum.beacon.discovery.TestUtil.NodeInfo;
+import org.ethereum.beacon.discovery.message.FindNodeMessage;
+import org.ethereum.beacon.discovery.pipeline.handler.NodeSessionManager;
+import org.ethereum.beacon.discovery.pipeline.info.FindNodeResponseHandler;
+import org.ethereum.beacon.discovery.pipeline.info.Request;
+import org.ethereum.beacon.discovery.pipeline.info.RequestInfo;
+import org.ethereum.beacon.discovery.scheduler.ExpirationScheduler;
+import org.ethereum.beacon.discovery.scheduler.ExpirationSchedulerFactory;
+import org.ethereum.beacon.discovery.schema.NodeSession.SessionState;
+import org.ethereum.beacon.discovery.storage.LocalNodeRecordStore;
+import org.ethereum.beacon.discovery.storage.NewAddressHandler;
+import org.ethereum.beacon.discovery.storage.NodeBucketStorage;
+import org.ethereum.beacon.discovery.storage.NodeRecordListener;
+import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.task.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class NodeSessionTest {
+  private static final NodeInfo HOME_NODE = TestUtil.generateNode(9000);
+  private static final NodeInfo PEER = TestUtil.generateNode(9001);
+
+  private final ExpirationSchedulerFactory expirationSchedulerFactory =
+      new ExpirationSchedulerFactory(Executors.newSingleThreadScheduledExecutor());
+  private final ExpirationScheduler<Bytes> requestExpirationScheduler =
+      expirationSchedulerFactory.create(60, TimeUnit.SECONDS);
+
+  @AfterEach
+  void tearDown() {
+    expirationSchedulerFactory.stop();
+  }
+
+  @Test
+  void shouldSendRequestsInSubmissionOrder() {
+    final NodeSession session = createSession(requestExpirationScheduler);
+    final RequestInfo request1 = session.createNextRequest(createRequest());
+    final RequestInfo request2 = session.createNextRequest(createRequest());
+    final RequestInfo request3 = session.createNextRequest(createRequest());
+
+    assertThat(session.getFirstAwaitRequestInfo()).contains(request1);
+    assertThat(session.pollAwaitRequestInfo(2)).contains(request1);
+    assertThat(request1.getTaskStatus()).isEqualTo(TaskStatus.SENT);
+    assertThat(session.getFirstAwaitRequestInfo()).contains(request2);
+    assertThat(session.pollAwaitRequestInfo(2)).contains(request2);
+    // Limit of requests in flight is reached
+    assertThat(session.pollAwaitRequestInfo(2)).isEmpty();
+    assertThat(session.getFirstAwaitRequestInfo()).contains(request3);
+
+    assertThat(session.getFirstSentRequestInfo()).contains(request1);
+    session.clearRequestInfo(request1.getRequestId(), null);
+    assertThat(session.getFirstSentRequestInfo()).contains(request2);
+
+    assertThat(session.pollAwaitRequestInfo(2)).contains(request3);
+    assertThat(session.getFirstAwaitRequestInfo()).isEmpty();
+    session.clearRequestInfo(request2.getRequestId(), null);
+    assertThat(session.getFirstSentRequestInfo()).contains(request3);
+  }
+
+  @Test
+  void shouldCancelRequestExpirationsWithoutHoldingRequestsLock() {
+    @SuppressWarnings("unchecked")
+    final ExpirationScheduler<Bytes> expirationScheduler = mock(ExpirationScheduler.class);
+    final NodeSession session = createSession(expirationScheduler);
+    final Request<Void> request = createRequest();
+    final RequestInfo requestInfo = session.createNextRequest(request);
+    // Blocks if the expiration is cancelled while the requests lock is held
+    doAnswer(
+            invocation ->
+                CompletableFuture.supplyAsync(session::getFirstAwaitRequestInfo)
+                    .get(10, TimeUnit.SECONDS))
+        .when(expirationScheduler)
+        .cancel(requestInfo.getRequestId());
+
+    session.cancelAllRequests("Test");
+
+    verify(expirationScheduler).cancel(requestInfo.getRequestId());
+    assertThat(request.getResultPromise()).isCompletedExceptionally();
+    assertThat(session.getRequestInfo(requestInfo.getRequestId())).isEmpty();
+    assertThat(session.getFirstAwaitRequestInfo()).isEmpty();
+  }
+
+  @Test
+  void shouldHandleRequestsAndStateConcurrently() throws Exception {
+    final NodeSession session = createSession(requestExpirationScheduler);
+    final int threadCount = 4;
+    final int requestsPerThread = 100;
+    final List<Request<Void>> requests = new CopyOnWriteArrayList<>();
+    final AtomicInteger stateSwitchCount = new AtomicInteger();
+    final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  barrier.await();
+                  if (session.compareAndSetState(
+                      SessionState.INITIAL, SessionState.RANDOM_PACKET_SENT)) {
+                    stateSwitchCount.incrementAndGet();
+                  }
+                  for (int j = 0; j < requestsPerThread; j++) {
+                    final Request<Void> request = createRequest();
+                    requests.add(request);
+                    session.createNextRequest(request);
+                    // Requests of other threads could be polled as well
+                    session
+                        .pollAwaitRequestInfo(Integer.MAX_VALUE)
+                        .ifPresent(
+                            requestInfo ->
+                                session.clearRequestInfo(requestInfo.getRequestId(), null));
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(stateSwitchCount).hasValue(1);
+    assertThat(session.getState()).isEqualTo(SessionState.RANDOM_PACKET_SENT);
+    assertThat(requests).hasSize(threadCount * requestsPerThread);
+    assertThat(requests).allMatch(request -> request.getResultPromise().isDone());
+    assertThat(session.getFirstAwaitRequestInfo()).isEmpty();
+    assertThat(session.getFirstSentRequestInfo()).isEmpty();
+  }
+
+  private NodeSession createSession(final ExpirationScheduler<Bytes> requestExpirationScheduler) {
+    return new NodeSession(
+        PEER.getNodeRecord().getNodeId(),
+        Optional.empty(),
+        PEER.getNodeRecord().getUdpAddress().orElseThrow(),
+        mock(NodeSessionManager.class),
+        new LocalNodeRecordStore(
+            HOME_NODE.getNodeRecord(),
+            HOME_NODE.getPrivateKey(),
+            NodeRecordListener.NOOP,
+            NewAddressHandler.NOOP),
+        HOME_NODE.getPrivateKey(),
+        mock(NodeTable.class),
+        mock(NodeBucketStorage.class),
+        parcel -> {},
+        new Random(1),
+        requestExpirationScheduler);
+  }
+
+  private static Request<Void> createRequest() {
+    return new Request<>(
+        new CompletableFuture<>(),
+        id -> new FindNodeMessage(id, List.of(256)),
+        new FindNodeResponseHandler());
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.junit.jupiter.api.Test;
+
+class CompactNodeRecordDataSourceTest {
+
+  private final Random random = new Random(1);
+  private final CompactNodeRecordDataSource dataSource =
+      new CompactNodeRecordDataSource(new NodeRecordFactory(new SimpleIdentitySchemaInterpreter()));
+
+  @Test
+  void shouldRestoreStoredNode() {
+    final NodeRecordInfo node = createNode(Bytes32.random(random), NodeStatus.SLEEP, 12345L, 3);
+
+    dataSource.put(node.getNode().getNodeId(), node);
+
+    assertStored(node);
+  }
+
+  @Test
+  void shouldUpdateStoredNode() {
+    final Bytes32 nodeId = Bytes32.random(random);
+    dataSource.put(nodeId, createNode(nodeId, NodeStatus.ACTIVE, -1L, 0));
+    final NodeRecordInfo updated = createNode(nodeId, NodeStatus.DEAD, 555L, 7);
+
+    dataSource.put(nodeId, updated);
+
+    assertStored(updated);
+    assertThat(dataSource.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldKeepAllNodesAfterRemovalsAndGrowth() {
+    final List<NodeRecordInfo> nodes = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      final NodeRecordInfo node = createNode(Bytes32.random(random), NodeStatus.ACTIVE, i, i);
+      nodes.add(node);
+      dataSource.put(node.getNode().getNodeId(), node);
+    }
+    final List<NodeRecordInfo> removed = nodes.subList(0, 2500);
+    final List<NodeRecordInfo> kept = nodes.subList(2500, nodes.size());
+    removed.forEach(node -> dataSource.remove(node.getNode().getNodeId()));
+    // Freed slots are reused
+    final NodeRecordInfo added = createNode(Bytes32.random(random), NodeStatus.SLEEP, 1L, 1);
+    dataSource.put(added.getNode().getNodeId(), added);
+
+    removed.forEach(node -> assertThat(dataSource.get(node.getNode().getNodeId())).isEmpty());
+    kept.forEach(this::assertStored);
+    assertStored(added);
+    assertThat(dataSource.size()).isEqualTo(kept.size() + 1);
+    assertThat(dataSource.keys()).hasSize(kept.size() + 1);
+  }
+
+  @Test
+  void shouldReturnEmptyForUnknownNode() {
+    assertThat(dataSource.get(Bytes32.random(random))).isEmpty();
+    assertThat(dataSource.get(Bytes.fromHexString("0x1234"))).isEmpty();
+  }
+
+  private void assertStored(final NodeRecordInfo node) {
+    final NodeRecordInfo stored = dataSource.get(node.getNode().getNodeId()).orElseThrow();
+    assertThat(stored.getNode().serialize()).isEqualTo(node.getNode().serialize());
+    assertThat(stored.getLastRetry()).isEqualTo(node.getLastRetry());
+    assertThat(stored.getStatus()).isEqualTo(node.getStatus());
+    assertThat(stored.getRetry()).isEqualTo(node.getRetry());
+  }
+
+  private static NodeRecordInfo createNode(
+      final Bytes nodeId, final NodeStatus status, final long lastRetry, final int retry) {
+    return new NodeRecordInfo(
+        SimpleIdentitySchemaInterpreter.createNodeRecord(nodeId), lastRetry, status, retry);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.database.HashMapDataSource;
+import org.ethereum.beacon.discovery.schema.EnrField;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.junit.jupiter.api.Test;
+
+class EnrFieldIndexTest {
+  private static final String ETH2 = "eth2";
+  private static final String ATTNETS = "attnets";
+  private static final Bytes FORK1 = Bytes.fromHexString("0x01020304");
+  private static final Bytes FORK2 = Bytes.fromHexString("0x05060708");
+
+  private final NodeTableImpl nodeTable = new NodeTableImpl(new HashMapDataSource<>());
+  private final ExactMatchIndex forkIndex = new ExactMatchIndex(ETH2, value -> value.slice(0, 4));
+  private final BitfieldIndex attnetsIndex = new BitfieldIndex(ATTNETS, 64);
+
+  @Test
+  void shouldFindNodesByKeyOfFieldValue() {
+    nodeTable.addIndex(forkIndex);
+    final NodeRecord node1 = save(1, eth2(FORK1, "0xaa"));
+    final NodeRecord node2 = save(2, eth2(FORK1, "0xbb"));
+    save(3, eth2(FORK2, "0xaa"));
+    save(4);
+
+    assertThat(findNodes(forkIndex.matching(FORK1), 10)).containsExactlyInAnyOrder(node1, node2);
+  }
+
+  @Test
+  void shouldIndexNodesAlreadyInTable() {
+    final NodeRecord node1 = save(1, eth2(FORK1, "0xaa"));
+    save(2, eth2(FORK2, "0xaa"));
+
+    nodeTable.addIndex(forkIndex);
+
+    assertThat(findNodes(forkIndex.matching(FORK1), 10)).containsExactly(node1);
+  }
+
+  @Test
+  void shouldFindNodesBySetBits() {
+    nodeTable.addIndex(attnetsIndex);
+    final NodeRecord node1 = save(1, attnets("0x0100000000000000"));
+    final NodeRecord node2 = save(2, attnets("0x0001000000000000"));
+    final NodeRecord node3 = save(3, attnets("0x0300000000000000"));
+
+    assertThat(findNodes(attnetsIndex.hasBit(0), 10)).containsExactlyInAnyOrder(node1, node3);
+    assertThat(findNodes(attnetsIndex.hasBit(1), 10)).containsExactly(node3);
+    assertThat(findNodes(attnetsIndex.hasBit(8), 10)).containsExactly(node2);
+    assertThat(findNodes(attnetsIndex.hasBit(63), 10)).isEmpty();
+  }
+
+  @Test
+  void shouldCombineIndexedConditionsWithFilter() {
+    nodeTable.addIndex(forkIndex);
+    nodeTable.addIndex(attnetsIndex);
+    final NodeRecord node1 = save(1, eth2(FORK1, "0xaa"), attnets("0x01"));
+    save(2, eth2(FORK2, "0xaa"), attnets("0x01"));
+    save(3, eth2(FORK1, "0xaa"), attnets("0x02"));
+    final NodeRecord node4 = save(4, eth2(FORK1, "0xaa"), attnets("0x01"));
+    nodeTable.save(new NodeRecordInfo(node4, 0L, NodeStatus.DEAD, 10));
+
+    final NodeQuery query =
+        forkIndex
+            .matching(FORK1)
+            .and(attnetsIndex.hasBit(0))
+            .and(node -> node.getStatus() == NodeStatus.ACTIVE);
+
+    assertThat(query.lookup(List.of(forkIndex, attnetsIndex)))
+        .contains(Set.of(node1.getNodeId(), node4.getNodeId()));
+    assertThat(findNodes(query, 10)).containsExactly(node1);
+  }
+
+  @Test
+  void shouldFollowUpdatesAndRemovals() {
+    nodeTable.addIndex(attnetsIndex);
+    final NodeRecord node1 = save(1, attnets("0x01"));
+    final NodeRecord node2 = save(2, attnets("0x01"));
+
+    final NodeRecord updatedNode1 = save(1, attnets("0x02"));
+    nodeTable.remove(NodeRecordInfo.createDefault(node2));
+
+    assertThat(findNodes(attnetsIndex.hasBit(0), 10)).isEmpty();
+    assertThat(findNodes(attnetsIndex.hasBit(1), 10)).containsExactly(updatedNode1);
+    assertThat(attnetsIndex.getNodeIds(0)).doesNotContain(node1.getNodeId(), node2.getNodeId());
+  }
+
+  @Test
+  void shouldNotIndexValuesKeyFunctionFailsOn() {
+    nodeTable.addIndex(forkIndex);
+    save(1, new EnrField(ETH2, Bytes.fromHexString("0x01")));
+
+    assertThat(findNodes(forkIndex.matching(Bytes.fromHexString("0x01")), 10)).isEmpty();
+  }
+
+  @Test
+  void shouldScanTableWhenIndexIsNotRegistered() {
+    final NodeRecord node1 = save(1, eth2(FORK1, "0xaa"));
+    save(2, eth2(FORK2, "0xaa"));
+
+    final NodeQuery query = forkIndex.matching(FORK1);
+
+    assertThat(query.lookup(List.of())).isEmpty();
+    assertThat(findNodes(query, 10)).containsExactly(node1);
+  }
+
+  @Test
+  void shouldLimitNumberOfNodesFound() {
+    nodeTable.addIndex(forkIndex);
+    save(1, eth2(FORK1, "0xaa"));
+    save(2, eth2(FORK1, "0xbb"));
+    save(3, eth2(FORK1, "0xcc"));
+
+    assertThat(findNodes(forkIndex.matching(FORK1), 2)).hasSize(2);
+  }
+
+  private List<NodeRecord> findNodes(final NodeQuery query, final int limit) {
+    return nodeTable.findNodes(query, limit).stream()
+        .map(NodeRecordInfo::getNode)
+        .collect(Collectors.toList());
+  }
+
+  private NodeRecord save(final int nodeId, final EnrField... fields) {
+    final NodeRecord node =
+        SimpleIdentitySchemaInterpreter.createNodeRecord(
+            Bytes32.leftPad(Bytes.ofUnsignedInt(nodeId)), fields);
+    nodeTable.save(NodeRecordInfo.createDefault(node));
+    return node;
+  }
+
+  private static EnrField eth2(final Bytes forkDigest, final String rest) {
+    return new EnrField(ETH2, Bytes.concatenate(forkDigest, Bytes.fromHexString(rest)));
+  }
+
+  private static EnrField attnets(final String bitvector) {
+    return new EnrField(ATTNETS, Bytes.fromHexString(bitvector));
+  }
+}
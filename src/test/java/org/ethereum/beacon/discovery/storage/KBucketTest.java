@@ -6,6 +6,8 @@ package org.ethereum.beacon.discovery.storage;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.ethereum.beacon.discovery.storage.BucketEntry.MIN_MILLIS_BETWEEN_PINGS;
 import static org.ethereum.beacon.discovery.storage.BucketEntry.PING_TIMEOUT_MILLIS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -15,6 +17,7 @@ import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
 import org.ethereum.beacon.discovery.StubClock;
 import org.ethereum.beacon.discovery.liveness.LivenessChecker;
+import org.ethereum.beacon.discovery.liveness.LivenessChecker.Priority;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.junit.jupiter.api.Test;
 
@@ -35,7 +38,7 @@ class KBucketTest {
     assertThat(bucket.getAllNodes()).containsExactly(node);
     assertThat(bucket.getLiveNodes()).isEmpty();
 
-    verify(livenessChecker).checkLiveness(node);
+    verify(livenessChecker).checkLiveness(node, Priority.BUCKET_NODE);
   }
 
   @Test
@@ -50,9 +53,9 @@ class KBucketTest {
     assertThat(bucket.getAllNodes()).containsExactly(node1, node2, node3);
     assertThat(bucket.getLiveNodes()).isEmpty();
 
-    verify(livenessChecker).checkLiveness(node1);
-    verify(livenessChecker).checkLiveness(node2);
-    verify(livenessChecker).checkLiveness(node3);
+    verify(livenessChecker).checkLiveness(node1, Priority.BUCKET_NODE);
+    verify(livenessChecker).checkLiveness(node2, Priority.BUCKET_NODE);
+    verify(livenessChecker).checkLiveness(node3, Priority.BUCKET_NODE);
   }
 
   @Test
@@ -65,10 +68,10 @@ class KBucketTest {
     bucket.offer(newNode);
 
     // Should trigger a new liveness check for the last item in the bucket
-    verify(livenessChecker, times(2)).checkLiveness(lastRecordInBucket);
+    verify(livenessChecker, times(2)).checkLiveness(lastRecordInBucket, Priority.BUCKET_NODE);
 
     // Should check the new node to see if it can be used as the pending node
-    verify(livenessChecker).checkLiveness(newNode);
+    verify(livenessChecker).checkLiveness(newNode, Priority.REPLACEMENT_CANDIDATE);
     // But doesn't add it to the bucket
     assertThat(bucket.getAllNodes()).doesNotContain(newNode);
   }
@@ -87,10 +90,10 @@ class KBucketTest {
     bucket.offer(newNode);
 
     // We already have a pending node so ignore the new node
-    verify(livenessChecker, never()).checkLiveness(newNode);
+    verify(livenessChecker, never()).checkLiveness(eq(newNode), any());
 
     // Should still trigger a new liveness check for the last item in the bucket
-    verify(livenessChecker, times(2)).checkLiveness(lastRecordInBucket);
+    verify(livenessChecker, times(2)).checkLiveness(lastRecordInBucket, Priority.BUCKET_NODE);
 
     // But doesn't add it to the bucket
     assertThat(bucket.getAllNodes()).doesNotContain(newNode);
@@ -104,8 +107,8 @@ class KBucketTest {
 
     bucket.offer(nodeSeq1);
     bucket.offer(nodeSeq2);
-    verify(livenessChecker).checkLiveness(nodeSeq1);
-    verify(livenessChecker).checkLiveness(nodeSeq2);
+    verify(livenessChecker).checkLiveness(nodeSeq1, Priority.BUCKET_NODE);
+    verify(livenessChecker).checkLiveness(nodeSeq2, Priority.BUCKET_NODE);
 
     assertThat(bucket.getAllNodes()).containsExactly(nodeSeq2);
   }
@@ -118,8 +121,8 @@ class KBucketTest {
 
     bucket.offer(nodeSeq2);
     bucket.offer(nodeSeq1);
-    verify(livenessChecker).checkLiveness(nodeSeq2);
-    verify(livenessChecker, never()).checkLiveness(nodeSeq1);
+    verify(livenessChecker).checkLiveness(nodeSeq2, Priority.BUCKET_NODE);
+    verify(livenessChecker, never()).checkLiveness(eq(nodeSeq1), any());
 
     assertThat(bucket.getAllNodes()).containsExactly(nodeSeq2);
   }
@@ -132,7 +135,7 @@ class KBucketTest {
     bucket.offer(nodeSeq1);
 
     // Only checks liveness once
-    verify(livenessChecker).checkLiveness(nodeSeq1);
+    verify(livenessChecker).checkLiveness(nodeSeq1, Priority.BUCKET_NODE);
     assertThat(bucket.getAllNodes()).containsExactly(nodeSeq1);
   }
 
@@ -153,7 +156,7 @@ class KBucketTest {
   }
 
   @Test
-  void offer_shouldRemovePendingNodeIfTimedOutBeforeConsideringNewNode() {
+  void offer_shouldConsiderNewNodeWhenTimedOutPendingNodeIsRemoved() {
     fillBucketWithLiveNodes();
     final NodeRecord pendingNode = createNewNodeRecord();
     bucket.onLivenessConfirmed(pendingNode);
@@ -162,19 +165,20 @@ class KBucketTest {
     clock.advanceTimeMillis(MIN_MILLIS_BETWEEN_PINGS);
     confirmNodesInBucketAsLive();
     bucket.performMaintenance();
-    verify(livenessChecker).checkLiveness(pendingNode);
+    verify(livenessChecker).checkLiveness(pendingNode, Priority.REPLACEMENT_CANDIDATE);
     clock.advanceTimeMillis(PING_TIMEOUT_MILLIS);
     assertThat(bucket.getPendingNode()).contains(pendingNode);
 
-    // Timed out pending node is removed on the next call to offer
+    // Timed out pending node is removed by the next maintenance
+    bucket.performMaintenance();
     final NodeRecord newNode = createNewNodeRecord();
     bucket.offer(newNode);
     assertThat(bucket.getPendingNode()).isEmpty();
-    verify(livenessChecker).checkLiveness(newNode);
+    verify(livenessChecker).checkLiveness(newNode, Priority.REPLACEMENT_CANDIDATE);
   }
 
   @Test
-  void offer_shouldReplaceLastNodeIfItAndPendingNodeAreTimedOut() {
+  void offer_shouldAddNewNodeWhenTimedOutLastAndPendingNodesAreRemoved() {
     final NodeRecord lastNodeInBucket = fillBucketWithLiveNodes();
     final NodeRecord pendingNode = createNewNodeRecord();
     bucket.onLivenessConfirmed(pendingNode);
@@ -185,18 +189,19 @@ class KBucketTest {
         .filter(node -> !node.equals(lastNodeInBucket))
         .forEach(bucket::onLivenessConfirmed);
     bucket.performMaintenance();
-    verify(livenessChecker).checkLiveness(pendingNode);
-    verify(livenessChecker, times(2)).checkLiveness(lastNodeInBucket);
+    verify(livenessChecker).checkLiveness(pendingNode, Priority.REPLACEMENT_CANDIDATE);
+    verify(livenessChecker, times(2)).checkLiveness(lastNodeInBucket, Priority.BUCKET_NODE);
     clock.advanceTimeMillis(PING_TIMEOUT_MILLIS);
     assertThat(bucket.getPendingNode()).contains(pendingNode);
     assertThat(bucket.getAllNodes()).contains(lastNodeInBucket);
 
-    // Timed out pending node is removed on the next call to offer
+    // Timed out pending and last nodes are removed by the next maintenance
+    bucket.performMaintenance();
     final NodeRecord newNode = createNewNodeRecord();
     bucket.offer(newNode);
     assertThat(bucket.getPendingNode()).isEmpty();
     assertThat(bucket.getAllNodes()).contains(newNode).doesNotContain(lastNodeInBucket);
-    verify(livenessChecker).checkLiveness(newNode);
+    verify(livenessChecker).checkLiveness(newNode, Priority.BUCKET_NODE);
   }
 
   @Test
@@ -250,8 +255,9 @@ class KBucketTest {
     bucket.performMaintenance();
     confirmNodesInBucketAsLive();
     clock.advanceTimeMillis(PING_TIMEOUT_MILLIS);
+    bucket.performMaintenance();
 
-    // New node should replace the timed out pending node
+    // New node should replace the timed out pending node removed by the maintenance
     final NodeRecord newNode = createNewNodeRecord();
     bucket.onLivenessConfirmed(newNode);
 
@@ -264,6 +270,7 @@ class KBucketTest {
     final NodeRecord lastNode = fillBucket();
 
     clock.advanceTimeMillis(PING_TIMEOUT_MILLIS);
+    bucket.performMaintenance();
 
     final NodeRecord newNode = createNewNodeRecord();
     bucket.onLivenessConfirmed(newNode);
@@ -294,6 +301,7 @@ class KBucketTest {
     bucket.onLivenessConfirmed(pendingNode);
 
     clock.advanceTimeMillis(PING_TIMEOUT_MILLIS);
+    bucket.performMaintenance();
 
     // Pending node should replace the timed out last node and new node becomes pending
     final NodeRecord newNode = createNewNodeRecord();
@@ -303,6 +311,19 @@ class KBucketTest {
     assertThat(bucket.getPendingNode()).contains(newNode);
   }
 
+  @Test
+  void onNodeContacted_shouldNotPerformMaintenance() {
+    final NodeRecord lastNode = fillBucket();
+    clock.advanceTimeMillis(PING_TIMEOUT_MILLIS);
+
+    // Last node has timed out, but is only removed by the maintenance
+    final NodeRecord newNode = createNewNodeRecord();
+    bucket.onLivenessConfirmed(newNode);
+
+    assertThat(bucket.getAllNodes()).contains(lastNode).doesNotContain(newNode);
+    assertThat(bucket.getPendingNode()).contains(newNode);
+  }
+
   @Test
   void onNodeContacted_shouldUpdateLivenessConfirmationTimeForPendingNode() {
     fillBucket();
@@ -310,17 +331,17 @@ class KBucketTest {
 
     final NodeRecord pendingNode = createNewNodeRecord();
     bucket.onLivenessConfirmed(pendingNode);
-    verify(livenessChecker, never()).checkLiveness(pendingNode);
+    verify(livenessChecker, never()).checkLiveness(eq(pendingNode), any());
 
     clock.advanceTimeMillis(MIN_MILLIS_BETWEEN_PINGS);
     bucket.onLivenessConfirmed(pendingNode);
     // No need to ping pending node because we know its live
-    verify(livenessChecker, never()).checkLiveness(pendingNode);
+    verify(livenessChecker, never()).checkLiveness(eq(pendingNode), any());
 
     clock.advanceTimeMillis(MIN_MILLIS_BETWEEN_PINGS - 1);
     bucket.performMaintenance();
     // Still not need to ping because it the last contact updated the time
-    verify(livenessChecker, never()).checkLiveness(pendingNode);
+    verify(livenessChecker, never()).checkLiveness(eq(pendingNode), any());
   }
 
   @Test
@@ -330,8 +351,8 @@ class KBucketTest {
     // First offered node schedules a ping for the last node and the new node
     final NodeRecord newNode = createNewNodeRecord();
     bucket.offer(newNode);
-    verify(livenessChecker).checkLiveness(lastRecordInBucket);
-    verify(livenessChecker).checkLiveness(newNode);
+    verify(livenessChecker).checkLiveness(lastRecordInBucket, Priority.BUCKET_NODE);
+    verify(livenessChecker).checkLiveness(newNode, Priority.REPLACEMENT_CANDIDATE);
 
     clock.advanceTimeMillis(BucketEntry.PING_TIMEOUT_MILLIS);
 
@@ -351,7 +372,7 @@ class KBucketTest {
 
     // First offered node schedules a ping for the last node and the new node
     bucket.offer(pendingNode);
-    verify(livenessChecker).checkLiveness(lastRecordInBucket);
+    verify(livenessChecker).checkLiveness(lastRecordInBucket, Priority.BUCKET_NODE);
 
     clock.advanceTimeMillis(BucketEntry.PING_TIMEOUT_MILLIS);
 
@@ -374,7 +395,7 @@ class KBucketTest {
     clock.advanceTimeMillis(MIN_MILLIS_BETWEEN_PINGS);
 
     bucket.performMaintenance();
-    verify(livenessChecker).checkLiveness(pendingNode);
+    verify(livenessChecker).checkLiveness(pendingNode, Priority.REPLACEMENT_CANDIDATE);
   }
 
   @Test
@@ -387,7 +408,7 @@ class KBucketTest {
     clock.advanceTimeMillis(MIN_MILLIS_BETWEEN_PINGS - 1);
 
     bucket.performMaintenance();
-    verify(livenessChecker, never()).checkLiveness(pendingNode);
+    verify(livenessChecker, never()).checkLiveness(eq(pendingNode), any());
   }
 
   @Test
@@ -403,7 +424,7 @@ class KBucketTest {
     assertThat(bucket.getPendingNode()).contains(pendingNode);
 
     bucket.performMaintenance();
-    verify(livenessChecker).checkLiveness(pendingNode);
+    verify(livenessChecker).checkLiveness(pendingNode, Priority.REPLACEMENT_CANDIDATE);
     assertThat(bucket.getPendingNode()).contains(pendingNode);
 
     clock.advanceTimeMillis(PING_TIMEOUT_MILLIS);
@@ -5,6 +5,8 @@ package org.ethereum.beacon.discovery.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.net.InetSocketAddress;
@@ -13,7 +15,10 @@ import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
 import org.ethereum.beacon.discovery.StubClock;
 import org.ethereum.beacon.discovery.liveness.LivenessChecker;
+import org.ethereum.beacon.discovery.liveness.LivenessChecker.Priority;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
 import org.ethereum.beacon.discovery.util.Functions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -59,6 +64,39 @@ class KBucketsTest {
     assertThat(buckets.getAllNodeRecords(distance)).containsExactly(node);
   }
 
+  @Test
+  void getNodeRecords_shouldOnlyReturnLiveNodes() {
+    final int distance = 8;
+    final NodeRecord offeredNode = createNodeAtDistance(distance);
+    buckets.put(NodeRecordInfo.createDefault(offeredNode));
+
+    assertThat(buckets.getNodeRecords(distance)).isEmpty();
+    verify(livenessChecker).checkLiveness(offeredNode, Priority.BUCKET_NODE);
+
+    buckets.onNodeContacted(NodeRecordInfo.createDefault(offeredNode));
+    assertThat(buckets.getNodeRecords(distance)).containsExactly(offeredNode);
+  }
+
+  @Test
+  void put_shouldIgnoreDeadNodes() {
+    final int distance = 8;
+    final NodeRecord node = createNodeAtDistance(distance);
+    buckets.put(new NodeRecordInfo(node, 0L, NodeStatus.DEAD, 0));
+
+    assertThat(buckets.getAllNodeRecords(distance)).isEmpty();
+    verifyNoInteractions(livenessChecker);
+  }
+
+  @Test
+  void put_shouldIgnoreNodesWhichFailedToRespond() {
+    final int distance = 8;
+    final NodeRecord node = createNodeAtDistance(distance);
+    buckets.put(new NodeRecordInfo(node, 1000L, NodeStatus.SLEEP, 1));
+
+    assertThat(buckets.getAllNodeRecords(distance)).isEmpty();
+    verifyNoInteractions(livenessChecker);
+  }
+
   @Test
   void shouldGenerateIdsAtCorrectDistance() {
     for (int distance = 1; distance <= 256; distance++) {
@@ -0,0 +1,77 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.junit.jupiter.api.Test;
+
+class LivenessDistanceEvictionPolicyTest {
+
+  private final LivenessDistanceEvictionPolicy policy =
+      new LivenessDistanceEvictionPolicy(Bytes32.ZERO);
+
+  @Test
+  void shouldReturnEmptyWhenNothingTracked() {
+    assertThat(policy.selectVictim()).isEmpty();
+  }
+
+  @Test
+  void shouldEvictFromMostPopulatedDistance() {
+    final Bytes near1 = nodeId(0x40, 1);
+    final Bytes near2 = nodeId(0x40, 2);
+    final Bytes far = nodeId(0x80, 1);
+    policy.onSave(createNode(near1, NodeStatus.ACTIVE, 100));
+    policy.onSave(createNode(near2, NodeStatus.ACTIVE, 100));
+    policy.onSave(createNode(far, NodeStatus.DEAD, 100));
+
+    assertThat(policy.selectVictim()).hasValueSatisfying(id -> assertThat(id).isIn(near1, near2));
+  }
+
+  @Test
+  void shouldEvictLeastLiveNodeFirst() {
+    final Bytes active = nodeId(0x80, 1);
+    final Bytes sleeping = nodeId(0x80, 2);
+    final Bytes dead = nodeId(0x80, 3);
+    policy.onSave(createNode(active, NodeStatus.ACTIVE, 100));
+    policy.onSave(createNode(sleeping, NodeStatus.SLEEP, 200));
+    policy.onSave(createNode(dead, NodeStatus.DEAD, 300));
+
+    assertThat(policy.selectVictim()).contains(dead);
+    policy.onRemove(dead);
+    assertThat(policy.selectVictim()).contains(sleeping);
+    policy.onRemove(sleeping);
+    assertThat(policy.selectVictim()).contains(active);
+  }
+
+  @Test
+  void shouldEvictNodeCheckedLeastRecently() {
+    final Bytes recent = nodeId(0x80, 1);
+    final Bytes old = nodeId(0x80, 2);
+    policy.onSave(createNode(recent, NodeStatus.ACTIVE, 200));
+    policy.onSave(createNode(old, NodeStatus.ACTIVE, 100));
+
+    assertThat(policy.selectVictim()).contains(old);
+
+    // Node is checked again
+    policy.onSave(createNode(old, NodeStatus.ACTIVE, 300));
+    assertThat(policy.selectVictim()).contains(recent);
+  }
+
+  private static Bytes nodeId(final int firstByte, final int lastByte) {
+    return Bytes32.fromHexString(String.format("0x%02x%062x", firstByte, lastByte));
+  }
+
+  private static NodeRecordInfo createNode(
+      final Bytes nodeId, final NodeStatus status, final long lastRetry) {
+    return new NodeRecordInfo(
+        SimpleIdentitySchemaInterpreter.createNodeRecord(nodeId), lastRetry, status, 0);
+  }
+}
@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.TestUtil;
@@ -68,6 +70,27 @@ public class NodeBucketTest {
     assertFalse(nodeBucket.contains(willInsertNode2));
   }
 
+  @Test
+  public void testRemovalKeepsUpdateOrder() {
+    NodeBucket nodeBucket = new NodeBucket();
+    List<NodeRecordInfo> records =
+        IntStream.range(0, 5)
+            .mapToObj(
+                i -> new NodeRecordInfo(generateUniqueRecord(i).getNode(), i, NodeStatus.ACTIVE, 0))
+            .collect(Collectors.toList());
+    records.forEach(nodeBucket::put);
+    NodeRecordInfo updated =
+        new NodeRecordInfo(records.get(0).getNode(), 10L, NodeStatus.ACTIVE, 0);
+    nodeBucket.put(updated);
+    nodeBucket.put(new NodeRecordInfo(records.get(2).getNode(), 11L, NodeStatus.DEAD, 0));
+
+    assertThat(nodeBucket.getNodeRecords())
+        .containsExactly(records.get(1), records.get(3), records.get(4), updated);
+    assertThat(nodeBucket.getNodeRecords()).isSameAs(nodeBucket.getNodeRecords());
+    assertFalse(nodeBucket.contains(records.get(2)));
+    assertEquals(4, nodeBucket.size());
+  }
+
   @Test
   public void testStorage() {
     NodeRecordInfo initial = generateUniqueRecord(0);
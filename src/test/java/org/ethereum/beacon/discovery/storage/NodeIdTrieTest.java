@@ -0,0 +1,100 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+
+class NodeIdTrieTest {
+
+  private final Random random = new Random(1);
+  private final NodeIdTrie trie = new NodeIdTrie();
+
+  @Test
+  void shouldIterateInXorDistanceOrder() {
+    final List<Bytes> ids = generateIds(500);
+    ids.forEach(trie::add);
+    final Bytes32 target = randomId();
+
+    assertThat(toList(trie.iterateClosest(target))).isEqualTo(sortByDistance(ids, target));
+  }
+
+  @Test
+  void shouldReturnExactMatchFirst() {
+    final List<Bytes> ids = generateIds(100);
+    ids.forEach(trie::add);
+
+    assertThat(trie.iterateClosest(ids.get(42)).next()).isEqualTo(ids.get(42));
+  }
+
+  @Test
+  void shouldIgnoreDuplicates() {
+    final Bytes32 id = randomId();
+    trie.add(id);
+    trie.add(id);
+
+    assertThat(toList(trie.iterateClosest(Bytes32.ZERO))).containsExactly(id);
+  }
+
+  @Test
+  void shouldRemoveIds() {
+    final List<Bytes> ids = generateIds(200);
+    ids.forEach(trie::add);
+    final List<Bytes> removed = ids.subList(0, 100);
+    final List<Bytes> kept = ids.subList(100, ids.size());
+    removed.forEach(trie::remove);
+    final Bytes32 target = randomId();
+
+    assertThat(toList(trie.iterateClosest(target))).isEqualTo(sortByDistance(kept, target));
+
+    kept.forEach(trie::remove);
+    assertThat(trie.isEmpty()).isTrue();
+  }
+
+  @Test
+  void shouldNotSeeUpdatesMadeAfterIterationStarted() {
+    final List<Bytes> ids = generateIds(10);
+    ids.forEach(trie::add);
+    final Iterator<Bytes> iterator = trie.iterateClosest(Bytes32.ZERO);
+
+    generateIds(10).forEach(trie::add);
+
+    assertThat(toList(iterator)).containsExactlyInAnyOrderElementsOf(ids);
+  }
+
+  private List<Bytes> generateIds(final int count) {
+    final List<Bytes> ids = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      ids.add(randomId());
+    }
+    return ids;
+  }
+
+  private Bytes32 randomId() {
+    return Bytes32.random(random);
+  }
+
+  private static List<Bytes> sortByDistance(final List<Bytes> ids, final Bytes target) {
+    return ids.stream()
+        .sorted(Comparator.comparing(id -> new BigInteger(1, id.xor(target).toArrayUnsafe())))
+        .collect(Collectors.toList());
+  }
+
+  private static List<Bytes> toList(final Iterator<Bytes> iterator) {
+    final List<Bytes> result = new ArrayList<>();
+    iterator.forEachRemaining(result::add);
+    return result;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.BufferOverflowStrategy;
+
+class NodeRecordUpdatesTest {
+  private static final NodeRecord NODE1 = SimpleIdentitySchemaInterpreter.createNodeRecord(1);
+  private static final NodeRecord NODE2 = SimpleIdentitySchemaInterpreter.createNodeRecord(2);
+  private static final NodeRecord NODE3 = SimpleIdentitySchemaInterpreter.createNodeRecord(3);
+
+  private final NodeTable nodeTable = mock(NodeTable.class);
+  private final NodeRecordUpdates nodeRecordUpdates = new NodeRecordUpdates(nodeTable);
+  private final List<NodeTableListener> listeners = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    doAnswer(invocation -> listeners.add(invocation.getArgument(0)))
+        .when(nodeTable)
+        .addListener(any());
+  }
+
+  @Test
+  void shouldPublishActiveNodesSavedAfterSubscription() {
+    final RecordingSubscriber subscriber = subscribe(10, BufferOverflowStrategy.ERROR, 10);
+
+    save(NODE1, NodeStatus.ACTIVE);
+    save(NODE2, NodeStatus.SLEEP);
+    save(NODE3, NodeStatus.DEAD);
+    save(NODE1, NodeStatus.ACTIVE);
+
+    assertThat(subscriber.records).containsExactly(NODE1, NODE1);
+    assertThat(subscriber.error).isNull();
+  }
+
+  @Test
+  void shouldStopListeningWhenSubscriptionIsCancelled() {
+    final RecordingSubscriber subscriber = subscribe(10, BufferOverflowStrategy.ERROR, 10);
+    assertThat(listeners).hasSize(1);
+
+    subscriber.dispose();
+
+    verify(nodeTable).removeListener(listeners.get(0));
+  }
+
+  @Test
+  void shouldDropOldestRecordsWhenBufferIsFull() {
+    final RecordingSubscriber subscriber = subscribe(2, BufferOverflowStrategy.DROP_OLDEST, 0);
+
+    save(NODE1, NodeStatus.ACTIVE);
+    save(NODE2, NodeStatus.ACTIVE);
+    save(NODE3, NodeStatus.ACTIVE);
+    assertThat(subscriber.records).isEmpty();
+
+    subscriber.request(10);
+    assertThat(subscriber.records).containsExactly(NODE2, NODE3);
+  }
+
+  @Test
+  void shouldDropLatestRecordsWhenBufferIsFull() {
+    final RecordingSubscriber subscriber = subscribe(2, BufferOverflowStrategy.DROP_LATEST, 0);
+
+    save(NODE1, NodeStatus.ACTIVE);
+    save(NODE2, NodeStatus.ACTIVE);
+    save(NODE3, NodeStatus.ACTIVE);
+
+    subscriber.request(10);
+    assertThat(subscriber.records).containsExactly(NODE1, NODE2);
+  }
+
+  @Test
+  void shouldFailWhenBufferOverflowsWithErrorStrategy() {
+    final RecordingSubscriber subscriber = subscribe(2, BufferOverflowStrategy.ERROR, 0);
+
+    save(NODE1, NodeStatus.ACTIVE);
+    save(NODE2, NodeStatus.ACTIVE);
+    save(NODE3, NodeStatus.ACTIVE);
+
+    assertThat(subscriber.error).isNotNull();
+    verify(nodeTable).removeListener(listeners.get(0));
+  }
+
+  private RecordingSubscriber subscribe(
+      final int bufferSize,
+      final BufferOverflowStrategy overflowStrategy,
+      final long initialRequest) {
+    final RecordingSubscriber subscriber = new RecordingSubscriber(initialRequest);
+    nodeRecordUpdates.stream(bufferSize, overflowStrategy).subscribe(subscriber);
+    return subscriber;
+  }
+
+  private void save(final NodeRecord node, final NodeStatus status) {
+    final NodeRecordInfo nodeRecordInfo = new NodeRecordInfo(node, 0L, status, 0);
+    listeners.forEach(listener -> listener.onNodeSaved(nodeRecordInfo));
+  }
+
+  private static class RecordingSubscriber extends BaseSubscriber<NodeRecord> {
+    private final List<NodeRecord> records = new ArrayList<>();
+    private final long initialRequest;
+    private Throwable error;
+
+    private RecordingSubscriber(final long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    protected void hookOnSubscribe(final Subscription subscription) {
+      if (initialRequest > 0) {
+        request(initialRequest);
+      }
+    }
+
+    @Override
+    protected void hookOnNext(final NodeRecord record) {
+      records.add(record);
+    }
+
+    @Override
+    protected void hookOnError(final Throwable throwable) {
+      error = throwable;
+    }
+  }
+}
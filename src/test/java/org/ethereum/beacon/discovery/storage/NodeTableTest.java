@@ -8,17 +8,27 @@ import static org.ethereum.beacon.discovery.TestUtil.NODE_RECORD_FACTORY_NO_VERI
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.ethereum.beacon.discovery.TestUtil;
+import org.ethereum.beacon.discovery.database.HashMapDataSource;
 import org.ethereum.beacon.discovery.schema.EnrField;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 import org.ethereum.beacon.discovery.schema.NodeStatus;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class NodeTableTest {
   final String LOCALHOST_BASE64 =
@@ -71,6 +81,145 @@ public class NodeTableTest {
         farNode.get(EnrField.PKEY_SECP256K1));
   }
 
+  @Test
+  public void testConcurrentSave() throws Exception {
+    NodeTableStorage nodeTableStorage = new NodeTableStorageFactoryImpl().createTable(List.of());
+    NodeTable nodeTable = nodeTableStorage.get();
+    List<NodeRecordInfo> nodes = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      nodes.add(
+          NodeRecordInfo.createDefault(
+              TestUtil.generateUnverifiedNode(30000 + i).getNodeRecord()));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < nodes.size(); i += 10) {
+        List<NodeRecordInfo> batch = nodes.subList(i, i + 10);
+        futures.add(executor.submit(() -> batch.forEach(nodeTable::save)));
+        futures.add(executor.submit(() -> nodeTable.saveAll(batch)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<NodeRecordInfo> allNodes = nodeTable.findClosestNodes(Bytes32.ZERO, 0);
+    assertEquals(nodes.size(), allNodes.size());
+    assertTrue(allNodes.containsAll(nodes));
+  }
+
+  @Test
+  public void testBoundedTableEvictsNodes() {
+    NodeTableImpl nodeTable =
+        new NodeTableImpl(
+            new HashMapDataSource<>(), 2, new LivenessDistanceEvictionPolicy(Bytes32.ZERO));
+    NodeRecordInfo dead =
+        new NodeRecordInfo(
+            TestUtil.generateUnverifiedNode(30303).getNodeRecord(), 1L, NodeStatus.DEAD, 0);
+    nodeTable.save(dead);
+    nodeTable.saveAll(
+        List.of(
+            NodeRecordInfo.createDefault(TestUtil.generateUnverifiedNode(30304).getNodeRecord()),
+            NodeRecordInfo.createDefault(TestUtil.generateUnverifiedNode(30305).getNodeRecord())));
+
+    assertEquals(2, nodeTable.size());
+    assertEquals(1, nodeTable.getEvictedCount());
+    assertTrue(nodeTable.getNode(dead.getNode().getNodeId()).isEmpty());
+    assertEquals(2, nodeTable.findClosestNodes(Bytes32.ZERO, 0).size());
+  }
+
+  @Test
+  public void testListenersAreNotifiedOfChanges() {
+    NodeTableImpl nodeTable =
+        new NodeTableImpl(
+            new HashMapDataSource<>(), 1, new LivenessDistanceEvictionPolicy(Bytes32.ZERO));
+    List<Bytes> saved = new ArrayList<>();
+    List<Bytes> removed = new ArrayList<>();
+    nodeTable.addListener(
+        new NodeTableListener() {
+          @Override
+          public void onNodeSaved(NodeRecordInfo node) {
+            saved.add(node.getNode().getNodeId());
+          }
+
+          @Override
+          public void onNodeRemoved(Bytes nodeId) {
+            removed.add(nodeId);
+          }
+        });
+    NodeRecordInfo dead =
+        new NodeRecordInfo(
+            TestUtil.generateUnverifiedNode(30303).getNodeRecord(), 1L, NodeStatus.DEAD, 0);
+    NodeRecordInfo active =
+        NodeRecordInfo.createDefault(TestUtil.generateUnverifiedNode(30304).getNodeRecord());
+
+    nodeTable.save(dead);
+    // Table is bounded to a single node, so dead node is evicted
+    nodeTable.save(active);
+    nodeTable.remove(active);
+
+    assertEquals(List.of(dead.getNode().getNodeId(), active.getNode().getNodeId()), saved);
+    assertEquals(List.of(dead.getNode().getNodeId(), active.getNode().getNodeId()), removed);
+  }
+
+  @Test
+  public void testPersistentTableIsRestored(@TempDir Path directory) {
+    NodeTableStorageFactory nodeTableStorageFactory =
+        NodeTableStorageFactoryImpl.createPersistent(
+            directory, NODE_RECORD_FACTORY_NO_VERIFICATION);
+    NodeRecord node = TestUtil.generateUnverifiedNode(30303).getNodeRecord();
+    nodeTableStorageFactory.createTable(List.of()).get().save(NodeRecordInfo.createDefault(node));
+
+    NodeTable restoredTable = nodeTableStorageFactory.createTable(List.of()).get();
+    assertTrue(restoredTable.getNode(node.getNodeId()).isPresent());
+    assertEquals(
+        List.of(node.getNodeId()),
+        restoredTable.findClosestNodes(node.getNodeId(), 0).stream()
+            .map(nodeRecordInfo -> nodeRecordInfo.getNode().getNodeId())
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testPersistentTableKeepsKnownBootnodes(@TempDir Path directory) {
+    NodeTableStorageFactory nodeTableStorageFactory =
+        NodeTableStorageFactoryImpl.createPersistent(
+            directory, NODE_RECORD_FACTORY_NO_VERIFICATION);
+    TestUtil.NodeInfo bootnodeInfo = TestUtil.generateNode(30303);
+    NodeRecord bootnode = bootnodeInfo.getNodeRecord();
+    NodeRecord updatedBootnode =
+        bootnode.withNewAddress(
+            new InetSocketAddress("127.0.0.2", 30303), bootnodeInfo.getPrivateKey());
+    nodeTableStorageFactory
+        .createTable(List.of(bootnode))
+        .get()
+        .save(new NodeRecordInfo(updatedBootnode, 1L, NodeStatus.SLEEP, 2));
+
+    NodeRecordInfo restored =
+        nodeTableStorageFactory
+            .createTable(List.of(bootnode))
+            .get()
+            .getNode(bootnode.getNodeId())
+            .orElseThrow();
+    assertEquals(updatedBootnode, restored.getNode());
+    assertEquals(NodeStatus.SLEEP, restored.getStatus());
+    assertEquals(2, restored.getRetry());
+
+    NodeRecord newerBootnode =
+        updatedBootnode.withNewAddress(
+            new InetSocketAddress("127.0.0.3", 30303), bootnodeInfo.getPrivateKey());
+    restored =
+        nodeTableStorageFactory
+            .createTable(List.of(newerBootnode))
+            .get()
+            .getNode(bootnode.getNodeId())
+            .orElseThrow();
+    assertEquals(newerBootnode, restored.getNode());
+    assertEquals(NodeStatus.ACTIVE, restored.getStatus());
+  }
+
   /**
    * Verifies that calculated index number is in range of [0, {@link
    * NodeTableImpl#NUMBER_OF_INDEXES})
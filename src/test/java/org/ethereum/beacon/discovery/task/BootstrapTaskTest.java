@@ -0,0 +1,197 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.scheduler.Scheduler;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.ethereum.beacon.discovery.storage.NodeTable;
+import org.ethereum.beacon.discovery.util.Functions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BootstrapTaskTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  private static final int PEER_COUNT = 2;
+  private static final NodeRecord HOME_NODE = createNode(0);
+  private static final NodeRecord BOOTNODE1 = createNode(1);
+  private static final NodeRecord BOOTNODE2 = createNode(2);
+  private static final NodeRecord NODE1 = createNode(3);
+  private static final NodeRecord NODE2 = createNode(4);
+
+  private final NodeTable nodeTable = mock(NodeTable.class);
+  private final Scheduler scheduler = mock(Scheduler.class);
+  private final List<List<Integer>> queriedDistances = new ArrayList<>();
+  private final List<CompletableFuture<Collection<NodeRecord>>> queries = new ArrayList<>();
+  private final List<NodeRecord> pingedNodes = new ArrayList<>();
+  private final List<Bytes32> lookups = new ArrayList<>();
+  private Runnable timeoutTask;
+
+  @BeforeEach
+  void setUp() {
+    when(scheduler.getCurrentTime()).thenReturn(1000L);
+    when(scheduler.executeWithDelayR(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              timeoutTask = invocation.getArgument(1);
+              return new CompletableFuture<>();
+            });
+  }
+
+  @Test
+  void shouldQueryAllBootnodesForFarthestDistances() {
+    createTask(List.of(BOOTNODE1, BOOTNODE2)).execute();
+
+    assertThat(queries).hasSize(2 * BootstrapTask.QUERIES_PER_BOOTNODE);
+    assertThat(queriedDistances.subList(0, BootstrapTask.QUERIES_PER_BOOTNODE))
+        .containsExactly(
+            List.of(256, 255, 254, 253, 252),
+            List.of(251, 250, 249, 248, 247),
+            List.of(246, 245, 244, 243, 242));
+    assertThat(lookups).isEmpty();
+  }
+
+  @Test
+  void shouldLookUpHomeNodeOnceWhenBootnodesRespond() {
+    createTask(List.of(BOOTNODE1, BOOTNODE2)).execute();
+
+    queries.get(0).complete(List.of());
+    queries.get(1).complete(List.of());
+
+    assertThat(lookups).containsExactly(Bytes32.wrap(HOME_NODE.getNodeId()));
+  }
+
+  @Test
+  void shouldLookUpHomeNodeWhenAllBootnodeQueriesFail() {
+    createTask(List.of(BOOTNODE1)).execute();
+
+    for (int i = 0; i < queries.size() - 1; i++) {
+      queries.get(i).completeExceptionally(new RuntimeException("Nope"));
+    }
+    assertThat(lookups).isEmpty();
+
+    queries.get(queries.size() - 1).completeExceptionally(new RuntimeException("Nope"));
+    assertThat(lookups).containsExactly(Bytes32.wrap(HOME_NODE.getNodeId()));
+  }
+
+  @Test
+  void shouldLookUpHomeNodeRightAwayWithoutBootnodes() {
+    createTask(List.of()).execute();
+
+    assertThat(lookups).containsExactly(Bytes32.wrap(HOME_NODE.getNodeId()));
+  }
+
+  @Test
+  void shouldPingFoundNodesOnce() {
+    createTask(List.of(BOOTNODE1, BOOTNODE2)).execute();
+
+    queries.get(0).complete(List.of(NODE1, HOME_NODE));
+    queries.get(1).complete(List.of(NODE1, NODE2));
+
+    assertThat(pingedNodes).containsExactly(NODE1, NODE2);
+  }
+
+  @Test
+  void shouldCompleteWhenPeerCountIsReached() {
+    final BootstrapTask task = createTask(List.of(BOOTNODE1));
+    final CompletableFuture<Integer> result = task.execute();
+    verify(nodeTable).addListener(task);
+
+    task.onNodeSaved(createLiveNode(BOOTNODE1));
+    assertThat(result).isNotDone();
+
+    when(scheduler.getCurrentTime()).thenReturn(3500L);
+    task.onNodeSaved(createLiveNode(NODE1));
+
+    assertThat(result).isCompletedWithValue(PEER_COUNT);
+    assertThat(task.getTimeToPeerCount()).contains(Duration.ofMillis(2500));
+    verify(nodeTable).removeListener(task);
+  }
+
+  @Test
+  void shouldNotCountNodesWhichDidNotRespondSinceStart() {
+    final BootstrapTask task = createTask(List.of(BOOTNODE1));
+    final CompletableFuture<Integer> result = task.execute();
+
+    task.onNodeSaved(createLiveNode(BOOTNODE1));
+    // Nodes returned by other nodes are saved as ACTIVE without being contacted
+    task.onNodeSaved(NodeRecordInfo.createDefault(NODE1));
+
+    assertThat(result).isNotDone();
+  }
+
+  @Test
+  void shouldNotCountPeersWhichFailedLater() {
+    final BootstrapTask task = createTask(List.of(BOOTNODE1));
+    final CompletableFuture<Integer> result = task.execute();
+
+    task.onNodeSaved(createLiveNode(BOOTNODE1));
+    task.onNodeSaved(new NodeRecordInfo(BOOTNODE1, Functions.getTime(), NodeStatus.SLEEP, 1));
+    task.onNodeSaved(createLiveNode(NODE1));
+
+    assertThat(result).isNotDone();
+  }
+
+  @Test
+  void shouldCompleteWithLivePeerCountOnTimeout() {
+    final BootstrapTask task = createTask(List.of(BOOTNODE1));
+    final CompletableFuture<Integer> result = task.execute();
+    task.onNodeSaved(createLiveNode(BOOTNODE1));
+
+    timeoutTask.run();
+
+    assertThat(result).isCompletedWithValue(1);
+    assertThat(task.getTimeToPeerCount()).isEmpty();
+
+    // Found nodes are not pinged after the bootstrap is over
+    queries.get(0).complete(List.of(NODE1));
+    assertThat(pingedNodes).isEmpty();
+  }
+
+  private BootstrapTask createTask(final List<NodeRecord> bootnodes) {
+    return new BootstrapTask(
+        nodeTable,
+        scheduler,
+        (node, distances) -> {
+          queriedDistances.add(distances);
+          final CompletableFuture<Collection<NodeRecord>> query = new CompletableFuture<>();
+          queries.add(query);
+          return query;
+        },
+        pingedNodes::add,
+        target -> {
+          lookups.add(target);
+          return new CompletableFuture<>();
+        },
+        Bytes32.wrap(HOME_NODE.getNodeId()),
+        bootnodes,
+        PEER_COUNT,
+        TIMEOUT);
+  }
+
+  private static NodeRecord createNode(final int nodeId) {
+    return SimpleIdentitySchemaInterpreter.createNodeRecord(
+        Bytes32.leftPad(Bytes.ofUnsignedInt(nodeId)));
+  }
+
+  private static NodeRecordInfo createLiveNode(final NodeRecord node) {
+    return new NodeRecordInfo(node, Functions.getTime(), NodeStatus.ACTIVE, 0);
+  }
+}
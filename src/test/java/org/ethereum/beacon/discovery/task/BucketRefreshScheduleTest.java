@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.storage.KBuckets;
+import org.ethereum.beacon.discovery.storage.NodeBucket;
+import org.ethereum.beacon.discovery.storage.NodeBucketStorage;
+import org.ethereum.beacon.discovery.util.Functions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BucketRefreshScheduleTest {
+  private static final Bytes32 HOME_NODE_ID =
+      Bytes32.fromHexString("0x7F00FF0000000000000000000000000000000000000000000000000000000001");
+  private static final long START_TIME = 1_000_000;
+
+  private final NodeBucketStorage nodeBucketStorage = mock(NodeBucketStorage.class);
+  private final Map<Integer, Integer> bucketSizes = new HashMap<>();
+  private final BucketRefreshSchedule schedule = new BucketRefreshSchedule(nodeBucketStorage);
+
+  @BeforeEach
+  void setUp() {
+    when(nodeBucketStorage.getNodeRecords(anyInt()))
+        .thenAnswer(
+            invocation ->
+                Stream.generate(() -> SimpleIdentitySchemaInterpreter.createNodeRecord(1))
+                    .limit(bucketSizes.getOrDefault(invocation.<Integer>getArgument(0), 0)));
+    IntStream.rangeClosed(250, KBuckets.MAXIMUM_BUCKET)
+        .forEach(distance -> bucketSizes.put(distance, NodeBucket.K));
+  }
+
+  @Test
+  void shouldCreateTargetAtRequestedDistance() {
+    final Random random = new Random(1);
+    for (int distance = 0; distance <= KBuckets.MAXIMUM_BUCKET; distance++) {
+      for (int i = 0; i < 10; i++) {
+        final Bytes32 target = BucketRefreshSchedule.createTarget(HOME_NODE_ID, distance, random);
+        assertThat(Functions.logDistance(HOME_NODE_ID, target)).isEqualTo(distance);
+      }
+    }
+  }
+
+  @Test
+  void shouldScaleRefreshIntervalWithBucketSize() {
+    bucketSizes.put(252, NodeBucket.K / 2);
+    bucketSizes.put(253, 0);
+
+    assertThat(schedule.getRefreshInterval(251))
+        .isEqualTo(BucketRefreshSchedule.MAX_REFRESH_INTERVAL_SECONDS);
+    assertThat(schedule.getRefreshInterval(252))
+        .isEqualTo(
+            (BucketRefreshSchedule.MIN_REFRESH_INTERVAL_SECONDS
+                    + BucketRefreshSchedule.MAX_REFRESH_INTERVAL_SECONDS)
+                / 2);
+    assertThat(schedule.getRefreshInterval(253))
+        .isEqualTo(BucketRefreshSchedule.MIN_REFRESH_INTERVAL_SECONDS);
+  }
+
+  @Test
+  void shouldSelectClosestBucketAmongEquallyStaleOnes() {
+    assertThat(schedule.getMostStaleBucket(START_TIME)).isEqualTo(250);
+  }
+
+  @Test
+  void shouldNotRefreshBucketsCloserThanClosestNonEmptyOne() {
+    bucketSizes.put(250, 1);
+    bucketSizes.put(251, 0);
+    bucketSizes.put(249, 0);
+
+    // Emptier bucket is more stale, empty closer buckets are ignored
+    assertThat(schedule.getMostStaleBucket(START_TIME)).isEqualTo(251);
+  }
+
+  @Test
+  void shouldSelectLeastRecentlyRefreshedBucket() {
+    IntStream.rangeClosed(250, KBuckets.MAXIMUM_BUCKET)
+        .forEach(distance -> schedule.onRefreshed(distance, START_TIME));
+    schedule.onRefreshed(254, START_TIME - 1);
+
+    assertThat(schedule.getMostStaleBucket(START_TIME)).isEqualTo(254);
+  }
+
+  @Test
+  void shouldRefreshEmptierBucketsMoreOften() {
+    bucketSizes.put(256, 0);
+    IntStream.rangeClosed(250, KBuckets.MAXIMUM_BUCKET)
+        .forEach(distance -> schedule.onRefreshed(distance, START_TIME));
+
+    final long emptyBucketDueTime = START_TIME + BucketRefreshSchedule.MIN_REFRESH_INTERVAL_SECONDS;
+    assertThat(schedule.isDue(256, emptyBucketDueTime - 1)).isFalse();
+    assertThat(schedule.isDue(256, emptyBucketDueTime)).isTrue();
+    assertThat(schedule.getMostStaleBucket(emptyBucketDueTime)).isEqualTo(256);
+    assertThat(schedule.isDue(250, emptyBucketDueTime)).isFalse();
+
+    schedule.onRefreshed(256, emptyBucketDueTime);
+    final long fullBucketDueTime = START_TIME + BucketRefreshSchedule.MAX_REFRESH_INTERVAL_SECONDS;
+    assertThat(schedule.isDue(250, fullBucketDueTime)).isTrue();
+  }
+}
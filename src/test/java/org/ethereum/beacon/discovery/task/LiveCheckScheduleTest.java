@@ -0,0 +1,105 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.ethereum.beacon.discovery.task.DiscoveryTaskManager.MAX_RETRIES;
+import static org.ethereum.beacon.discovery.task.DiscoveryTaskManager.STATUS_EXPIRATION_SECONDS;
+
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.schema.NodeStatus;
+import org.junit.jupiter.api.Test;
+
+class LiveCheckScheduleTest {
+  private static final Bytes NODE1_ID =
+      Bytes.fromHexString("0x1111111111111111111111111111111111111111111111111111111111111111");
+  private static final Bytes NODE2_ID =
+      Bytes.fromHexString("0x2222222222222222222222222222222222222222222222222222222222222222");
+  private static final Bytes NODE3_ID =
+      Bytes.fromHexString("0x3333333333333333333333333333333333333333333333333333333333333333");
+
+  private final LiveCheckSchedule schedule = new LiveCheckSchedule();
+
+  @Test
+  void getDeadline_shouldFollowLiveCheckRules() {
+    assertThat(LiveCheckSchedule.getDeadline(createNode(NODE1_ID, NodeStatus.ACTIVE, 100, 0)))
+        .isEqualTo(100 + STATUS_EXPIRATION_SECONDS);
+    assertThat(LiveCheckSchedule.getDeadline(createNode(NODE1_ID, NodeStatus.SLEEP, 100, 3)))
+        .isEqualTo(109);
+    assertThat(LiveCheckSchedule.getDeadline(createNode(NODE1_ID, NodeStatus.SLEEP, 100, 0)))
+        .isEqualTo(100);
+    assertThat(
+            LiveCheckSchedule.getDeadline(createNode(NODE1_ID, NodeStatus.SLEEP, 100, MAX_RETRIES)))
+        .isEqualTo(Long.MIN_VALUE);
+    assertThat(LiveCheckSchedule.getDeadline(createNode(NODE1_ID, NodeStatus.DEAD, 100, 0)))
+        .isEqualTo(LiveCheckSchedule.NEVER);
+  }
+
+  @Test
+  void pollDue_shouldReturnDueNodesInDeadlineOrder() {
+    schedule.schedule(NODE1_ID, 30);
+    schedule.schedule(NODE2_ID, 10);
+    schedule.schedule(NODE3_ID, 20);
+
+    assertThat(schedule.pollDue(25)).contains(NODE2_ID);
+    assertThat(schedule.pollDue(25)).contains(NODE3_ID);
+    assertThat(schedule.pollDue(25)).isEmpty();
+    assertThat(schedule.pollDue(30)).contains(NODE1_ID);
+    assertThat(schedule.size()).isZero();
+  }
+
+  @Test
+  void schedule_shouldReplacePreviousDeadline() {
+    schedule.schedule(NODE1_ID, 10);
+    schedule.schedule(NODE2_ID, 20);
+    schedule.schedule(NODE1_ID, 30);
+
+    assertThat(schedule.pollDue(20)).contains(NODE2_ID);
+    // Outdated entry of the first node is skipped
+    assertThat(schedule.pollDue(20)).isEmpty();
+    assertThat(schedule.pollDue(30)).contains(NODE1_ID);
+    assertThat(schedule.pollDue(Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  void onNodeSaved_shouldUnscheduleDeadNodes() {
+    schedule.onNodeSaved(createNode(NODE1_ID, NodeStatus.SLEEP, 100, 1));
+    schedule.onNodeSaved(createNode(NODE1_ID, NodeStatus.DEAD, 100, MAX_RETRIES));
+
+    assertThat(schedule.size()).isZero();
+    assertThat(schedule.pollDue(Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  void onNodeRemoved_shouldUnscheduleNode() {
+    schedule.onNodeSaved(createNode(NODE1_ID, NodeStatus.SLEEP, 100, 1));
+    schedule.onNodeSaved(createNode(NODE2_ID, NodeStatus.SLEEP, 100, 2));
+
+    schedule.onNodeRemoved(NODE1_ID);
+
+    assertThat(schedule.pollDue(Long.MAX_VALUE)).isEqualTo(Optional.of(NODE2_ID));
+    assertThat(schedule.pollDue(Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  void schedule_shouldDropOutdatedEntriesWhenQueueGrows() {
+    for (int i = 0; i < 5000; i++) {
+      schedule.schedule(NODE1_ID, i);
+    }
+
+    assertThat(schedule.size()).isEqualTo(1);
+    assertThat(schedule.getQueueSize()).isLessThanOrEqualTo(2048);
+    assertThat(schedule.pollDue(Long.MAX_VALUE)).contains(NODE1_ID);
+  }
+
+  private static NodeRecordInfo createNode(
+      final Bytes nodeId, final NodeStatus status, final long lastRetry, final int retry) {
+    return new NodeRecordInfo(
+        SimpleIdentitySchemaInterpreter.createNodeRecord(nodeId), lastRetry, status, retry);
+  }
+}
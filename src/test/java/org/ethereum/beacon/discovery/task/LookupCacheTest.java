@@ -0,0 +1,98 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.StubClock;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.junit.jupiter.api.Test;
+
+class LookupCacheTest {
+  private static final Bytes32 TARGET1 =
+      Bytes32.fromHexString("0xAAAA000000000000000000000000000000000000000000000000000000000000");
+  private static final Bytes32 TARGET2 =
+      Bytes32.fromHexString("0xAAAAFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF");
+  private static final Bytes32 OTHER_TARGET =
+      Bytes32.fromHexString("0xBBBB000000000000000000000000000000000000000000000000000000000000");
+  private static final NodeRecord NODE1 =
+      SimpleIdentitySchemaInterpreter.createNodeRecord(
+          Bytes32.fromHexString(
+              "0xAAAA000000000000000000000000000000000000000000000000000000000001"));
+  private static final NodeRecord NODE2 =
+      SimpleIdentitySchemaInterpreter.createNodeRecord(
+          Bytes32.fromHexString(
+              "0xAAAAFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF0"));
+  private static final Duration TTL = Duration.ofSeconds(10);
+
+  private final StubClock clock = new StubClock();
+  private final LookupCache cache = new LookupCache(TTL, clock);
+  private final List<Bytes32> performedLookups = new ArrayList<>();
+  private final List<CompletableFuture<List<NodeRecord>>> lookupResults = new ArrayList<>();
+
+  @Test
+  void shouldShareLookupInProgressForTargetWithSamePrefix() {
+    final CompletableFuture<List<NodeRecord>> result1 = cache.lookup(TARGET1, this::performLookup);
+    final CompletableFuture<List<NodeRecord>> result2 = cache.lookup(TARGET2, this::performLookup);
+
+    assertThat(performedLookups).containsExactly(TARGET1);
+    lookupResults.get(0).complete(List.of(NODE1, NODE2));
+
+    // Result is ordered by distance to the requested target
+    assertThat(result1.join()).containsExactly(NODE1, NODE2);
+    assertThat(result2.join()).containsExactly(NODE2, NODE1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldPerformSeparateLookupForOtherPrefix() {
+    cache.lookup(TARGET1, this::performLookup);
+    cache.lookup(OTHER_TARGET, this::performLookup);
+
+    assertThat(performedLookups).containsExactly(TARGET1, OTHER_TARGET);
+    assertThat(cache.getHitCount()).isZero();
+    assertThat(cache.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldReuseResultUntilItExpires() {
+    cache.lookup(TARGET1, this::performLookup);
+    // Time to live starts when the lookup completes
+    clock.advanceTimeMillis(TTL.toMillis() * 2);
+    lookupResults.get(0).complete(List.of(NODE1));
+
+    clock.advanceTimeMillis(TTL.toMillis() - 1);
+    assertThat(cache.lookup(TARGET2, this::performLookup).join()).containsExactly(NODE1);
+    assertThat(performedLookups).containsExactly(TARGET1);
+
+    clock.advanceTimeMillis(1);
+    cache.lookup(TARGET2, this::performLookup);
+    assertThat(performedLookups).containsExactly(TARGET1, TARGET2);
+  }
+
+  @Test
+  void shouldNotCacheFailedLookup() {
+    final CompletableFuture<List<NodeRecord>> result = cache.lookup(TARGET1, this::performLookup);
+    lookupResults.get(0).completeExceptionally(new RuntimeException("Failed"));
+
+    assertThat(result).isCompletedExceptionally();
+    cache.lookup(TARGET1, this::performLookup);
+    assertThat(performedLookups).containsExactly(TARGET1, TARGET1);
+  }
+
+  private CompletableFuture<List<NodeRecord>> performLookup(final Bytes32 target) {
+    final CompletableFuture<List<NodeRecord>> result = new CompletableFuture<>();
+    performedLookups.add(target);
+    lookupResults.add(result);
+    return result;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
+import org.ethereum.beacon.discovery.scheduler.Scheduler;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
+import org.ethereum.beacon.discovery.task.RecursiveLookupTask.FindNodesAction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NodeSearchTaskTest {
+  private static final Duration TIME_BUDGET = Duration.ofSeconds(30);
+  private static final NodeRecord HOME_NODE = createNode(0);
+  private static final NodeRecord PEER = createNode(1);
+  private static final NodeRecord MATCHING_NODE1 = createNode(2);
+  private static final NodeRecord MATCHING_NODE2 = createNode(3);
+  private static final NodeRecord OTHER_NODE = createNode(4);
+  private static final Set<NodeRecord> MATCHING_NODES =
+      Set.of(HOME_NODE, MATCHING_NODE1, MATCHING_NODE2);
+
+  private final Scheduler scheduler = mock(Scheduler.class);
+  private final List<Bytes32> lookupTargets = new ArrayList<>();
+  private final List<FindNodesAction> lookupActions = new ArrayList<>();
+  private final List<CompletableFuture<List<NodeRecord>>> lookups = new ArrayList<>();
+  private final List<CompletableFuture<Collection<NodeRecord>>> queries = new ArrayList<>();
+  private final List<NodeRecord> foundNodes = new ArrayList<>();
+  private Runnable timeoutTask;
+  private boolean completed = false;
+
+  @BeforeEach
+  void setUp() {
+    when(scheduler.executeWithDelayR(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              timeoutTask = invocation.getArgument(1);
+              return new CompletableFuture<>();
+            });
+  }
+
+  @Test
+  void shouldReportMatchingNodesFromLookupResponses() {
+    createTask(10).execute();
+
+    respond(0, MATCHING_NODE1, OTHER_NODE);
+    assertThat(foundNodes).containsExactly(MATCHING_NODE1);
+
+    // Home node and nodes found already are not reported
+    respond(0, HOME_NODE, MATCHING_NODE1, MATCHING_NODE2);
+    assertThat(foundNodes).containsExactly(MATCHING_NODE1, MATCHING_NODE2);
+    assertThat(completed).isFalse();
+  }
+
+  @Test
+  void shouldStopWhenCountIsReached() {
+    createTask(2).execute();
+
+    respond(0, MATCHING_NODE1);
+    assertThat(completed).isFalse();
+    respond(0, MATCHING_NODE2);
+
+    assertThat(foundNodes).containsExactly(MATCHING_NODE1, MATCHING_NODE2);
+    assertThat(completed).isTrue();
+    assertThat(lookups.get(0)).isCancelled();
+    assertThat(lookups).hasSize(1);
+  }
+
+  @Test
+  void shouldLookUpNextRandomTargetWhenLookupCompletes() {
+    createTask(10).execute();
+    assertThat(lookups).hasSize(1);
+
+    lookups.get(0).complete(List.of(PEER));
+
+    assertThat(lookups).hasSize(2);
+    assertThat(lookupTargets.get(1)).isNotEqualTo(lookupTargets.get(0));
+    respond(1, MATCHING_NODE1);
+    assertThat(foundNodes).containsExactly(MATCHING_NODE1);
+  }
+
+  @Test
+  void shouldStopWhenLookupFindsNoRespondingNodes() {
+    createTask(10).execute();
+
+    lookups.get(0).complete(List.of());
+
+    assertThat(completed).isTrue();
+    assertThat(lookups).hasSize(1);
+  }
+
+  @Test
+  void shouldStopWhenTimeBudgetRunsOut() {
+    createTask(10).execute();
+    respond(0, MATCHING_NODE1);
+
+    timeoutTask.run();
+
+    assertThat(completed).isTrue();
+    assertThat(lookups.get(0)).isCancelled();
+    assertThat(lookups).hasSize(1);
+
+    // Responses to the requests in flight are not reported anymore
+    respond(0, MATCHING_NODE2);
+    assertThat(foundNodes).containsExactly(MATCHING_NODE1);
+  }
+
+  private NodeSearchTask createTask(final int count) {
+    return new NodeSearchTask(
+        scheduler,
+        (target, findNodesAction) -> {
+          lookupTargets.add(target);
+          lookupActions.add(findNodesAction);
+          final CompletableFuture<List<NodeRecord>> lookup = new CompletableFuture<>();
+          lookups.add(lookup);
+          final RecursiveLookupTask task = mock(RecursiveLookupTask.class);
+          when(task.execute()).thenReturn(lookup);
+          return task;
+        },
+        (peer, distances) -> {
+          final CompletableFuture<Collection<NodeRecord>> query = new CompletableFuture<>();
+          queries.add(query);
+          return query;
+        },
+        new Random(1),
+        HOME_NODE.getNodeId(),
+        MATCHING_NODES::contains,
+        count,
+        TIME_BUDGET,
+        foundNodes::add,
+        () -> completed = true);
+  }
+
+  /** Sends a FINDNODE from the lookup and responds to it with the nodes */
+  private void respond(final int lookup, final NodeRecord... nodes) {
+    lookupActions.get(lookup).findNodes(NodeRecordInfo.createDefault(PEER), List.of(256));
+    queries.get(queries.size() - 1).complete(List.of(nodes));
+  }
+
+  private static NodeRecord createNode(final int nodeId) {
+    return SimpleIdentitySchemaInterpreter.createNodeRecord(
+        Bytes32.leftPad(Bytes.ofUnsignedInt(nodeId)));
+  }
+}
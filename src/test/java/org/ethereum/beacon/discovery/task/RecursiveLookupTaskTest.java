@@ -4,25 +4,32 @@
 
 package org.ethereum.beacon.discovery.task;
 
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.ethereum.beacon.discovery.SimpleIdentitySchemaInterpreter;
 import org.ethereum.beacon.discovery.schema.EnrField;
 import org.ethereum.beacon.discovery.schema.IdentitySchema;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
 import org.ethereum.beacon.discovery.schema.NodeRecordInfo;
 import org.ethereum.beacon.discovery.schema.NodeStatus;
@@ -36,6 +43,7 @@ class RecursiveLookupTaskTest {
 
   private static final NodeRecordFactory NODE_RECORD_FACTORY =
       new NodeRecordFactory(new SimpleIdentitySchemaInterpreter());
+  // Distances to the target: PEER2 < PEER3 < PEER1 < PEER5 < PEER4
   public static final Bytes PEER1_ID =
       Bytes.fromHexString("0xDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDEEEE");
   public static final Bytes PEER2_ID =
@@ -51,53 +59,55 @@ class RecursiveLookupTaskTest {
   public static final NodeRecordInfo PEER3 = createPeer(PEER3_ID);
   public static final NodeRecordInfo PEER4 = createPeer(PEER4_ID);
   public static final NodeRecordInfo PEER5 = createPeer(PEER5_ID);
+  private static final Bytes HOME_ID =
+      Bytes.fromHexString("0xDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDD00");
+  private static final int ALPHA = 3;
+  private static final int DISTANCES_PER_QUERY = 3;
 
   private final Bytes TARGET =
       Bytes.fromHexString("0xDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDD");
   private final NodeTable nodeTable = mock(NodeTable.class);
   private final FindNodesAction findNodesAction = mock(FindNodesAction.class);
 
-  private final Map<NodeRecordInfo, CompletableFuture<Void>> findNodeRequests = new HashMap<>();
-
-  private final RecursiveLookupTask task =
-      new RecursiveLookupTask(nodeTable, findNodesAction, 4, TARGET);
+  private final Map<Bytes, CompletableFuture<Collection<NodeRecord>>> findNodeRequests =
+      new HashMap<>();
 
   @BeforeEach
   public void setUp() {
-    when(findNodesAction.findNodes(any(), anyInt()))
+    when(findNodesAction.findNodes(any(), anyList()))
         .then(
             invocation -> {
               final NodeRecordInfo queriedPeer = invocation.getArgument(0);
-              final CompletableFuture<Void> result = new CompletableFuture<>();
-              findNodeRequests.put(queriedPeer, result);
+              final CompletableFuture<Collection<NodeRecord>> result = new CompletableFuture<>();
+              findNodeRequests.put(queriedPeer.getNode().getNodeId(), result);
               return result;
             });
   }
 
   @Test
-  public void shouldQueryThreeClosestNodesToTarget() {
+  public void shouldQueryAlphaClosestNodesToTarget() {
     when(nodeTable.streamClosestNodes(TARGET, 0)).thenReturn(Stream.of(PEER1, PEER2, PEER3, PEER4));
 
-    task.execute();
+    createTask(4, 10).execute();
 
-    verify(findNodesAction).findNodes(PEER1, Functions.logDistance(TARGET, PEER1_ID));
-    verify(findNodesAction).findNodes(PEER2, Functions.logDistance(TARGET, PEER2_ID));
-    verify(findNodesAction).findNodes(PEER3, Functions.logDistance(TARGET, PEER3_ID));
+    verify(findNodesAction).findNodes(PEER1, lookupDistances(PEER1_ID));
+    verify(findNodesAction).findNodes(PEER2, lookupDistances(PEER2_ID));
+    verify(findNodesAction).findNodes(PEER3, lookupDistances(PEER3_ID));
     verifyNoMoreInteractions(findNodesAction);
   }
 
   @Test
   public void shouldNotQueryNodesThatAreNotActive() {
-    final NodeRecordInfo nonActivePeer = createPeer(PEER1_ID, NodeStatus.SLEEP);
+    final NodeRecordInfo nonActivePeer = createPeer(PEER2_ID, NodeStatus.SLEEP);
     when(nodeTable.streamClosestNodes(TARGET, 0))
-        .thenReturn(Stream.of(nonActivePeer, PEER2, PEER3, PEER4));
+        .thenReturn(Stream.of(nonActivePeer, PEER3, PEER1, PEER4));
 
-    task.execute();
+    createTask(4, 10).execute();
 
-    // Skips PEER1_ID because it's non-active
-    verify(findNodesAction).findNodes(PEER2, Functions.logDistance(TARGET, PEER2_ID));
-    verify(findNodesAction).findNodes(PEER3, Functions.logDistance(TARGET, PEER3_ID));
-    verify(findNodesAction).findNodes(PEER4, Functions.logDistance(TARGET, PEER4_ID));
+    // Skips PEER2_ID because it's non-active
+    verify(findNodesAction).findNodes(PEER3, lookupDistances(PEER3_ID));
+    verify(findNodesAction).findNodes(PEER1, lookupDistances(PEER1_ID));
+    verify(findNodesAction).findNodes(PEER4, lookupDistances(PEER4_ID));
     verifyNoMoreInteractions(findNodesAction);
   }
 
@@ -105,106 +115,199 @@ class RecursiveLookupTaskTest {
   public void shouldNotQueryNodesThatHaveNotCheckedLivenessRecently() {
     final NodeRecordInfo nonActivePeer =
         createPeer(
-            PEER1_ID, Functions.getTime() - DiscoveryTaskManager.STATUS_EXPIRATION_SECONDS - 1);
+            PEER2_ID, Functions.getTime() - DiscoveryTaskManager.STATUS_EXPIRATION_SECONDS - 1);
     when(nodeTable.streamClosestNodes(TARGET, 0))
-        .thenReturn(Stream.of(nonActivePeer, PEER2, PEER3, PEER4));
+        .thenReturn(Stream.of(nonActivePeer, PEER3, PEER1, PEER4));
 
-    task.execute();
+    createTask(4, 10).execute();
 
-    // Skips PEER1_ID because it's non-active
-    verify(findNodesAction).findNodes(PEER2, Functions.logDistance(TARGET, PEER2_ID));
-    verify(findNodesAction).findNodes(PEER3, Functions.logDistance(TARGET, PEER3_ID));
-    verify(findNodesAction).findNodes(PEER4, Functions.logDistance(TARGET, PEER4_ID));
+    // Skips PEER2_ID because it's non-active
+    verify(findNodesAction).findNodes(PEER3, lookupDistances(PEER3_ID));
+    verify(findNodesAction).findNodes(PEER1, lookupDistances(PEER1_ID));
+    verify(findNodesAction).findNodes(PEER4, lookupDistances(PEER4_ID));
     verifyNoMoreInteractions(findNodesAction);
   }
 
   @Test
   public void shouldQueryNextClosestPeerWhenRequestCompletes() {
-    // thenAnswer so a fresh stream is returned on each invocation
-    when(nodeTable.streamClosestNodes(TARGET, 0))
-        .thenAnswer(invocation -> Stream.of(PEER1, PEER2, PEER3, PEER4));
+    when(nodeTable.streamClosestNodes(TARGET, 0)).thenReturn(Stream.of(PEER1, PEER2, PEER3, PEER4));
 
-    final CompletableFuture<Void> complete = task.execute();
+    final CompletableFuture<List<NodeRecord>> complete = createTask(4, 10).execute();
 
-    verify(findNodesAction).findNodes(PEER1, Functions.logDistance(TARGET, PEER1_ID));
-    verify(findNodesAction).findNodes(PEER2, Functions.logDistance(TARGET, PEER2_ID));
-    verify(findNodesAction).findNodes(PEER3, Functions.logDistance(TARGET, PEER3_ID));
+    verify(findNodesAction).findNodes(PEER1, lookupDistances(PEER1_ID));
+    verify(findNodesAction).findNodes(PEER2, lookupDistances(PEER2_ID));
+    verify(findNodesAction).findNodes(PEER3, lookupDistances(PEER3_ID));
     verifyNoMoreInteractions(findNodesAction);
     assertFalse(complete.isDone());
 
     // Request to first peer completes.
-    findNodeRequests.get(PEER1).complete(null);
+    respond(PEER1_ID);
 
     // We should now query the next closest peer we haven't already queried (peer4).
-    verify(findNodesAction).findNodes(PEER4, Functions.logDistance(TARGET, PEER4_ID));
+    verify(findNodesAction).findNodes(PEER4, lookupDistances(PEER4_ID));
     verifyNoMoreInteractions(findNodesAction);
     assertFalse(complete.isDone());
 
     // Complete remaining requests
-    findNodeRequests.get(PEER2).complete(null);
-    findNodeRequests.get(PEER3).complete(null);
-    findNodeRequests.get(PEER4).complete(null);
+    respond(PEER2_ID);
+    respond(PEER3_ID);
+    respond(PEER4_ID);
 
     verifyNoMoreInteractions(findNodesAction);
     // Should now be done because all nodes have been queried
     assertTrue(complete.isDone());
+    assertEquals(
+        List.of(PEER2.getNode(), PEER3.getNode(), PEER1.getNode(), PEER4.getNode()),
+        complete.join());
   }
 
   @Test
-  public void shouldStopWhenTargetNodeIsFound() {
-    final NodeRecordInfo targetPeer = createPeer(TARGET);
-    when(nodeTable.streamClosestNodes(TARGET, 0)).thenReturn(Stream.of(PEER1, PEER2, PEER3, PEER4));
+  public void shouldQueryNodesReturnedByPeers() {
+    when(nodeTable.streamClosestNodes(TARGET, 0)).thenReturn(Stream.of(PEER1, PEER4));
 
-    final CompletableFuture<Void> complete = task.execute();
+    final CompletableFuture<List<NodeRecord>> complete = createTask(4, 10).execute();
 
-    verify(findNodesAction).findNodes(PEER1, Functions.logDistance(TARGET, PEER1_ID));
-    verify(findNodesAction).findNodes(PEER2, Functions.logDistance(TARGET, PEER2_ID));
-    verify(findNodesAction).findNodes(PEER3, Functions.logDistance(TARGET, PEER3_ID));
+    verify(findNodesAction).findNodes(PEER1, lookupDistances(PEER1_ID));
+    verify(findNodesAction).findNodes(PEER4, lookupDistances(PEER4_ID));
     verifyNoMoreInteractions(findNodesAction);
-    assertFalse(complete.isDone());
 
-    // Request to first peer completes. Target peer has now been found.
-    when(nodeTable.getNode(TARGET)).thenReturn(Optional.of(targetPeer));
-    findNodeRequests.get(PEER1).complete(null);
+    // Home node is never queried even though it's the closest one
+    respond(PEER1_ID, createPeer(HOME_ID), PEER2, PEER3);
 
-    // No more requests are made
+    verifyQueried(PEER2_ID);
+    verifyQueried(PEER3_ID);
     verifyNoMoreInteractions(findNodesAction);
-    assertTrue(complete.isDone());
 
-    // Complete remaining requests
-    findNodeRequests.get(PEER2).complete(null);
-    findNodeRequests.get(PEER3).complete(null);
+    respond(PEER2_ID);
+    respond(PEER3_ID);
+    respond(PEER4_ID);
+
+    verifyNoMoreInteractions(findNodesAction);
+    assertEquals(
+        List.of(PEER2.getNode(), PEER3.getNode(), PEER1.getNode(), PEER4.getNode()),
+        complete.join());
+  }
+
+  @Test
+  public void shouldStopWhenClosestNodesHaveResponded() {
+    when(nodeTable.streamClosestNodes(TARGET, 0)).thenReturn(Stream.of(PEER2, PEER3, PEER1));
+
+    final CompletableFuture<List<NodeRecord>> complete = createTask(2, 10).execute();
+
+    // Only k closest nodes are queried
+    verify(findNodesAction).findNodes(PEER2, lookupDistances(PEER2_ID));
+    verify(findNodesAction).findNodes(PEER3, lookupDistances(PEER3_ID));
+    verifyNoMoreInteractions(findNodesAction);
+
+    // Farther nodes are not queried
+    respond(PEER2_ID, PEER1, PEER4);
+    respond(PEER3_ID);
+
+    verifyNoMoreInteractions(findNodesAction);
+    assertEquals(List.of(PEER2.getNode(), PEER3.getNode()), complete.join());
+  }
+
+  @Test
+  public void shouldReplaceFailedNodesWithNextClosest() {
+    when(nodeTable.streamClosestNodes(TARGET, 0)).thenReturn(Stream.of(PEER2, PEER3));
+
+    final CompletableFuture<List<NodeRecord>> complete = createTask(2, 10).execute();
+
+    verify(findNodesAction).findNodes(PEER2, lookupDistances(PEER2_ID));
+    verify(findNodesAction).findNodes(PEER3, lookupDistances(PEER3_ID));
+
+    findNodeRequests.get(PEER2_ID).completeExceptionally(new RuntimeException("Timeout"));
+    respond(PEER3_ID, PEER1, PEER4);
+
+    // PEER1 is among k closest nodes now
+    verifyQueried(PEER1_ID);
+    verifyNoMoreInteractions(findNodesAction);
+    assertFalse(complete.isDone());
+
+    respond(PEER1_ID);
 
     verifyNoMoreInteractions(findNodesAction);
+    assertEquals(List.of(PEER3.getNode(), PEER1.getNode()), complete.join());
   }
 
   @Test
   public void shouldStopWhenTotalQueryLimitIsReached() {
     when(nodeTable.streamClosestNodes(TARGET, 0))
-        .thenAnswer(invocation -> Stream.of(PEER1, PEER2, PEER3, PEER4, PEER5));
+        .thenReturn(Stream.of(PEER1, PEER2, PEER3, PEER4, PEER5));
 
-    final CompletableFuture<Void> complete = task.execute();
+    final CompletableFuture<List<NodeRecord>> complete = createTask(5, 4).execute();
 
-    verify(findNodesAction).findNodes(PEER1, Functions.logDistance(TARGET, PEER1_ID));
-    verify(findNodesAction).findNodes(PEER2, Functions.logDistance(TARGET, PEER2_ID));
-    verify(findNodesAction).findNodes(PEER3, Functions.logDistance(TARGET, PEER3_ID));
+    verify(findNodesAction).findNodes(PEER1, lookupDistances(PEER1_ID));
+    verify(findNodesAction).findNodes(PEER2, lookupDistances(PEER2_ID));
+    verify(findNodesAction).findNodes(PEER3, lookupDistances(PEER3_ID));
     verifyNoMoreInteractions(findNodesAction);
     assertFalse(complete.isDone());
 
     // Requests complete
-    findNodeRequests.get(PEER1).complete(null);
-    findNodeRequests.get(PEER2).complete(null);
-    findNodeRequests.get(PEER3).complete(null);
+    respond(PEER1_ID);
+    respond(PEER2_ID);
+    respond(PEER3_ID);
 
     // There are two peers remaining but only 1 request before we hit the total request limit
-    verify(findNodesAction).findNodes(PEER4, Functions.logDistance(TARGET, PEER4_ID));
+    verify(findNodesAction).findNodes(PEER5, lookupDistances(PEER5_ID));
     verifyNoMoreInteractions(findNodesAction);
     assertFalse(complete.isDone());
 
     // And when that last request completes, we're done.
-    findNodeRequests.get(PEER4).complete(null);
+    respond(PEER5_ID);
     verifyNoMoreInteractions(findNodesAction);
-    assertTrue(complete.isDone());
+    assertEquals(
+        List.of(PEER2.getNode(), PEER3.getNode(), PEER1.getNode(), PEER5.getNode()),
+        complete.join());
+  }
+
+  @Test
+  public void shouldRequestNeighbouringDistances() {
+    final Bytes peerId = Bytes32.ZERO;
+    final Bytes farthestId =
+        Bytes.fromHexString("0x8000000000000000000000000000000000000000000000000000000000000000");
+
+    assertEquals(
+        List.of(16, 17, 15, 18, 14),
+        RecursiveLookupTask.getLookupDistances(peerId, Bytes32.fromHexString("0x8000"), 5));
+    assertEquals(
+        List.of(256, 255, 254), RecursiveLookupTask.getLookupDistances(peerId, farthestId, 3));
+    assertEquals(
+        List.of(1, 2, 3),
+        RecursiveLookupTask.getLookupDistances(peerId, Bytes32.fromHexString("0x01"), 3));
+    assertEquals(List.of(0, 1, 2), RecursiveLookupTask.getLookupDistances(peerId, peerId, 3));
+    assertEquals(
+        List.of(7),
+        RecursiveLookupTask.getLookupDistances(peerId, Bytes32.fromHexString("0x40"), 1));
+  }
+
+  private RecursiveLookupTask createTask(final int k, final int totalQueryLimit) {
+    return new RecursiveLookupTask(
+        nodeTable,
+        findNodesAction,
+        HOME_ID,
+        TARGET,
+        ALPHA,
+        k,
+        DISTANCES_PER_QUERY,
+        totalQueryLimit);
+  }
+
+  private List<Integer> lookupDistances(final Bytes peerId) {
+    return RecursiveLookupTask.getLookupDistances(peerId, TARGET, DISTANCES_PER_QUERY);
+  }
+
+  private void respond(final Bytes peerId, final NodeRecordInfo... foundNodes) {
+    findNodeRequests
+        .get(peerId)
+        .complete(Stream.of(foundNodes).map(NodeRecordInfo::getNode).collect(toList()));
+  }
+
+  private void verifyQueried(final Bytes peerId) {
+    verify(findNodesAction)
+        .findNodes(
+            argThat(peer -> peer.getNode().getNodeId().equals(peerId)),
+            eq(lookupDistances(peerId)));
   }
 
   private static NodeRecordInfo createPeer(final Bytes nodeId) {
@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.ethereum.beacon.discovery.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+class RttEstimatorTest {
+  private static final Duration MAX_TIMEOUT = Duration.ofSeconds(10);
+  private static final Bytes NODE_ID = Bytes.fromHexString("0x1234");
+  private static final Bytes OTHER_NODE_ID = Bytes.fromHexString("0x5678");
+
+  private final RttEstimator estimator = new RttEstimator(MAX_TIMEOUT);
+
+  @Test
+  void shouldUseMaxTimeoutForUnknownPeer() {
+    estimator.onResponse(OTHER_NODE_ID, 100);
+
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(MAX_TIMEOUT);
+  }
+
+  @Test
+  void shouldDeriveTimeoutFromFirstResponse() {
+    estimator.onResponse(NODE_ID, 1000);
+
+    // SRTT = 1000, RTTVAR = 500
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(Duration.ofMillis(3000));
+  }
+
+  @Test
+  void shouldSmoothRoundTripTimes() {
+    estimator.onResponse(NODE_ID, 1000);
+    estimator.onResponse(NODE_ID, 2000);
+
+    // RTTVAR = (3 * 500 + 1000) / 4 = 625, SRTT = (7 * 1000 + 2000) / 8 = 1125
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(Duration.ofMillis(1125 + 4 * 625));
+  }
+
+  @Test
+  void shouldConvergeToRoundTripTimeOfStablePeer() {
+    for (int i = 0; i < 100; i++) {
+      estimator.onResponse(NODE_ID, 1000);
+    }
+
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(Duration.ofMillis(1000));
+  }
+
+  @Test
+  void shouldNotGoBelowMinTimeout() {
+    estimator.onResponse(NODE_ID, 10);
+
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(RttEstimator.MIN_TIMEOUT);
+  }
+
+  @Test
+  void shouldBackOffOnTimeoutUntilNextResponse() {
+    estimator.onResponse(NODE_ID, 1000);
+
+    estimator.onTimeout(NODE_ID);
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(Duration.ofMillis(6000));
+    estimator.onTimeout(NODE_ID);
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(MAX_TIMEOUT);
+
+    estimator.onResponse(NODE_ID, 1000);
+    // RTTVAR = 3 * 500 / 4 = 375, SRTT = 1000
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(Duration.ofMillis(1000 + 4 * 375));
+  }
+
+  @Test
+  void shouldPreferMaxTimeoutWhenBelowMinTimeout() {
+    final Duration maxTimeout = Duration.ofMillis(100);
+    final RttEstimator estimator = new RttEstimator(maxTimeout);
+    estimator.onResponse(NODE_ID, 10);
+
+    assertThat(estimator.getTimeout(NODE_ID)).isEqualTo(maxTimeout);
+  }
+}